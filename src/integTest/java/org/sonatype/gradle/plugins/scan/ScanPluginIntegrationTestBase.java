@@ -22,6 +22,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 
 import org.sonatype.gradle.plugins.scan.ossindex.BannerUtils;
 
@@ -42,9 +45,12 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.gradle.testkit.runner.TaskOutcome.FAILED;
 import static org.gradle.testkit.runner.TaskOutcome.SUCCESS;
+import static org.gradle.testkit.runner.TaskOutcome.UP_TO_DATE;
+import static org.junit.Assume.assumeTrue;
 import static org.sonatype.gradle.plugins.scan.nexus.iq.index.NexusIqIndexTask.MODULE_XML_FILE;
 import static org.sonatype.gradle.plugins.scan.nexus.iq.scan.NexusIqPluginScanExtension.SONATYPE_CLM_FOLDER;
 import static org.sonatype.gradle.plugins.scan.ossindex.CycloneDxResponseHandler.FILE_NAME_OUTPUT;
+import static org.sonatype.gradle.plugins.scan.ossindex.OssIndexAuditTask.REPORTS_DIRECTORY;
 
 @RunWith(Parameterized.class)
 public abstract class ScanPluginIntegrationTestBase
@@ -73,7 +79,6 @@ public abstract class ScanPluginIntegrationTestBase
   @After
   public void tearDown() {
     buildFile = null;
-    new File(FILE_NAME_OUTPUT).delete();
   }
 
   @Test
@@ -190,6 +195,35 @@ public abstract class ScanPluginIntegrationTestBase
     assertThat(result.task(":nexusIQIndex").getOutcome()).isEqualTo(SUCCESS);
   }
   
+  @Test
+  public void testIndexTask_ParallelMultiProject_NexusIQ() throws IOException {
+    File target = copyResource("multi-project-index");
+    List<String> projectPaths = Arrays.asList("", ":a", ":a:b", ":aB");
+
+    GradleRunner runner = GradleRunner.create()
+        .withGradleVersion(gradleVersion)
+        .withProjectDir(target)
+        .withPluginClasspath()
+        .withArguments("nexusIQIndex", "--parallel", "--info");
+
+    BuildResult firstResult = runner.build();
+
+    for (String projectPath : projectPaths) {
+      String taskPath = projectPath + ":nexusIQIndexModule";
+      assertThat(firstResult.task(taskPath).getOutcome()).as(taskPath).isEqualTo(SUCCESS);
+      File projectDir = new File(target, projectPath.replace(':', File.separatorChar));
+      assertThat(Paths.get(projectDir.getPath(), "build", SONATYPE_CLM_FOLDER, MODULE_XML_FILE)).isRegularFile();
+    }
+    assertThat(firstResult.task(":nexusIQIndex").getOutcome()).isEqualTo(SUCCESS);
+
+    BuildResult secondResult = runner.build();
+
+    for (String projectPath : projectPaths) {
+      String taskPath = projectPath + ":nexusIQIndexModule";
+      assertThat(secondResult.task(taskPath).getOutcome()).as(taskPath).isEqualTo(UP_TO_DATE);
+    }
+  }
+
   @Test
   public void testAuditTask_NoVulnerabilities_OssIndex_Default_Empty() throws IOException {
     writeFile(buildFile, "control_default_not_all.gradle");
@@ -256,8 +290,7 @@ public abstract class ScanPluginIntegrationTestBase
     assertThat(resultOutput).contains("No vulnerabilities found!");
     assertThat(result.task(":ossIndexAudit").getOutcome()).isEqualTo(SUCCESS);
 
-    File file = new File(FILE_NAME_OUTPUT);
-    assertThat(file.exists()).isFalse();
+    assertThat(getCycloneDxFile().exists()).isFalse();
   }
 
   @Test
@@ -287,7 +320,8 @@ public abstract class ScanPluginIntegrationTestBase
         .build();
 
     assertThat(result.task(":ossIndexAudit").getOutcome()).isEqualTo(SUCCESS);
-    assertThat(result.getOutput()).contains("CycloneDX SBOM file: " + FILE_NAME_OUTPUT);
+    assertThat(result.getOutput()).contains("CycloneDX SBOM file: " + getCycloneDxFile());
+    assertThat(getCycloneDxFile().exists()).isTrue();
   }
 
   @Test
@@ -517,6 +551,55 @@ public abstract class ScanPluginIntegrationTestBase
     assertThat(result.task(":ossIndexAudit").getOutcome()).isEqualTo(SUCCESS);
   }
 
+  @Test
+  public void testAuditTask_ConfigurationCacheReused_OssIndex() throws IOException {
+    assumeTrue(GradleVersion.version(gradleVersion).compareTo(GradleVersion.version("7.4")) >= 0);
+    writeFile(buildFile, "control_default.gradle");
+
+    GradleRunner runner = GradleRunner.create()
+        .withGradleVersion(gradleVersion)
+        .withProjectDir(testProjectDir.getRoot())
+        .withPluginClasspath()
+        .withArguments("ossIndexAudit", "--configuration-cache", "--info");
+
+    BuildResult firstResult = runner.build();
+    BuildResult secondResult = runner.build();
+
+    assertThat(firstResult.getOutput()).contains("Configuration cache entry stored");
+    assertThat(secondResult.getOutput()).contains("Configuration cache entry reused");
+    assertBuildOutputText_OssIndex_Default(secondResult,
+        " - pkg:maven/commons-collections/commons-collections@3.1 - No vulnerabilities found!");
+    assertThat(secondResult.task(":ossIndexAudit").getOutcome()).isEqualTo(SUCCESS);
+  }
+
+  @Test
+  public void testAuditTask_ParallelResolutionMultiProject_OssIndex() throws IOException {
+    assumeTrue(GradleVersion.version(gradleVersion).compareTo(GradleVersion.version("6.1")) >= 0);
+    File target = copyResource("multi-project-parallel");
+
+    BuildResult result = GradleRunner.create()
+        .withGradleVersion(gradleVersion)
+        .withProjectDir(target)
+        .withPluginClasspath()
+        .withArguments("ossIndexAudit", "--parallel", "--info")
+        .build();
+
+    // the root audits every project, ':a' audits itself and ':a:b' with its own uniquely named resolve tasks
+    for (String taskPath : Arrays.asList(":ossIndexResolveDependencies", ":a:ossIndexResolveDependencies",
+        ":a:b:ossIndexResolveDependencies", ":aB:ossIndexResolveDependencies", ":a:ossIndexResolveDependencies_-a",
+        ":a:b:ossIndexResolveDependencies_-a", ":ossIndexAudit", ":a:ossIndexAudit")) {
+      assertThat(result.task(taskPath)).as(taskPath).isNotNull();
+      assertThat(result.task(taskPath).getOutcome()).as(taskPath).isEqualTo(SUCCESS);
+    }
+    assertThat(result.task(":aB:ossIndexResolveDependencies_-a")).isNull();
+
+    String resultOutput = result.getOutput();
+    assertThat(resultOutput).contains("pkg:maven/commons-collections/commons-collections@3.1");
+    assertThat(resultOutput).contains("pkg:maven/commons-io/commons-io@2.6");
+    assertThat(resultOutput).contains("pkg:maven/commons-lang/commons-lang@2.6");
+    assertThat(resultOutput).contains("pkg:maven/commons-codec/commons-codec@1.15");
+  }
+
   @Test
   public void testAuditTask_HideBanner() throws IOException {
     writeFile(buildFile, "hide_banner.gradle");
@@ -541,6 +624,10 @@ public abstract class ScanPluginIntegrationTestBase
     }
   }
 
+  private File getCycloneDxFile() {
+    return new File(testProjectDir.getRoot(), "build/" + REPORTS_DIRECTORY + "/" + FILE_NAME_OUTPUT);
+  }
+
   private void writeFile(File destination, String resourceName) throws IOException {
     try (InputStream contentStream = getClass().getClassLoader().getResourceAsStream(resourceName);
         BufferedWriter output = new BufferedWriter(new FileWriter(destination))) {
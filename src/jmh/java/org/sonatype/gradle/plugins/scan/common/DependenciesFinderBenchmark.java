@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.common;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.sonatype.insight.scan.module.model.Dependency;
+
+import org.gradle.api.artifacts.ResolvedDependency;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DependenciesFinderBenchmark
+{
+  @Param("100")
+  private int width;
+
+  @Param({"10", "100"})
+  private int depth;
+
+  private DependenciesFinder dependenciesFinder;
+
+  private List<ResolvedDependency> directDependencies;
+
+  @Setup
+  public void setup() {
+    dependenciesFinder = new DependenciesFinder();
+    directDependencies = List.copyOf(new SyntheticDependencyGraph(width, depth).getRoots());
+  }
+
+  @Benchmark
+  public void processDependency(Blackhole blackhole) {
+    for (ResolvedDependency dependency : directDependencies) {
+      Dependency result = dependenciesFinder.processDependency(dependency, true, new HashSet<>());
+      blackhole.consume(result);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.common;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.gradle.api.artifacts.ResolvedDependency;
+
+/**
+ * Dependency graph for the benchmarks made of {@code depth} levels of {@code width} dependencies each, the first level
+ * being the direct dependencies. Every dependency depends on up to {@link #FAN_OUT} dependencies of the next level
+ * which it shares with its neighbours, the way transitive dependencies are shared in real builds.
+ */
+public class SyntheticDependencyGraph
+{
+  public static final int FAN_OUT = 3;
+
+  private final Set<ResolvedDependency> roots;
+
+  private final List<ResolvedDependency> dependencies;
+
+  public SyntheticDependencyGraph(int width, int depth) {
+    List<SyntheticResolvedDependency> nodes = new ArrayList<>(width * depth);
+    for (int level = 0; level < depth; level++) {
+      for (int index = 0; index < width; index++) {
+        nodes.add(new SyntheticResolvedDependency("org.example.level" + level, "artifact" + index, "1.0." + level));
+      }
+    }
+
+    for (int level = 0; level < depth - 1; level++) {
+      for (int index = 0; index < width; index++) {
+        SyntheticResolvedDependency parent = nodes.get(level * width + index);
+        for (int offset = 0; offset < Math.min(FAN_OUT, width); offset++) {
+          parent.addChild(nodes.get((level + 1) * width + (index + offset) % width));
+        }
+      }
+    }
+
+    this.roots = new LinkedHashSet<>(nodes.subList(0, width));
+    this.dependencies = new ArrayList<>(nodes);
+  }
+
+  /**
+   * @return the direct dependencies.
+   */
+  public Set<ResolvedDependency> getRoots() {
+    return roots;
+  }
+
+  /**
+   * @return every dependency of the graph.
+   */
+  public List<ResolvedDependency> getDependencies() {
+    return dependencies;
+  }
+}
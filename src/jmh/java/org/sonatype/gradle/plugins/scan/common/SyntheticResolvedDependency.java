@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.common;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.artifacts.ResolvedDependency;
+import org.gradle.api.artifacts.ResolvedModuleVersion;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
+
+/**
+ * Plain {@link ResolvedDependency} node of a {@link SyntheticDependencyGraph}, so the benchmarks don't measure the
+ * overhead of mocks. The artifact related methods return empty sets.
+ */
+public class SyntheticResolvedDependency
+    implements ResolvedDependency
+{
+  private final ModuleVersionIdentifier id;
+
+  private final Set<ResolvedDependency> children = new LinkedHashSet<>();
+
+  private final Set<ResolvedDependency> parents = new LinkedHashSet<>();
+
+  public SyntheticResolvedDependency(String group, String name, String version) {
+    this.id = DefaultModuleVersionIdentifier.newId(group, name, version);
+  }
+
+  public void addChild(SyntheticResolvedDependency child) {
+    children.add(child);
+    child.parents.add(this);
+  }
+
+  @Override
+  public String getName() {
+    return getModuleGroup() + ":" + getModuleName() + ":" + getModuleVersion();
+  }
+
+  @Override
+  public String getModuleGroup() {
+    return id.getGroup();
+  }
+
+  @Override
+  public String getModuleName() {
+    return id.getName();
+  }
+
+  @Override
+  public String getModuleVersion() {
+    return id.getVersion();
+  }
+
+  @Override
+  public String getConfiguration() {
+    return "runtimeClasspath";
+  }
+
+  @Override
+  public ResolvedModuleVersion getModule() {
+    return () -> id;
+  }
+
+  @Override
+  public Set<ResolvedDependency> getChildren() {
+    return children;
+  }
+
+  @Override
+  public Set<ResolvedDependency> getParents() {
+    return parents;
+  }
+
+  @Override
+  public Set<ResolvedArtifact> getModuleArtifacts() {
+    return Collections.emptySet();
+  }
+
+  @Override
+  public Set<ResolvedArtifact> getAllModuleArtifacts() {
+    return Collections.emptySet();
+  }
+
+  @Override
+  public Set<ResolvedArtifact> getParentArtifacts(ResolvedDependency parent) {
+    return Collections.emptySet();
+  }
+
+  @Override
+  public Set<ResolvedArtifact> getArtifacts(ResolvedDependency parent) {
+    return Collections.emptySet();
+  }
+
+  @Override
+  public Set<ResolvedArtifact> getAllArtifacts(ResolvedDependency parent) {
+    return Collections.emptySet();
+  }
+
+  @Override
+  public String toString() {
+    return getName() + ";" + getConfiguration();
+  }
+}
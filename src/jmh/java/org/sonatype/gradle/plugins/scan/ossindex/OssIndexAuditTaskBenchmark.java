@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.ossindex;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.goodies.packageurl.PackageUrl;
+import org.sonatype.gradle.plugins.scan.common.SyntheticDependencyGraph;
+
+import com.google.common.collect.BiMap;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.ResolvedDependency;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// ProjectBuilder needs to define classes in the application class loader
+@Fork(value = 1, jvmArgsAppend = "--add-opens=java.base/java.lang=ALL-UNNAMED")
+public class OssIndexAuditTaskBenchmark
+{
+  @Param("100")
+  private int width;
+
+  @Param({"10", "100"})
+  private int depth;
+
+  private OssIndexAuditTask task;
+
+  private Set<ResolvedDependency> dependencies;
+
+  @Setup
+  public void setup() {
+    Project project = ProjectBuilder.builder().build();
+    project.getExtensions().add("ossIndexAudit", new OssIndexPluginExtension(project));
+    task = project.getTasks().register("ossIndexAudit", OssIndexAuditTask.class).get();
+    dependencies = new SyntheticDependencyGraph(width, depth).getRoots();
+  }
+
+  @Benchmark
+  public BiMap<ResolvedDependency, PackageUrl> buildDependenciesMap() {
+    return task.buildDependenciesMap(dependencies);
+  }
+}
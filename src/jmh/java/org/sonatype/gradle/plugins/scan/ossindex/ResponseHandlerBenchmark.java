@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.ossindex;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.goodies.packageurl.PackageUrl;
+import org.sonatype.goodies.packageurl.PackageUrlBuilder;
+import org.sonatype.gradle.plugins.scan.common.SyntheticDependencyGraph;
+import org.sonatype.ossindex.service.api.componentreport.ComponentReport;
+import org.sonatype.ossindex.service.api.componentreport.ComponentReportVulnerability;
+
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.ResolvedDependency;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the response handlers on a synthetic graph where one in {@link #VULNERABLE_EVERY} dependencies has a
+ * vulnerability. The CycloneDX handler writes its file to the build directory of a temporary project.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// ProjectBuilder needs to define classes in the application class loader
+@Fork(value = 1, jvmArgsAppend = "--add-opens=java.base/java.lang=ALL-UNNAMED")
+public class ResponseHandlerBenchmark
+{
+  private static final int VULNERABLE_EVERY = 10;
+
+  @Param({"10", "100"})
+  private int width;
+
+  @Param({"5", "10", "50"})
+  private int depth;
+
+  private Set<ResolvedDependency> dependencies;
+
+  private Map<ResolvedDependency, PackageUrl> dependenciesMap;
+
+  private Map<PackageUrl, ComponentReport> response;
+
+  private DependencyGraphResponseHandler dependencyGraphResponseHandler;
+
+  private CycloneDxResponseHandler cycloneDxResponseHandler;
+
+  @Setup
+  public void setup() {
+    SyntheticDependencyGraph graph = new SyntheticDependencyGraph(width, depth);
+    dependencies = graph.getRoots();
+    dependenciesMap = new HashMap<>();
+    response = new HashMap<>();
+
+    List<ResolvedDependency> allDependencies = graph.getDependencies();
+    for (int i = 0; i < allDependencies.size(); i++) {
+      ResolvedDependency dependency = allDependencies.get(i);
+      PackageUrl packageUrl = new PackageUrlBuilder()
+          .type("maven")
+          .namespace(dependency.getModuleGroup())
+          .name(dependency.getModuleName())
+          .version(dependency.getModuleVersion())
+          .build();
+      dependenciesMap.put(dependency, packageUrl);
+      response.put(packageUrl, buildReport(packageUrl, i % VULNERABLE_EVERY == 0));
+    }
+
+    Project project = ProjectBuilder.builder().build();
+    OssIndexPluginExtension extension = new OssIndexPluginExtension(project);
+    extension.setColorEnabled(false);
+    dependencyGraphResponseHandler = new DependencyGraphResponseHandler(extension);
+    cycloneDxResponseHandler = new CycloneDxResponseHandler(extension, project);
+  }
+
+  @Benchmark
+  public boolean dependencyGraph() {
+    return dependencyGraphResponseHandler.handleOssIndexResponse(dependencies, dependenciesMap, response);
+  }
+
+  @Benchmark
+  public boolean cycloneDx() {
+    return cycloneDxResponseHandler.handleOssIndexResponse(dependencies, dependenciesMap, response);
+  }
+
+  private static ComponentReport buildReport(PackageUrl packageUrl, boolean vulnerable) {
+    ComponentReport report = new ComponentReport();
+    report.setCoordinates(packageUrl);
+
+    List<ComponentReportVulnerability> vulnerabilities = new ArrayList<>();
+    if (vulnerable) {
+      ComponentReportVulnerability vulnerability = new ComponentReportVulnerability();
+      vulnerability.setId("vulnerability-" + packageUrl.getName());
+      vulnerability.setTitle("Synthetic vulnerability");
+      vulnerability.setDescription("Synthetic vulnerability of " + packageUrl);
+      vulnerability.setCvssScore(7.5f);
+      vulnerability.setCvssVector("CVSS:3.1/AV:N/AC:L/PR:N/UI:N/S:U/C:H/I:N/A:N");
+      vulnerability.setCwe("CWE-79");
+      vulnerability.setReference(URI.create("https://ossindex.sonatype.org/vulnerability/" + packageUrl.getName()));
+      vulnerabilities.add(vulnerability);
+    }
+    report.setVulnerabilities(vulnerabilities);
+    return report;
+  }
+}
@@ -15,21 +15,34 @@
  */
 package org.sonatype.gradle.plugins.scan;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+
+import org.sonatype.gradle.plugins.scan.nexus.iq.index.NexusIqIndexBuildService;
+import org.sonatype.gradle.plugins.scan.nexus.iq.index.NexusIqIndexModuleTask;
 import org.sonatype.gradle.plugins.scan.nexus.iq.index.NexusIqIndexTask;
 import org.sonatype.gradle.plugins.scan.nexus.iq.index.NexusIqPluginIndexExtension;
 import org.sonatype.gradle.plugins.scan.nexus.iq.scan.NexusIqPluginScanExtension;
 import org.sonatype.gradle.plugins.scan.nexus.iq.scan.NexusIqScanTask;
 import org.sonatype.gradle.plugins.scan.ossindex.OssIndexAuditTask;
+import org.sonatype.gradle.plugins.scan.ossindex.OssIndexBuildService;
 import org.sonatype.gradle.plugins.scan.ossindex.OssIndexPluginExtension;
+import org.sonatype.gradle.plugins.scan.ossindex.OssIndexResolveDependenciesTask;
 
 import org.gradle.api.Action;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
+import org.gradle.api.tasks.TaskProvider;
 import org.gradle.util.GradleVersion;
 
 public class ScanPlugin implements Plugin<Project>
 {
+  private static final boolean IS_GRADLE_MIN_6_1 =
+      GradleVersion.current().compareTo(GradleVersion.version("6.1")) >= 0;
+
   private static final boolean IS_GRADLE_MIN_7_4 =
       GradleVersion.current().compareTo(GradleVersion.version("7.4")) >= 0;
 
@@ -50,24 +63,84 @@ public class ScanPlugin implements Plugin<Project>
       }
     });
 
-    project.getExtensions().create("nexusIQIndex", NexusIqPluginIndexExtension.class, project);
+    NexusIqPluginIndexExtension indexExtension =
+        project.getExtensions().create("nexusIQIndex", NexusIqPluginIndexExtension.class, project);
+    if (IS_GRADLE_MIN_6_1) {
+      NexusIqIndexBuildService.registerIfAbsent(project.getGradle());
+      project.getGradle().projectsEvaluated(gradle -> NexusIqIndexBuildService.configureMaxParallelWrites(gradle,
+          project.getPath(), indexExtension.getMaxParallelWrites()));
+    }
+    String indexModuleTaskName = NexusIqIndexModuleTask.getTaskName(project);
+    project.allprojects(indexedProject -> indexedProject.getTasks().register(indexModuleTaskName,
+        NexusIqIndexModuleTask.class, indexExtension).configure(task -> {
+          task.setDescription("Saves information about the dependencies of the project into a module information "
+              + "(module.xml) file.");
+          if (IS_GRADLE_MIN_6_1) {
+            task.useBuildService(NexusIqIndexBuildService.registerIfAbsent(project.getGradle()));
+          }
+          if (IS_GRADLE_MIN_7_4) {
+            task.notCompatibleWithConfigurationCache(TASK_NOT_COMPATIBLE_WITH_CONFIG_CACHE_REASON);
+          }
+        }));
+
     createTask(project, "nexusIQIndex", NexusIqIndexTask.class, task -> {
       task.setGroup(SONATYPE_GROUP);
       task.setDescription("Saves information about the dependencies of a project into module information "
             + "(module.xml) files that Sonatype CI tools can use to include these dependencies in a scan.");
-      if (IS_GRADLE_MIN_7_4) {
-        task.notCompatibleWithConfigurationCache(TASK_NOT_COMPATIBLE_WITH_CONFIG_CACHE_REASON);
+      task.dependsOn((Callable<List<NexusIqIndexModuleTask>>) task::getModuleTasks);
+      if (IS_GRADLE_MIN_6_1) {
+        task.useBuildService(NexusIqIndexBuildService.registerIfAbsent(project.getGradle()));
       }
-    });
-
-    project.getExtensions().create("ossIndexAudit", OssIndexPluginExtension.class, project);
-    createTask(project, "ossIndexAudit", OssIndexAuditTask.class, task -> {
-      task.setGroup(SONATYPE_GROUP);
-      task.setDescription("Audit the dependencies of the project using OSS Index.");
       if (IS_GRADLE_MIN_7_4) {
         task.notCompatibleWithConfigurationCache(TASK_NOT_COMPATIBLE_WITH_CONFIG_CACHE_REASON);
       }
     });
+
+    OssIndexPluginExtension ossIndexExtension =
+        project.getExtensions().create("ossIndexAudit", OssIndexPluginExtension.class, project);
+    String resolveDependenciesTaskName = OssIndexResolveDependenciesTask.getTaskName(project);
+    project.allprojects(auditedProject -> auditedProject.getTasks().register(resolveDependenciesTaskName,
+        OssIndexResolveDependenciesTask.class, ossIndexExtension).configure(task -> {
+          task.setDescription("Resolves the dependencies of the project to be audited using OSS Index.");
+          if (IS_GRADLE_MIN_6_1) {
+            task.useBuildService(OssIndexBuildService.registerIfAbsent(project.getGradle()));
+          }
+          if (IS_GRADLE_MIN_7_4) {
+            task.notCompatibleWithConfigurationCache(TASK_NOT_COMPATIBLE_WITH_CONFIG_CACHE_REASON);
+          }
+        }));
+
+    TaskProvider<OssIndexAuditTask> ossIndexAuditTask =
+        project.getTasks().register("ossIndexAudit", OssIndexAuditTask.class, task -> {
+          task.setGroup(SONATYPE_GROUP);
+          task.setDescription("Audit the dependencies of the project using OSS Index.");
+          task.dependsOn((Callable<List<Task>>) () -> getResolveDependenciesTasks(task, resolveDependenciesTaskName));
+          if (IS_GRADLE_MIN_6_1) {
+            task.useBuildService(OssIndexBuildService.registerIfAbsent(project.getGradle()));
+          }
+        });
+
+    if (IS_GRADLE_MIN_7_4) {
+      // the audited configurations depend on the extension values and the other projects, all known at this point
+      project.getGradle().projectsEvaluated(gradle -> ossIndexAuditTask.configure(task -> {
+        if (task.isParallelResolution()) {
+          task.notCompatibleWithConfigurationCache(TASK_NOT_COMPATIBLE_WITH_CONFIG_CACHE_REASON);
+        }
+        else {
+          task.useResolutionResults();
+        }
+      }));
+    }
+  }
+
+  private static List<Task> getResolveDependenciesTasks(OssIndexAuditTask auditTask, String taskName) {
+    // the resolved dependencies are handed over through the build service
+    if (!IS_GRADLE_MIN_6_1 || !auditTask.isParallelResolution()) {
+      return Collections.emptyList();
+    }
+    return auditTask.getAuditedProjects().stream()
+        .map(project -> project.getTasks().getByName(taskName))
+        .collect(Collectors.toList());
   }
 
   private static <T extends Task> void createTask(
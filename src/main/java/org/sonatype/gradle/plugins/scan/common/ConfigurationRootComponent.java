@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.common;
+
+import java.util.Set;
+
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.provider.Provider;
+
+/**
+ * Lazy resolution result of a single configuration, wired at configuration time so it can be stored in the
+ * configuration cache and resolved without accessing the project at execution time.
+ */
+public class ConfigurationRootComponent
+{
+  private final String configurationName;
+
+  private final Provider<ResolvedComponentResult> rootComponent;
+
+  private final Set<String> excludedDependencyIds;
+
+  public ConfigurationRootComponent(
+      String configurationName,
+      Provider<ResolvedComponentResult> rootComponent,
+      Set<String> excludedDependencyIds)
+  {
+    this.configurationName = configurationName;
+    this.rootComponent = rootComponent;
+    this.excludedDependencyIds = excludedDependencyIds;
+  }
+
+  public String getConfigurationName() {
+    return configurationName;
+  }
+
+  public Provider<ResolvedComponentResult> getRootComponent() {
+    return rootComponent;
+  }
+
+  /**
+   * @return the ids (group:name:version) of the first level dependencies to leave out, e.g. the 'compileOnly' ones.
+   */
+  public Set<String> getExcludedDependencyIds() {
+    return excludedDependencyIds;
+  }
+}
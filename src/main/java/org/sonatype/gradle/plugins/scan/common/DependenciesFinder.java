@@ -15,7 +15,9 @@
  */
 package org.sonatype.gradle.plugins.scan.common;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -24,22 +26,22 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Function;
-import java.util.stream.Collector;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import com.sonatype.insight.scan.module.model.Artifact;
 import com.sonatype.insight.scan.module.model.Dependency;
 import com.sonatype.insight.scan.module.model.Module;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import org.apache.commons.lang3.StringUtils;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.DependencySet;
 import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.artifacts.ResolvedConfiguration;
 import org.gradle.api.artifacts.ResolvedDependency;
 import org.gradle.api.attributes.Attribute;
 import org.gradle.api.attributes.Usage;
@@ -71,33 +73,56 @@ public class DependenciesFinder
       RELEASE_COMPILE_CONFIGURATION_NAME,
       RELEASE_RUNTIME_CONFIGURATION_NAME);
 
+  // transient as projects can't be stored in the configuration cache
+  private transient Set<Project> projectsWithDisambiguationRules;
+
   public Set<ResolvedDependency> findResolvedDependencies(
       Project project,
       boolean allConfigurations,
       Map<String, String> variantAttributes,
       boolean excludeCompileOnlyDependencies)
+  {
+    return new LinkedHashSet<>(resolveModuleDependencies(project, allConfigurations, variantAttributes,
+        excludeCompileOnlyDependencies).getFirstLevelDependencies());
+  }
+
+  /**
+   * Wires, without resolving them yet, the resolution results of the acceptable configurations of the project. It must
+   * be called at configuration time; the results are turned into dependencies by
+   * {@link #findResolvedDependencies(List)}.
+   */
+  public List<ConfigurationRootComponent> findRootComponents(
+      Project project,
+      boolean allConfigurations,
+      Map<String, String> variantAttributes,
+      boolean excludeCompileOnlyDependencies)
   {
     addDisambiguationRules(project, variantAttributes);
 
     Set<String> compileOnlyDependenciesIds =
         excludeCompileOnlyDependencies ? getCompileOnlyDependencyIds(project) : Collections.emptySet();
 
-    return new LinkedHashSet<>(new LinkedHashSet<>(project.getConfigurations()).stream()
-        .filter(configuration -> isAcceptableConfiguration(configuration, allConfigurations)).flatMap(configuration -> {
-          Stream<ResolvedDependency> dependencies =
-              configuration.getResolvedConfiguration().getFirstLevelModuleDependencies().stream();
+    return new LinkedHashSet<>(project.getConfigurations()).stream()
+        .filter(configuration -> isAcceptableConfiguration(configuration, allConfigurations))
+        .map(configuration -> new ConfigurationRootComponent(
+            configuration.getName(),
+            configuration.getIncoming().getResolutionResult().getRootComponent(),
+            !compileOnlyDependenciesIds.isEmpty() && shouldRemoveCompileOnlyDependencies(project, configuration)
+                ? compileOnlyDependenciesIds
+                : Collections.emptySet()))
+        .collect(Collectors.toList());
+  }
 
-          if (!compileOnlyDependenciesIds.isEmpty() && shouldRemoveCompileOnlyDependencies(project, configuration)) {
-            Set<ResolvedDependency> filteredDependencies =
-                dependencies.collect(Collectors.toCollection(LinkedHashSet::new));
+  public Set<ResolvedDependency> findResolvedDependencies(List<ConfigurationRootComponent> rootComponents) {
+    Map<String, ResolvedDependency> dependencies = new LinkedHashMap<>();
 
-            filteredDependencies
-                .removeIf(dependency -> compileOnlyDependenciesIds.contains(getResolvedDependencyId(dependency)));
-            return filteredDependencies.stream();
-          }
+    rootComponents.forEach(rootComponent -> ResolvedComponentDependency
+        .getFirstLevelDependencies(rootComponent.getRootComponent().get(), rootComponent.getConfigurationName())
+        .stream()
+        .filter(dependency -> !rootComponent.getExcludedDependencyIds().contains(getResolvedDependencyId(dependency)))
+        .forEach(dependency -> dependencies.merge(dependency.getName(), dependency, this::mergeResolvedDependencies)));
 
-          return dependencies;
-        }).collect(collectResolvedDependencies()).values());
+    return new LinkedHashSet<>(dependencies.values());
   }
 
   public List<Module> findModules(
@@ -110,33 +135,140 @@ public class DependenciesFinder
     List<Module> modules = new ArrayList<>();
 
     rootProject.allprojects(project -> {
+      if (!modulesExcluded.contains(project.getName())) {
+        modules.add(findModule(project, allConfigurations, variantAttributes, excludeCompileOnlyDependencies));
+      }
+      else {
+        addDisambiguationRules(project, variantAttributes);
+      }
+    });
 
-      addDisambiguationRules(project, variantAttributes);
+    return modules;
+  }
 
-      if (!modulesExcluded.contains(project.getName())) {
-        Module module = buildModule(project);
+  /**
+   * Builds the module of a single project, without looking into its subprojects.
+   */
+  public Module findModule(
+      Project project,
+      boolean allConfigurations,
+      Map<String, String> variantAttributes,
+      boolean excludeCompileOnlyDependencies)
+  {
+    Module module = buildModule(project);
+    ResolvedDependenciesSnapshot snapshot =
+        resolveModuleDependencies(project, allConfigurations, variantAttributes, excludeCompileOnlyDependencies);
 
-        Set<String> compileOnlyDependenciesIds =
-            excludeCompileOnlyDependencies ? getCompileOnlyDependencyIds(project) : Collections.emptySet();
+    snapshot.getArtifacts().stream()
+        .map(resolvedArtifact -> new Artifact()
+            .setId(getArtifactId(resolvedArtifact))
+            .setPathname(resolvedArtifact.getFile())
+            .setMonitored(true))
+        .forEach(module::addConsumedArtifact);
 
-        findResolvedArtifacts(project, allConfigurations, compileOnlyDependenciesIds).stream()
-            .map(resolvedArtifact -> new Artifact()
-                .setId(getArtifactId(resolvedArtifact))
-                .setPathname(resolvedArtifact.getFile())
-                .setMonitored(true))
-            .forEach(module::addConsumedArtifact);
+    snapshot.getFirstLevelDependencies().forEach(
+        resolvedDependency -> module.addDependency(processDependency(resolvedDependency, true, new HashSet<>())));
 
-        findResolvedDependencies(project, allConfigurations, variantAttributes, excludeCompileOnlyDependencies).forEach(
-            resolvedDependency -> module.addDependency(processDependency(resolvedDependency, true, new HashSet<>())));
+    return module;
+  }
 
-        modules.add(module);
-      }
+  /**
+   * Computes a fingerprint of everything {@link #findModule} puts in the module of the project: its id, its resolved
+   * artifacts and the graph of its resolved dependencies. The configurations are resolved once, so a later call to
+   * {@link #findModule} with the same arguments reuses the same resolution.
+   */
+  public String findModuleFingerprint(
+      Project project,
+      boolean allConfigurations,
+      Map<String, String> variantAttributes,
+      boolean excludeCompileOnlyDependencies)
+  {
+    Hasher hasher = Hashing.sha256().newHasher();
+
+    putString(hasher, getId(project));
+    putString(hasher, project.getParent() != null ? getId(project.getParent()) : "");
+    putString(hasher, project.getProjectDir().getAbsolutePath());
+
+    ResolvedDependenciesSnapshot snapshot =
+        resolveModuleDependencies(project, allConfigurations, variantAttributes, excludeCompileOnlyDependencies);
+
+    snapshot.getArtifacts().forEach(resolvedArtifact -> {
+      putString(hasher, getArtifactId(resolvedArtifact));
+      putString(hasher, resolvedArtifact.getFile().getAbsolutePath());
     });
 
-    return modules;
+    Set<String> processedDependencies = new HashSet<>();
+    snapshot.getFirstLevelDependencies().forEach(resolvedDependency -> {
+      putString(hasher, resolvedDependency.getName());
+      putDependencyGraph(hasher, resolvedDependency, processedDependencies);
+    });
+
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Computes a fingerprint of a dependency graph: the coordinates, configuration and children of each of its nodes.
+   */
+  public String findDependencyGraphFingerprint(Collection<ResolvedDependency> dependencies) {
+    Hasher hasher = Hashing.sha256().newHasher();
+
+    Set<String> processedDependencies = new HashSet<>();
+    dependencies.forEach(resolvedDependency -> {
+      putString(hasher, resolvedDependency.getName());
+      putDependencyGraph(hasher, resolvedDependency, processedDependencies);
+    });
+
+    return hasher.hash().toString();
+  }
+
+  private ResolvedDependenciesSnapshot resolveModuleDependencies(
+      Project project,
+      boolean allConfigurations,
+      Map<String, String> variantAttributes,
+      boolean excludeCompileOnlyDependencies)
+  {
+    addDisambiguationRules(project, variantAttributes);
+
+    Set<String> compileOnlyDependenciesIds =
+        excludeCompileOnlyDependencies ? getCompileOnlyDependencyIds(project) : Collections.emptySet();
+
+    return resolveDependencies(project, allConfigurations, compileOnlyDependenciesIds);
+  }
+
+  /**
+   * Adds each node of the graph once along with its children, which is all {@link #processDependency} needs to build
+   * the dependency tree.
+   */
+  private void putDependencyGraph(
+      Hasher hasher,
+      ResolvedDependency resolvedDependency,
+      Set<String> processedDependencies)
+  {
+    if (!processedDependencies.add(resolvedDependency.getName())) {
+      return;
+    }
+
+    putString(hasher, resolvedDependency.getName());
+    putString(hasher, resolvedDependency.getConfiguration());
+    hasher.putInt(resolvedDependency.getChildren().size());
+
+    resolvedDependency.getChildren().forEach(child -> putString(hasher, child.getName()));
+    resolvedDependency.getChildren().forEach(child -> putDependencyGraph(hasher, child, processedDependencies));
+  }
+
+  private static void putString(Hasher hasher, String value) {
+    hasher.putInt(value.length()).putString(value, StandardCharsets.UTF_8);
   }
 
   private void addDisambiguationRules(Project project, Map<String, String> variantAttributes) {
+    // the same finder may look up the dependencies of a project more than once, the rules must be added only once
+    if (projectsWithDisambiguationRules == null) {
+      projectsWithDisambiguationRules = new HashSet<>();
+    }
+    if (!projectsWithDisambiguationRules.add(project)) {
+      return;
+    }
+
     project.getDependencies().attributesSchema(attributesSchema -> {
       if (isAndroidProject(project)) {
         attributesSchema
@@ -160,25 +292,51 @@ public class DependenciesFinder
       boolean allConfigurations,
       Set<String> compileOnlyDependenciesIds)
   {
-    return new LinkedHashSet<>(project.getConfigurations()).stream()
-        .filter(configuration -> isAcceptableConfiguration(configuration, allConfigurations)).flatMap(configuration -> {
+    return resolveDependencies(project, allConfigurations, compileOnlyDependenciesIds).getArtifacts();
+  }
 
-          Stream<ResolvedArtifact> artifacts = configuration.getResolvedConfiguration().getResolvedArtifacts().stream();
+  /**
+   * Resolves every acceptable configuration of the project exactly once, reading the first level dependencies and the
+   * artifacts from the same {@link ResolvedConfiguration}.
+   */
+  @VisibleForTesting
+  ResolvedDependenciesSnapshot resolveDependencies(
+      Project project,
+      boolean allConfigurations,
+      Set<String> compileOnlyDependenciesIds)
+  {
+    Map<String, ResolvedDependency> dependencies = new LinkedHashMap<>();
+    Set<ResolvedArtifact> artifacts = new LinkedHashSet<>();
+
+    new LinkedHashSet<>(project.getConfigurations()).stream()
+        .filter(configuration -> isAcceptableConfiguration(configuration, allConfigurations))
+        .forEach(configuration -> {
+          ResolvedConfiguration resolvedConfiguration = configuration.getResolvedConfiguration();
+          Set<ResolvedDependency> configurationDependencies =
+              new LinkedHashSet<>(resolvedConfiguration.getFirstLevelModuleDependencies());
+          Set<ResolvedArtifact> configurationArtifacts =
+              new LinkedHashSet<>(resolvedConfiguration.getResolvedArtifacts());
 
           if (!compileOnlyDependenciesIds.isEmpty() && shouldRemoveCompileOnlyDependencies(project, configuration)) {
-            Set<ResolvedArtifact> filteredArtifacts = artifacts.collect(Collectors.toSet());
             Set<String> dependenciesToRemove = new HashSet<>();
 
-            configuration.getResolvedConfiguration().getFirstLevelModuleDependencies().stream()
-                .filter(dependency -> compileOnlyDependenciesIds.contains(getResolvedDependencyId(dependency)))
-                .forEach(dependency -> fillAllChildDependencies(dependency, dependenciesToRemove));
+            configurationDependencies.removeIf(dependency -> {
+              if (compileOnlyDependenciesIds.contains(getResolvedDependencyId(dependency))) {
+                fillAllChildDependencies(dependency, dependenciesToRemove);
+                return true;
+              }
+              return false;
+            });
 
-            filteredArtifacts.removeIf(artifact -> dependenciesToRemove.contains(getArtifactId(artifact)));
-            return filteredArtifacts.stream();
+            configurationArtifacts.removeIf(artifact -> dependenciesToRemove.contains(getArtifactId(artifact)));
           }
 
-          return artifacts;
-        }).collect(Collectors.toSet());
+          configurationDependencies.forEach(dependency -> dependencies.merge(dependency.getName(), dependency,
+              this::mergeResolvedDependencies));
+          artifacts.addAll(configurationArtifacts);
+        });
+
+    return new ResolvedDependenciesSnapshot(new LinkedHashSet<>(dependencies.values()), artifacts);
   }
 
   @VisibleForTesting
@@ -235,18 +393,33 @@ public class DependenciesFinder
       ResolvedDependency resolvedDependency,
       boolean isDirect,
       Set<String> processedDependencies)
+  {
+    return processDependency(resolvedDependency, isDirect, processedDependencies, new HashSet<>());
+  }
+
+  /**
+   * A child processed before is added again without its children, unless it is still in progress: then it is an
+   * ancestor of the dependency in this traversal and adding it would close a cycle. Keeping the ancestors in a set makes
+   * each check constant time, instead of walking up the parents of the dependency.
+   */
+  private Dependency processDependency(
+      ResolvedDependency resolvedDependency,
+      boolean isDirect,
+      Set<String> processedDependencies,
+      Set<String> dependenciesInProgress)
   {
     Dependency dependency = new Dependency()
         .setId(resolvedDependency.getName())
         .setDirect(isDirect);
 
     processedDependencies.add(resolvedDependency.getName());
+    dependenciesInProgress.add(resolvedDependency.getName());
 
     resolvedDependency.getChildren().forEach(child -> {
       if (processedDependencies.add(child.getName())) {
-        dependency.addDependency(processDependency(child, false, processedDependencies));
+        dependency.addDependency(processDependency(child, false, processedDependencies, dependenciesInProgress));
       }
-      else if (!isParent(resolvedDependency, child, new HashSet<>())) {
+      else if (!dependenciesInProgress.contains(child.getName())) {
         Dependency childDependency = new Dependency()
             .setId(child.getName())
             .setDirect(false);
@@ -255,25 +428,9 @@ public class DependenciesFinder
       }
     });
 
-    return dependency;
-  }
+    dependenciesInProgress.remove(resolvedDependency.getName());
 
-  private boolean isParent(
-      ResolvedDependency dependency,
-      ResolvedDependency possibleParent,
-      Set<String> processedParents)
-  {
-    Set<ResolvedDependency> parents = dependency.getParents();
-    for (ResolvedDependency parent : parents) {
-      if (parent.getName().equals(possibleParent.getName())) {
-        return true;
-      }
-      if (processedParents.add(parent.getName())) {
-        isParent(parent, possibleParent, processedParents);
-      }
-    }
-
-    return false;
+    return dependency;
   }
 
   private boolean isAcceptableConfiguration(Configuration configuration, boolean allConfigurations) {
@@ -324,12 +481,10 @@ public class DependenciesFinder
     }
   }
 
-  private Collector<ResolvedDependency, ?, LinkedHashMap<String, ResolvedDependency>> collectResolvedDependencies() {
-    return Collectors.toMap(ResolvedDependency::getName, Function.identity(), (existing, replacement) -> {
-      if (StringUtils.containsAny(replacement.getConfiguration().toLowerCase(Locale.ROOT), "runtime", "release")) {
-        return replacement;
-      }
-      return existing;
-    }, LinkedHashMap::new);
+  private ResolvedDependency mergeResolvedDependencies(ResolvedDependency existing, ResolvedDependency replacement) {
+    if (StringUtils.containsAny(replacement.getConfiguration().toLowerCase(Locale.ROOT), "runtime", "release")) {
+      return replacement;
+    }
+    return existing;
   }
 }
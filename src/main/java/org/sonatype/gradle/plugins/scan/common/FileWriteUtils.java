@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.common;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.UUID;
+
+public class FileWriteUtils
+{
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private FileWriteUtils() {
+    // Utils class
+  }
+
+  /**
+   * Writes the file through a temporary file in the same directory, which then replaces the file with an atomic move
+   * when the file system supports it. Readers never see a partially written file and concurrent writers don't
+   * interleave their contents, the last one to finish wins. The content goes through a buffer to the file channel, so
+   * writers can write small chunks without a system call for each of them.
+   */
+  public static void writeAtomically(Path file, ContentWriter contentWriter) throws IOException {
+    Path tempFile = createTempFile(file);
+    try {
+      try (OutputStream outputStream = newBufferedOutputStream(tempFile)) {
+        contentWriter.write(outputStream);
+      }
+      moveReplacing(tempFile, file);
+    }
+    finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  /**
+   * Opens a buffered output stream over the channel of an existing file, for writers sending small chunks.
+   */
+  public static OutputStream newBufferedOutputStream(Path file) throws IOException {
+    return new BufferedOutputStream(
+        Channels.newOutputStream(FileChannel.open(file, StandardOpenOption.WRITE)), BUFFER_SIZE);
+  }
+
+  /**
+   * Creates an empty temporary file in the directory of the given file, creating the directory when missing. Unlike
+   * {@link Files#createTempFile(Path, String, String)}, which makes the file readable by its owner only, its
+   * permissions follow the umask just like those of any other file written by the build.
+   */
+  public static Path createTempFile(Path file) throws IOException {
+    Path directory = file.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    return Files.createFile(directory.resolve("." + file.getFileName() + "." + UUID.randomUUID() + ".tmp"));
+  }
+
+  /**
+   * @return whether both files have the same bytes, compared a buffer at a time after their sizes.
+   */
+  public static boolean hasSameContent(Path file1, Path file2) throws IOException {
+    if (Files.size(file1) != Files.size(file2)) {
+      return false;
+    }
+
+    byte[] buffer1 = new byte[BUFFER_SIZE];
+    byte[] buffer2 = new byte[BUFFER_SIZE];
+    try (InputStream inputStream1 = Files.newInputStream(file1);
+        InputStream inputStream2 = Files.newInputStream(file2)) {
+      int read1;
+      do {
+        read1 = inputStream1.readNBytes(buffer1, 0, BUFFER_SIZE);
+        int read2 = inputStream2.readNBytes(buffer2, 0, BUFFER_SIZE);
+        if (read1 != read2 || !Arrays.equals(buffer1, 0, read1, buffer2, 0, read2)) {
+          return false;
+        }
+      }
+      while (read1 == BUFFER_SIZE);
+    }
+    return true;
+  }
+
+  /**
+   * Replaces the target with the source, with an atomic move when the file system supports it.
+   */
+  public static void moveReplacing(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  @FunctionalInterface
+  public interface ContentWriter
+  {
+    void write(OutputStream outputStream) throws IOException;
+  }
+}
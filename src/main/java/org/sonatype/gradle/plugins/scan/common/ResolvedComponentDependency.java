@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.common;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.artifacts.ResolvedDependency;
+import org.gradle.api.artifacts.ResolvedModuleVersion;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.result.DependencyResult;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.artifacts.result.ResolvedDependencyResult;
+import org.gradle.api.artifacts.result.UnresolvedDependencyResult;
+
+/**
+ * Exposes a node of a {@link ResolvedComponentResult} graph as a {@link ResolvedDependency}, so the graph obtained
+ * through the configuration cache compatible ResolutionResult API can be handled like the one from a
+ * {@link org.gradle.api.artifacts.ResolvedConfiguration}. There is a single instance per component in a graph.
+ * <p>
+ * The configuration of every node is the resolved configuration the graph comes from, e.g. runtimeClasspath, as the
+ * resolution result doesn't tell which configuration of the component was selected. The artifacts are not part of the
+ * resolution result either, so the artifact related methods throw instead of returning a wrong empty set; they have to
+ * be resolved through an {@link org.gradle.api.artifacts.ArtifactView} of the configuration.
+ */
+public class ResolvedComponentDependency
+    implements ResolvedDependency
+{
+  private final ResolvedComponentResult component;
+
+  private final String configuration;
+
+  private final Map<ComponentIdentifier, ResolvedComponentDependency> graph;
+
+  private Set<ResolvedDependency> children;
+
+  private Set<ResolvedDependency> parents;
+
+  private ResolvedComponentDependency(
+      ResolvedComponentResult component,
+      String configuration,
+      Map<ComponentIdentifier, ResolvedComponentDependency> graph)
+  {
+    this.component = component;
+    this.configuration = configuration;
+    this.graph = graph;
+  }
+
+  /**
+   * @param configurationName the name of the resolved configuration, reported as the configuration of every node.
+   */
+  public static Set<ResolvedDependency> getFirstLevelDependencies(
+      ResolvedComponentResult rootComponent,
+      String configurationName)
+  {
+    Map<ComponentIdentifier, ResolvedComponentDependency> graph = new HashMap<>();
+    graph.put(rootComponent.getId(), null);
+    return toDependencies(rootComponent, configurationName, graph);
+  }
+
+  private static Set<ResolvedDependency> toDependencies(
+      ResolvedComponentResult component,
+      String configurationName,
+      Map<ComponentIdentifier, ResolvedComponentDependency> graph)
+  {
+    Set<ResolvedDependency> dependencies = new LinkedHashSet<>();
+
+    for (DependencyResult dependencyResult : component.getDependencies()) {
+      if (dependencyResult.isConstraint()) {
+        continue;
+      }
+
+      if (dependencyResult instanceof UnresolvedDependencyResult) {
+        UnresolvedDependencyResult unresolved = (UnresolvedDependencyResult) dependencyResult;
+        throw new GradleException("Could not resolve " + unresolved.getAttempted().getDisplayName(),
+            unresolved.getFailure());
+      }
+
+      ResolvedDependencyResult resolved = (ResolvedDependencyResult) dependencyResult;
+      ResolvedComponentResult selected = resolved.getSelected();
+
+      ResolvedComponentDependency dependency = graph.get(selected.getId());
+      if (dependency == null && !graph.containsKey(selected.getId())) {
+        dependency = new ResolvedComponentDependency(selected, configurationName, graph);
+        graph.put(selected.getId(), dependency);
+      }
+
+      // a null value means the dependency points back to the root component
+      if (dependency != null) {
+        dependencies.add(dependency);
+      }
+    }
+
+    return dependencies;
+  }
+
+  @Override
+  public String getName() {
+    return getModuleGroup() + ":" + getModuleName() + ":" + getModuleVersion();
+  }
+
+  @Override
+  public String getModuleGroup() {
+    return component.getModuleVersion().getGroup();
+  }
+
+  @Override
+  public String getModuleName() {
+    return component.getModuleVersion().getName();
+  }
+
+  @Override
+  public String getModuleVersion() {
+    return component.getModuleVersion().getVersion();
+  }
+
+  @Override
+  public String getConfiguration() {
+    return configuration;
+  }
+
+  @Override
+  public ResolvedModuleVersion getModule() {
+    ModuleVersionIdentifier moduleVersion = component.getModuleVersion();
+    return () -> moduleVersion;
+  }
+
+  @Override
+  public Set<ResolvedDependency> getChildren() {
+    if (children == null) {
+      children = Collections.unmodifiableSet(toDependencies(component, configuration, graph));
+    }
+    return children;
+  }
+
+  @Override
+  public Set<ResolvedDependency> getParents() {
+    if (parents == null) {
+      Set<ResolvedDependency> result = new LinkedHashSet<>();
+      for (ResolvedDependencyResult dependent : component.getDependents()) {
+        ResolvedComponentDependency parent = graph.get(dependent.getFrom().getId());
+        if (parent != null) {
+          result.add(parent);
+        }
+      }
+      parents = Collections.unmodifiableSet(result);
+    }
+    return parents;
+  }
+
+  @Override
+  public Set<ResolvedArtifact> getModuleArtifacts() {
+    throw artifactsNotResolved();
+  }
+
+  @Override
+  public Set<ResolvedArtifact> getAllModuleArtifacts() {
+    throw artifactsNotResolved();
+  }
+
+  @Override
+  public Set<ResolvedArtifact> getParentArtifacts(ResolvedDependency parent) {
+    throw artifactsNotResolved();
+  }
+
+  @Override
+  public Set<ResolvedArtifact> getArtifacts(ResolvedDependency parent) {
+    throw artifactsNotResolved();
+  }
+
+  @Override
+  public Set<ResolvedArtifact> getAllArtifacts(ResolvedDependency parent) {
+    throw artifactsNotResolved();
+  }
+
+  private UnsupportedOperationException artifactsNotResolved() {
+    return new UnsupportedOperationException("The artifacts of " + getName() + " are not part of the resolution result "
+        + "of " + configuration + ", they must be resolved through an artifact view of the configuration");
+  }
+
+  @Override
+  public String toString() {
+    return getName() + ";" + getConfiguration();
+  }
+}
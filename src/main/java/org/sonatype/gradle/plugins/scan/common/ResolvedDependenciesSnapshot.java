@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.common;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.artifacts.ResolvedDependency;
+
+/**
+ * Result of resolving the acceptable configurations of a single project once. Artifacts, first level dependencies and
+ * (through them) the child graph are all read from the same resolution.
+ */
+public class ResolvedDependenciesSnapshot
+{
+  private final Set<ResolvedDependency> firstLevelDependencies;
+
+  private final Set<ResolvedArtifact> artifacts;
+
+  ResolvedDependenciesSnapshot(Set<ResolvedDependency> firstLevelDependencies, Set<ResolvedArtifact> artifacts) {
+    this.firstLevelDependencies = Collections.unmodifiableSet(firstLevelDependencies);
+    this.artifacts = Collections.unmodifiableSet(artifacts);
+  }
+
+  public Set<ResolvedDependency> getFirstLevelDependencies() {
+    return firstLevelDependencies;
+  }
+
+  public Set<ResolvedArtifact> getArtifacts() {
+    return artifacts;
+  }
+}
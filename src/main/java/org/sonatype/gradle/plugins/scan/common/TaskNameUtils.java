@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.common;
+
+import org.gradle.api.Project;
+
+public class TaskNameUtils
+{
+  private static final char ESCAPE = '_';
+
+  private static final String ESCAPED_SEPARATOR = ESCAPE + "-";
+
+  private TaskNameUtils() {
+    // Utils class
+  }
+
+  /**
+   * Builds the name of a task registered on behalf of another project, made unique by that project's path. The path
+   * separators become "_-" and the underscores of the project names "__", so different paths always give different
+   * names: e.g. ':a:b' gives 'prefix_-a_-b' while ':aB' gives 'prefix_-aB'. The root project gives the prefix alone.
+   */
+  public static String getTaskName(String prefix, Project project) {
+    String path = project.getPath();
+    if (Project.PATH_SEPARATOR.equals(path)) {
+      return prefix;
+    }
+
+    StringBuilder taskName = new StringBuilder(prefix);
+    for (char c : path.toCharArray()) {
+      if (c == ESCAPE) {
+        taskName.append(ESCAPE).append(ESCAPE);
+      }
+      else if (c == ':') {
+        taskName.append(ESCAPED_SEPARATOR);
+      }
+      else {
+        taskName.append(c);
+      }
+    }
+    return taskName.toString();
+  }
+}
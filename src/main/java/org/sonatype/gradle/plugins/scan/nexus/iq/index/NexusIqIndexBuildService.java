@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.nexus.iq.index;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.internal.impldep.com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared by all the {@link NexusIqIndexModuleTask}s of a build. When a maximum number of parallel writes is set, Gradle
+ * runs at most that many module tasks at the same time, even with {@code --parallel} and many more workers. The
+ * failures of the module tasks are collected by project and all reported together at the end of the build, as with
+ * {@code --continue} they would otherwise be scattered among the output of the other tasks. It also samples the heap
+ * used as the modules are written.
+ * <p>
+ * Build services are available since Gradle 6.1, on older versions the module tasks only run concurrently with
+ * {@code --parallel} and report their failures on their own.
+ */
+public abstract class NexusIqIndexBuildService
+    implements BuildService<BuildServiceParameters.None>, AutoCloseable
+{
+  public static final String NAME = "nexusIqIndexBuildService";
+
+  private static final Logger log = LoggerFactory.getLogger(NexusIqIndexBuildService.class);
+
+  // sorted by project path so the report is stable whatever order the tasks ran in
+  private final Map<String, String> failures = new ConcurrentSkipListMap<>();
+
+  private final AtomicLong maxHeapUsage = new AtomicLong();
+
+  public static Provider<NexusIqIndexBuildService> registerIfAbsent(Gradle gradle) {
+    return gradle.getSharedServices().registerIfAbsent(NAME, NexusIqIndexBuildService.class, spec -> { });
+  }
+
+  /**
+   * Sets the maximum number of module tasks running at the same time once the projects are evaluated, so the value is
+   * the one configured whatever realized the tasks first. The service is shared by the whole build, when several
+   * projects apply the plugin with different values the first one wins and the others are reported.
+   *
+   * @param maxParallelWrites the maximum number of module tasks running at the same time, no limit when not positive.
+   */
+  public static void configureMaxParallelWrites(Gradle gradle, String projectPath, int maxParallelWrites) {
+    if (maxParallelWrites <= 0) {
+      return;
+    }
+
+    Property<Integer> maxParallelUsages =
+        gradle.getSharedServices().getRegistrations().getByName(NAME).getMaxParallelUsages();
+    Integer configuredMaxParallelWrites = maxParallelUsages.getOrNull();
+    if (configuredMaxParallelWrites == null) {
+      maxParallelUsages.set(maxParallelWrites);
+    }
+    else if (configuredMaxParallelWrites != maxParallelWrites) {
+      log.warn("Ignoring maxParallelWrites = {} of project {}, the build already uses {} set by another project",
+          maxParallelWrites, projectPath, configuredMaxParallelWrites);
+    }
+  }
+
+  public void addFailure(String projectPath, Exception exception) {
+    failures.put(projectPath, String.valueOf(exception.getMessage()));
+  }
+
+  public Map<String, String> getFailures() {
+    return failures;
+  }
+
+  /**
+   * Samples the heap used by the whole build, including the tasks running in parallel, keeping the maximum.
+   */
+  public void sampleHeapUsage() {
+    recordHeapUsage(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+  }
+
+  @VisibleForTesting
+  void recordHeapUsage(long heapUsage) {
+    maxHeapUsage.accumulateAndGet(heapUsage, Math::max);
+  }
+
+  /**
+   * @return the maximum of the heap usage samples taken in this build, in bytes.
+   */
+  public long getMaxHeapUsage() {
+    return maxHeapUsage.get();
+  }
+
+  @Override
+  public void close() {
+    if (!failures.isEmpty()) {
+      log.error("Could not save the module information of {} projects:\n{}", failures.size(),
+          failures.entrySet().stream()
+              .map(failure -> "  " + failure.getKey() + ": " + failure.getValue())
+              .collect(Collectors.joining("\n")));
+    }
+    failures.clear();
+    maxHeapUsage.set(0);
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.nexus.iq.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import com.sonatype.insight.scan.module.model.Module;
+import com.sonatype.insight.scan.module.model.io.ModuleIoManager;
+
+import org.sonatype.gradle.plugins.scan.common.DependenciesFinder;
+import org.sonatype.gradle.plugins.scan.common.FileWriteUtils;
+import org.sonatype.gradle.plugins.scan.common.TaskNameUtils;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.internal.impldep.com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.sonatype.gradle.plugins.scan.nexus.iq.index.NexusIqIndexTask.MODULE_XML_FILE;
+import static org.sonatype.gradle.plugins.scan.nexus.iq.scan.NexusIqPluginScanExtension.SONATYPE_CLM_FOLDER;
+
+/**
+ * Writes the module information of the project owning this task on behalf of a {@link NexusIqIndexTask}. Having one
+ * of these tasks per indexed project lets Gradle run them concurrently when the build uses {@code --parallel} and check
+ * each module for changes on its own: the task is cacheable, its input is a fingerprint of the resolved dependencies of
+ * the project and its output is the module file.
+ */
+@CacheableTask
+public class NexusIqIndexModuleTask
+    extends DefaultTask
+{
+  private static final String TASK_NAME_PREFIX = "nexusIQIndexModule";
+
+  private final Logger log = LoggerFactory.getLogger(NexusIqIndexModuleTask.class);
+
+  private final NexusIqPluginIndexExtension extension;
+
+  private DependenciesFinder dependenciesFinder;
+
+  private ModuleIoManager moduleIoManager;
+
+  private Provider<NexusIqIndexBuildService> buildService;
+
+  private Boolean moduleFileWritten;
+
+  @Inject
+  public NexusIqIndexModuleTask(NexusIqPluginIndexExtension extension) {
+    this.extension = extension;
+    dependenciesFinder = new DependenciesFinder();
+    moduleIoManager = new ModuleIoManager(log);
+  }
+
+  /**
+   * Bounds the module tasks running at once and collects their failures. Requires Gradle 6.1+.
+   */
+  public void useBuildService(Provider<NexusIqIndexBuildService> buildService) {
+    this.buildService = buildService;
+    usesService(buildService);
+  }
+
+  @TaskAction
+  public void saveModule() {
+    try {
+      Module module = dependenciesFinder.findModule(getProject(), extension.isAllConfigurations(),
+          extension.getVariantAttributes(), extension.isExcludeCompileOnly());
+      File file = getModuleFile();
+      boolean written = writeModuleIfChanged(file.toPath(), module);
+      moduleFileWritten = written;
+      if (buildService != null) {
+        // the module is still referenced, so this is close to the peak of the task
+        buildService.get().sampleHeapUsage();
+      }
+
+      log.info(written ? "Saved module information to {}" : "Module information unchanged in {}", file);
+    }
+    catch (Exception e) {
+      if (buildService != null) {
+        buildService.get().addFailure(getProject().getPath(), e);
+      }
+      throw new GradleException("Could not save the module information for the project: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Writes the module to a temporary file next to the module file, which only replaces the module file when their
+   * contents differ. An unchanged module file keeps its last modified time, so tools watching it don't see a change.
+   *
+   * @return whether the module file was written.
+   */
+  private boolean writeModuleIfChanged(Path file, Module module) throws IOException {
+    Path tempFile = FileWriteUtils.createTempFile(file);
+    try {
+      moduleIoManager.writeModule(tempFile.toFile(), module);
+      if (Files.isRegularFile(file) && FileWriteUtils.hasSameContent(tempFile, file)) {
+        return false;
+      }
+
+      FileWriteUtils.moveReplacing(tempFile, file);
+      return true;
+    }
+    finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  /**
+   * @return whether the last execution of this task wrote the module file or left it unchanged, null when the task
+   * didn't execute in this build.
+   */
+  @Internal
+  public Boolean getModuleFileWritten() {
+    return moduleFileWritten;
+  }
+
+  @VisibleForTesting
+  void setDependenciesFinder(DependenciesFinder dependenciesFinder) {
+    this.dependenciesFinder = dependenciesFinder;
+  }
+
+  @VisibleForTesting
+  void setModuleIoManager(ModuleIoManager moduleIoManager) {
+    this.moduleIoManager = moduleIoManager;
+  }
+
+  @Input
+  public boolean isAllConfigurations() {
+    return extension.isAllConfigurations();
+  }
+
+  @Input
+  public Map<String, String> getVariantAttributes() {
+    return extension.getVariantAttributes();
+  }
+
+  @Input
+  public boolean isExcludeCompileOnly() {
+    return extension.isExcludeCompileOnly();
+  }
+
+  /**
+   * The fingerprint includes the absolute paths of the project and the artifacts, just like the module file does, so
+   * the output is only reused for the same checkout.
+   */
+  @Input
+  public String getDependencyGraphFingerprint() {
+    return dependenciesFinder.findModuleFingerprint(getProject(), extension.isAllConfigurations(),
+        extension.getVariantAttributes(), extension.isExcludeCompileOnly());
+  }
+
+  @OutputFile
+  public File getModuleFile() {
+    return Paths.get(getProject().getProjectDir().getPath(), "build", SONATYPE_CLM_FOLDER, MODULE_XML_FILE).toFile();
+  }
+
+  /**
+   * Each project applying the plugin indexes its own subtree, so the task name includes the path of the indexing
+   * project to keep it unique when the plugin is applied on more than one project of the build.
+   */
+  public static String getTaskName(Project indexingProject) {
+    return TaskNameUtils.getTaskName(TASK_NAME_PREFIX, indexingProject);
+  }
+}
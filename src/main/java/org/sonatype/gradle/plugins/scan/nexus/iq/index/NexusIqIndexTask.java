@@ -16,74 +16,129 @@
 package org.sonatype.gradle.plugins.scan.nexus.iq.index;
 
 import java.io.File;
-import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-
-import com.sonatype.insight.scan.module.model.Module;
-import com.sonatype.insight.scan.module.model.io.ModuleIoManager;
-
-import org.sonatype.gradle.plugins.scan.common.DependenciesFinder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
 import org.gradle.api.DefaultTask;
-import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.TaskState;
 import org.gradle.internal.impldep.com.google.common.annotations.VisibleForTesting;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static org.sonatype.gradle.plugins.scan.nexus.iq.scan.NexusIqPluginScanExtension.SONATYPE_CLM_FOLDER;
-
+/**
+ * Saves the module information of the project and its subprojects. The module files are written by the
+ * {@link NexusIqIndexModuleTask} of each project not excluded, which this task depends on, so it only aggregates them.
+ */
 public class NexusIqIndexTask
     extends DefaultTask
 {
   public static final String MODULE_XML_FILE = "module.xml";
 
+  private static final long MEGABYTE = 1024 * 1024;
+
+  private static final String FROM_CACHE_SKIP_MESSAGE = "FROM-CACHE";
+
+  private static final String WRITTEN = "written";
+
+  private static final String UNCHANGED = "unchanged";
+
+  private static final String UP_TO_DATE = "up-to-date";
+
+  private static final String FROM_CACHE = "from cache";
+
+  private static final String FAILED = "failed";
+
+  private static final String SKIPPED = "skipped";
+
   private final Logger log = LoggerFactory.getLogger(NexusIqIndexTask.class);
 
   private final NexusIqPluginIndexExtension extension;
 
-  private DependenciesFinder dependenciesFinder;
-
-  private ModuleIoManager moduleIoManager;
+  private Provider<NexusIqIndexBuildService> buildService;
 
   public NexusIqIndexTask() {
     extension = getProject().getExtensions().getByType(NexusIqPluginIndexExtension.class);
-    dependenciesFinder = new DependenciesFinder();
-    moduleIoManager = new ModuleIoManager(log);
+  }
+
+  /**
+   * Samples the heap used as the module tasks save their modules. Requires Gradle 6.1+.
+   */
+  public void useBuildService(Provider<NexusIqIndexBuildService> buildService) {
+    this.buildService = buildService;
+    usesService(buildService);
   }
 
   @TaskAction
-  public void saveModule() {
-    try {
-      List<Module> modules = dependenciesFinder.findModules(getProject(), extension.isAllConfigurations(),
-          extension.getModulesExcluded(), extension.getVariantAttributes(), extension.isExcludeCompileOnly());
-      List<File> files = new ArrayList<>(modules.size());
-
-      for (Module module : modules) {
-        File file = Paths.get(module.getPathname(), "build", SONATYPE_CLM_FOLDER, MODULE_XML_FILE).toFile();
-        moduleIoManager.writeModule(file, module);
-        files.add(file);
-      }
-
-      log.info("Saved module information to {}", StringUtils.join(files, ", "));
-    }
-    catch (Exception e) {
-      throw new GradleException("Could not save the module information for the project: " + e.getMessage(), e);
+  public void reportModules() {
+    List<NexusIqIndexModuleTask> moduleTasks = getModuleTasks();
+    List<File> files = moduleTasks.stream()
+        .map(NexusIqIndexModuleTask::getModuleFile)
+        .collect(Collectors.toList());
+
+    log.info("Saved module information to {}", StringUtils.join(files, ", "));
+    log.info("Module files: {}", summarizeModuleTasks(moduleTasks));
+
+    if (buildService != null) {
+      // each module task builds, writes and releases a single module, so the samples stay bounded by the largest ones
+      log.info("Max heap used by the build when module files were saved: {} MB (sampled, including parallel tasks)",
+          buildService.get().getMaxHeapUsage() / MEGABYTE);
     }
   }
 
+  /**
+   * @return how many of the module tasks of this task wrote their module file, left it unchanged, were up-to-date,
+   * restored it from the build cache, failed or were skipped, leaving out the outcomes no task had.
+   */
   @VisibleForTesting
-  void setDependenciesFinder(DependenciesFinder dependenciesFinder) {
-    this.dependenciesFinder = dependenciesFinder;
+  static String summarizeModuleTasks(List<NexusIqIndexModuleTask> moduleTasks) {
+    Map<String, Integer> counts = new LinkedHashMap<>();
+    Stream.of(WRITTEN, UNCHANGED, UP_TO_DATE, FROM_CACHE, FAILED, SKIPPED).forEach(outcome -> counts.put(outcome, 0));
+    moduleTasks.forEach(moduleTask -> counts.merge(getOutcome(moduleTask), 1, Integer::sum));
+
+    return counts.entrySet().stream()
+        .filter(count -> count.getValue() > 0)
+        .map(count -> count.getValue() + " " + count.getKey())
+        .collect(Collectors.joining(", "));
   }
 
-  @VisibleForTesting
-  void setModuleIoManager(ModuleIoManager moduleIoManager) {
-    this.moduleIoManager = moduleIoManager;
+  private static String getOutcome(NexusIqIndexModuleTask moduleTask) {
+    TaskState state = moduleTask.getState();
+    if (state.getFailure() != null) {
+      return FAILED;
+    }
+    if (FROM_CACHE_SKIP_MESSAGE.equals(state.getSkipMessage())) {
+      return FROM_CACHE;
+    }
+    if (state.getUpToDate()) {
+      return UP_TO_DATE;
+    }
+    if (moduleTask.getModuleFileWritten() != null) {
+      return moduleTask.getModuleFileWritten() ? WRITTEN : UNCHANGED;
+    }
+    return SKIPPED;
+  }
+
+  /**
+   * @return the tasks writing the module file of each project not excluded.
+   */
+  @Internal
+  public List<NexusIqIndexModuleTask> getModuleTasks() {
+    String taskName = NexusIqIndexModuleTask.getTaskName(getProject());
+    return getProject().getAllprojects().stream()
+        .filter(project -> !extension.getModulesExcluded().contains(project.getName()))
+        .map(Project::getTasks)
+        .map(tasks -> (NexusIqIndexModuleTask) tasks.getByName(taskName))
+        .collect(Collectors.toList());
   }
 
   @Input
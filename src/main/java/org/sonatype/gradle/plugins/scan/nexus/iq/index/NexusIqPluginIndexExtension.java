@@ -31,6 +31,11 @@ public class NexusIqPluginIndexExtension
 
   private boolean excludeCompileOnly;
 
+  /**
+   * The maximum number of module files written at the same time, no limit but Gradle's max workers when not positive.
+   */
+  private int maxParallelWrites;
+
   public NexusIqPluginIndexExtension(Project project) {
     modulesExcluded = Collections.emptySet();
     variantAttributes = Collections.emptyMap();
@@ -67,4 +72,12 @@ public class NexusIqPluginIndexExtension
   public void setExcludeCompileOnly(boolean excludeCompileOnly) {
     this.excludeCompileOnly = excludeCompileOnly;
   }
+
+  public int getMaxParallelWrites() {
+    return maxParallelWrites;
+  }
+
+  public void setMaxParallelWrites(int maxParallelWrites) {
+    this.maxParallelWrites = maxParallelWrites;
+  }
 }
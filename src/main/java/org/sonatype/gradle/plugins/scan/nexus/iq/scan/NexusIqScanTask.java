@@ -17,13 +17,12 @@ package org.sonatype.gradle.plugins.scan.nexus.iq.scan;
 
 import java.io.File;
 import java.net.URI;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import com.sonatype.insight.brain.client.PolicyAction;
 import com.sonatype.insight.scan.module.model.Module;
@@ -44,7 +43,6 @@ import org.sonatype.gradle.plugins.scan.common.DependenciesFinder;
 import org.sonatype.gradle.plugins.scan.common.PluginVersionUtils;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.tools.ant.DirectoryScanner;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
 import org.gradle.api.tasks.Input;
@@ -53,8 +51,6 @@ import org.gradle.internal.impldep.com.google.common.annotations.VisibleForTesti
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static java.util.Arrays.stream;
-
 public class NexusIqScanTask
     extends DefaultTask
 {
@@ -173,16 +169,8 @@ public class NexusIqScanTask
 
   private List<File> buildScanTargets() {
     if (extension.getScanTargets() != null && !extension.getScanTargets().isEmpty()) {
-      // Using the same approach as the Jenkins plugin for consistency
-      DirectoryScanner directoryScanner = new DirectoryScanner();
-      directoryScanner.setBasedir(extension.getScanFolderPath());
-      directoryScanner.setIncludes(extension.getScanTargets().toArray(new String[extension.getScanTargets().size()]));
-      directoryScanner.addDefaultExcludes();
-      directoryScanner.scan();
-      return Stream
-          .concat(stream(directoryScanner.getIncludedDirectories()), stream(directoryScanner.getIncludedFiles()))
-          .map(file -> new File(extension.getScanFolderPath(), file))
-          .collect(Collectors.toList());
+      // Same matching as the Ant DirectoryScanner used by the Jenkins plugin, for consistency
+      return new ScanTargetFinder(Paths.get(extension.getScanFolderPath()), extension.getScanTargets()).find();
     }
     return Collections.emptyList();
   }
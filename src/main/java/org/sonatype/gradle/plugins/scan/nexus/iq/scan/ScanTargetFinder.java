@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.nexus.iq.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds the directories and files under a base directory matching Ant style include patterns, with Ant's default
+ * excludes, the same way the Ant {@code DirectoryScanner} does. The subtrees are walked in parallel on a fork/join pool
+ * and the directories which can't hold any match are not walked at all.
+ * <p>
+ * The include patterns are compiled to regular expressions as Java globs don't match the same paths, {@code **}
+ * matches no directory at all in Ant but at least one in a glob.
+ */
+public class ScanTargetFinder
+{
+  private static final Logger log = LoggerFactory.getLogger(ScanTargetFinder.class);
+
+  /**
+   * The subtrees below this depth are walked by the task of their ancestor instead of being forked.
+   */
+  private static final int MAX_FORK_DEPTH = 4;
+
+  private static final String ANY_DIRECTORIES = "**";
+
+  // Ant's default excludes: the contents of the version control directories, and the names below wherever they are
+  private static final Set<String> EXCLUDED_DIRECTORIES =
+      new HashSet<>(Arrays.asList("CVS", "SCCS", ".svn", ".git", ".hg", ".bzr"));
+
+  private static final List<PathMatcher> EXCLUDED_NAMES = Stream.of("*~", "#*#", ".#*", "%*%", "._*", "CVS",
+      ".cvsignore", "SCCS", "vssver.scc", ".svn", ".git", ".gitattributes", ".gitignore", ".gitmodules", ".hg",
+      ".hgignore", ".hgsub", ".hgsubstate", ".hgtags", ".bzr", ".bzrignore", ".DS_Store")
+      .map(glob -> FileSystems.getDefault().getPathMatcher("glob:" + glob))
+      .collect(Collectors.toList());
+
+  private final Path baseDirectory;
+
+  private final List<IncludePattern> includes;
+
+  private final Queue<String> includedDirectories = new ConcurrentLinkedQueue<>();
+
+  private final Queue<String> includedFiles = new ConcurrentLinkedQueue<>();
+
+  public ScanTargetFinder(Path baseDirectory, Collection<String> includes) {
+    this.baseDirectory = baseDirectory;
+    this.includes = includes.stream().map(IncludePattern::new).collect(Collectors.toList());
+  }
+
+  /**
+   * @return the included directories then the included files, each sorted by path.
+   */
+  public List<File> find() {
+    if (!Files.isDirectory(baseDirectory)) {
+      throw new IllegalStateException("The scan folder " + baseDirectory + " does not exist or is not a directory");
+    }
+
+    if (isIncluded("")) {
+      includedDirectories.add("");
+    }
+
+    ForkJoinPool pool = new ForkJoinPool();
+    try {
+      pool.invoke(new DirectoryTask(baseDirectory, "", 0));
+    }
+    finally {
+      pool.shutdown();
+    }
+
+    return Stream.concat(includedDirectories.stream().sorted(), includedFiles.stream().sorted())
+        .map(relativePath -> baseDirectory.resolve(relativePath.replace('/', File.separatorChar)).toFile())
+        .collect(Collectors.toList());
+  }
+
+  private void visit(Path path, String relativePath, boolean isDirectory) {
+    if (isIncluded(relativePath) && !isExcluded(path.getFileName())) {
+      (isDirectory ? includedDirectories : includedFiles).add(relativePath);
+    }
+  }
+
+  private boolean shouldWalk(Path directory, String relativePath) {
+    if (EXCLUDED_DIRECTORIES.contains(directory.getFileName().toString())) {
+      return false;
+    }
+    String[] segments = relativePath.split("/");
+    return includes.stream().anyMatch(include -> include.couldMatchBelow(segments));
+  }
+
+  private boolean isIncluded(String relativePath) {
+    return includes.stream().anyMatch(include -> include.matches(relativePath));
+  }
+
+  private static boolean isExcluded(Path name) {
+    return EXCLUDED_NAMES.stream().anyMatch(matcher -> matcher.matches(name));
+  }
+
+  private static String resolve(String relativePath, Path name) {
+    return relativePath.isEmpty() ? name.toString() : relativePath + "/" + name;
+  }
+
+  /**
+   * Lists a directory, forking a task for each subdirectory up to {@link #MAX_FORK_DEPTH} and walking the deeper ones
+   * in place.
+   */
+  private class DirectoryTask
+      extends RecursiveAction
+  {
+    private final Path directory;
+
+    private final String relativePath;
+
+    private final int depth;
+
+    DirectoryTask(Path directory, String relativePath, int depth) {
+      this.directory = directory;
+      this.relativePath = relativePath;
+      this.depth = depth;
+    }
+
+    @Override
+    protected void compute() {
+      List<DirectoryTask> subtasks = new ArrayList<>();
+
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+        for (Path entry : entries) {
+          String entryRelativePath = resolve(relativePath, entry.getFileName());
+          boolean isDirectory = Files.isDirectory(entry);
+          visit(entry, entryRelativePath, isDirectory);
+
+          if (isDirectory && shouldWalk(entry, entryRelativePath)) {
+            if (depth < MAX_FORK_DEPTH) {
+              subtasks.add(new DirectoryTask(entry, entryRelativePath, depth + 1));
+            }
+            else {
+              walk(entry, entryRelativePath);
+            }
+          }
+        }
+      }
+      catch (IOException e) {
+        log.debug("Could not list {}: {}", directory, e.getMessage());
+      }
+
+      invokeAll(subtasks);
+    }
+
+    private void walk(Path start, String startRelativePath) throws IOException {
+      Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+          new SimpleFileVisitor<Path>()
+          {
+            private final List<String> relativePaths = new ArrayList<>();
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+              if (dir.equals(start)) {
+                relativePaths.add(startRelativePath);
+                return FileVisitResult.CONTINUE;
+              }
+
+              String dirRelativePath = resolve(relativePaths.get(relativePaths.size() - 1), dir.getFileName());
+              visit(dir, dirRelativePath, true);
+              if (!shouldWalk(dir, dirRelativePath)) {
+                return FileVisitResult.SKIP_SUBTREE;
+              }
+              relativePaths.add(dirRelativePath);
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+              visit(file, resolve(relativePaths.get(relativePaths.size() - 1), file.getFileName()), false);
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+              // unreadable entries and symbolic link loops are skipped, as the Ant scanner does
+              log.debug("Could not visit {}: {}", file, e.getMessage());
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+              relativePaths.remove(relativePaths.size() - 1);
+              return FileVisitResult.CONTINUE;
+            }
+          });
+    }
+  }
+
+  /**
+   * An Ant style pattern: {@code **} matches any number of directories, {@code *} any characters and {@code ?} one
+   * character of a name. A pattern ending with a separator matches everything below it.
+   */
+  private static class IncludePattern
+  {
+    private final Pattern pattern;
+
+    // one pattern for each segment, null for **
+    private final List<Pattern> segments = new ArrayList<>();
+
+    IncludePattern(String include) {
+      String normalized = include.replace('\\', '/');
+      if (normalized.endsWith("/")) {
+        normalized += ANY_DIRECTORIES;
+      }
+
+      List<String> tokens = new ArrayList<>();
+      for (String token : normalized.split("/")) {
+        if (token.isEmpty() || (ANY_DIRECTORIES.equals(token) && !tokens.isEmpty()
+            && ANY_DIRECTORIES.equals(tokens.get(tokens.size() - 1)))) {
+          continue;
+        }
+        tokens.add(token);
+      }
+
+      StringBuilder regex = new StringBuilder();
+      for (int i = 0; i < tokens.size(); i++) {
+        String token = tokens.get(i);
+        boolean last = i == tokens.size() - 1;
+        if (ANY_DIRECTORIES.equals(token)) {
+          segments.add(null);
+          if (!last) {
+            regex.append("(?:[^/]*/)*");
+          }
+          else if (i == 0) {
+            regex.append(".*");
+          }
+          else {
+            // a/** matches a itself too
+            regex.setLength(regex.length() - 1);
+            regex.append("(?:/.*)?");
+          }
+        }
+        else {
+          String segmentRegex = toRegex(token);
+          segments.add(Pattern.compile(segmentRegex));
+          regex.append(segmentRegex);
+          if (!last) {
+            regex.append('/');
+          }
+        }
+      }
+      pattern = Pattern.compile(regex.toString());
+    }
+
+    boolean matches(String relativePath) {
+      return pattern.matcher(relativePath).matches();
+    }
+
+    /**
+     * @return whether a path below the directory could match, false only when its segments contradict the pattern.
+     */
+    boolean couldMatchBelow(String[] directorySegments) {
+      for (int i = 0; i < directorySegments.length; i++) {
+        if (i >= segments.size()) {
+          return false;
+        }
+        Pattern segment = segments.get(i);
+        if (segment == null) {
+          return true;
+        }
+        if (!segment.matcher(directorySegments[i]).matches()) {
+          return false;
+        }
+      }
+      return directorySegments.length < segments.size();
+    }
+
+    private static String toRegex(String token) {
+      StringBuilder regex = new StringBuilder();
+      StringBuilder literal = new StringBuilder();
+      for (char character : token.toCharArray()) {
+        if (character == '*' || character == '?') {
+          if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+            literal.setLength(0);
+          }
+          regex.append(character == '*' ? "[^/]*" : "[^/]");
+        }
+        else {
+          literal.append(character);
+        }
+      }
+      if (literal.length() > 0) {
+        regex.append(Pattern.quote(literal.toString()));
+      }
+      return regex.toString();
+    }
+  }
+}
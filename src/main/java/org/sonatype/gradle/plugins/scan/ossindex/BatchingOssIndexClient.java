@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.ossindex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sonatype.goodies.packageurl.PackageUrl;
+import org.sonatype.ossindex.service.api.componentreport.ComponentReport;
+import org.sonatype.ossindex.service.client.OssindexClient;
+import org.sonatype.ossindex.service.client.transport.Transport.TransportException;
+
+import com.google.common.collect.Lists;
+import org.gradle.internal.impldep.com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits the component report requests in batches and sends them concurrently to OSS Index, merging the responses.
+ * The number of requests in flight is bounded per OSS Index host, across all the clients of the JVM, and a batch
+ * rejected with a 429 status because of rate limiting is retried after an exponential backoff. Virtual threads are used
+ * when the JVM supports them.
+ */
+public class BatchingOssIndexClient
+    implements OssindexClient
+{
+  private static final Logger log = LoggerFactory.getLogger(BatchingOssIndexClient.class);
+
+  private static final int TOO_MANY_REQUESTS_STATUS = 429;
+
+  // the first client sending requests to a host sets its limit
+  private static final Map<String, Semaphore> HOST_PERMITS = new ConcurrentHashMap<>();
+
+  private final OssindexClient delegate;
+
+  private final String host;
+
+  private final int batchSize;
+
+  private final int maxConcurrentRequests;
+
+  private final int rateLimitMaxRetries;
+
+  private final long rateLimitBackoffMillis;
+
+  public BatchingOssIndexClient(
+      OssindexClient delegate,
+      String host,
+      int batchSize,
+      int maxConcurrentRequests,
+      int rateLimitMaxRetries,
+      long rateLimitBackoffMillis)
+  {
+    this.delegate = delegate;
+    this.host = host;
+    this.batchSize = Math.max(1, batchSize);
+    this.maxConcurrentRequests = Math.max(1, maxConcurrentRequests);
+    this.rateLimitMaxRetries = Math.max(0, rateLimitMaxRetries);
+    this.rateLimitBackoffMillis = Math.max(0, rateLimitBackoffMillis);
+  }
+
+  @Override
+  public Map<PackageUrl, ComponentReport> requestComponentReports(List<PackageUrl> coordinates) throws Exception {
+    List<List<PackageUrl>> batches = Lists.partition(coordinates, batchSize);
+    Semaphore permits = HOST_PERMITS.computeIfAbsent(host, key -> new Semaphore(maxConcurrentRequests));
+    if (batches.size() <= 1 || maxConcurrentRequests == 1) {
+      Map<PackageUrl, ComponentReport> response = new HashMap<>();
+      for (List<PackageUrl> batch : batches) {
+        response.putAll(requestBatch(permits, batch));
+      }
+      return response;
+    }
+
+    log.debug("Requesting {} component reports in {} batches, up to {} at a time", coordinates.size(),
+        batches.size(), maxConcurrentRequests);
+
+    ExecutorService executor = buildExecutor(Math.min(maxConcurrentRequests, batches.size()));
+    try {
+      List<Future<Map<PackageUrl, ComponentReport>>> futures = new ArrayList<>(batches.size());
+      for (List<PackageUrl> batch : batches) {
+        futures.add(executor.submit(() -> requestBatch(permits, batch)));
+      }
+
+      Map<PackageUrl, ComponentReport> response = new HashMap<>();
+      for (Future<Map<PackageUrl, ComponentReport>> future : futures) {
+        response.putAll(getResponse(future));
+      }
+      return response;
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Override
+  public ComponentReport requestComponentReport(PackageUrl coordinates) throws Exception {
+    return delegate.requestComponentReport(coordinates);
+  }
+
+  @Override
+  public void close() throws Exception {
+    delegate.close();
+  }
+
+  @VisibleForTesting
+  void sleep(long millis) throws InterruptedException {
+    Thread.sleep(millis);
+  }
+
+  private Map<PackageUrl, ComponentReport> requestBatch(
+      Semaphore permits,
+      List<PackageUrl> batch) throws Exception
+  {
+    for (int retry = 0; ; retry++) {
+      permits.acquire();
+      try {
+        return delegate.requestComponentReports(batch);
+      }
+      catch (TransportException e) {
+        if (retry >= rateLimitMaxRetries || !isRateLimited(e)) {
+          throw e;
+        }
+      }
+      finally {
+        permits.release();
+      }
+
+      // the permit is released while backing off, so the other batches aren't held back
+      long backoffMillis = rateLimitBackoffMillis << Math.min(retry, 16);
+      log.info("OSS Index rate limit reached, retrying in {} ms", backoffMillis);
+      sleep(backoffMillis);
+    }
+  }
+
+  private static boolean isRateLimited(TransportException e) {
+    return e instanceof UnexpectedStatusException
+        && ((UnexpectedStatusException) e).getStatusCode() == TOO_MANY_REQUESTS_STATUS;
+  }
+
+  private static Map<PackageUrl, ComponentReport> getResponse(
+      Future<Map<PackageUrl, ComponentReport>> future) throws Exception
+  {
+    try {
+      return future.get();
+    }
+    catch (ExecutionException e) {
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+  }
+
+  private static ExecutorService buildExecutor(int threads) {
+    try {
+      // only available since Java 21, the semaphore bounds the requests in flight
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+    catch (ReflectiveOperationException e) {
+      AtomicInteger threadCount = new AtomicInteger();
+      return Executors.newFixedThreadPool(threads, runnable -> {
+        Thread thread = new Thread(runnable, "oss-index-request-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+}
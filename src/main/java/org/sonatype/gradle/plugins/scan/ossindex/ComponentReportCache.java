@@ -0,0 +1,415 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.ossindex;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.sonatype.goodies.packageurl.PackageUrl;
+import org.sonatype.gradle.plugins.scan.common.FileWriteUtils;
+import org.sonatype.ossindex.service.api.componentreport.ComponentReport;
+import org.sonatype.ossindex.service.client.cache.Cache;
+import org.sonatype.ossindex.service.client.cache.CacheConfiguration;
+import org.sonatype.ossindex.service.client.cache.DirectoryCache;
+import org.sonatype.ossindex.service.client.marshal.GsonMarshaller;
+import org.sonatype.ossindex.service.client.marshal.Marshaller;
+
+import org.joda.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Component report cache kept in a single compressed file, keyed by package URL. Each entry expires on its own after
+ * the configured duration and the entries closest to expire are evicted once the cache grows past the configured size.
+ * Next to the reports, the cache keeps the package URLs of the last audited dependency graphs keyed by their
+ * fingerprint, with the same expiration, so an incremental audit can tell which components are new since the previous
+ * one.
+ * The file is read once when the cache is created. When the cache is closed and has changed, the entries on disk are
+ * merged with the ones in memory under a lock shared with the other processes using the same file, and the result
+ * replaces the file atomically, so concurrent builds don't lose each other's entries.
+ */
+public class ComponentReportCache
+    implements Cache
+{
+  public static final String CACHE_FILE_NAME = "component-reports.json.gz";
+
+  static final String LOCK_FILE_NAME = CACHE_FILE_NAME + ".lock";
+
+  // a JVM can only hold one lock per file, so the caches of the same file in this JVM take turns first
+  private static final Map<Path, Object> IN_PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+  private static final Logger log = LoggerFactory.getLogger(ComponentReportCache.class);
+
+  static final int MAX_GRAPHS = 100;
+
+  private final Path cacheFile;
+
+  private final Path lockFile;
+
+  private final long expireAfterMillis;
+
+  private final int maxEntries;
+
+  private final Marshaller marshaller;
+
+  // insertion ordered, so the first entries are the ones closest to expire
+  private final Map<PackageUrl, CacheEntry> entries = new LinkedHashMap<>();
+
+  // same order as the entries
+  private final Map<String, GraphEntry> graphs = new LinkedHashMap<>();
+
+  private boolean modified;
+
+  public ComponentReportCache(Configuration configuration) {
+    this.cacheFile = configuration.getBaseDir().resolve(CACHE_FILE_NAME);
+    this.lockFile = configuration.getBaseDir().resolve(LOCK_FILE_NAME);
+    this.expireAfterMillis = configuration.getExpireAfter().getMillis();
+    this.maxEntries = configuration.getMaxEntries();
+    this.marshaller = new GsonMarshaller();
+    load();
+  }
+
+  @Override
+  public synchronized ComponentReport getIfPresent(PackageUrl packageUrl) {
+    CacheEntry entry = entries.get(packageUrl);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.isExpired(System.currentTimeMillis())) {
+      entries.remove(packageUrl);
+      modified = true;
+      return null;
+    }
+    return entry.report;
+  }
+
+  @Override
+  public synchronized void putAll(Map<PackageUrl, ComponentReport> reports) {
+    long expiresAt = System.currentTimeMillis() + expireAfterMillis;
+    reports.forEach((packageUrl, report) -> {
+      entries.remove(packageUrl);
+      entries.put(packageUrl, new CacheEntry(expiresAt, report));
+    });
+    modified |= !reports.isEmpty();
+    evict();
+  }
+
+  /**
+   * @return the package URLs of the dependency graph with the given fingerprint, or null when it isn't known or
+   * expired.
+   */
+  public synchronized Set<PackageUrl> getGraphIfPresent(String fingerprint) {
+    GraphEntry graph = graphs.get(fingerprint);
+    if (graph == null) {
+      return null;
+    }
+    if (graph.isExpired(System.currentTimeMillis())) {
+      graphs.remove(fingerprint);
+      modified = true;
+      return null;
+    }
+    return new LinkedHashSet<>(graph.packageUrls);
+  }
+
+  public synchronized void putGraph(String fingerprint, Collection<PackageUrl> packageUrls) {
+    graphs.remove(fingerprint);
+    graphs.put(fingerprint,
+        new GraphEntry(System.currentTimeMillis() + expireAfterMillis, fingerprint, new ArrayList<>(packageUrls)));
+    modified = true;
+    evict();
+  }
+
+  @Override
+  public synchronized void close() {
+    if (!modified) {
+      return;
+    }
+
+    try {
+      Files.createDirectories(cacheFile.getParent());
+      synchronized (IN_PROCESS_LOCKS.computeIfAbsent(lockFile.toAbsolutePath().normalize(), path -> new Object())) {
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock ignored = channel.lock()) {
+          mergeStoredContent();
+          FileWriteUtils.writeAtomically(cacheFile, outputStream -> {
+            try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new GZIPOutputStream(outputStream), StandardCharsets.UTF_8))) {
+              marshaller.marshal(new CacheContent(entries.values(), graphs.values()), writer);
+            }
+          });
+        }
+      }
+      modified = false;
+    }
+    catch (IOException e) {
+      log.warn("Could not save the component report cache to {}: {}", cacheFile, e.getMessage());
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{cacheFile=" + cacheFile + ", expireAfter=" + expireAfterMillis
+        + "ms, maxEntries=" + maxEntries + "}";
+  }
+
+  private void load() {
+    try {
+      CacheContent content = readContent();
+      if (content == null) {
+        return;
+      }
+
+      long now = System.currentTimeMillis();
+      modified |= !putValid(entries, content.reports, now, entry -> entry.report.getCoordinates());
+      modified |= !putValid(graphs, content.graphs, now, graph -> graph.fingerprint);
+      evict();
+    }
+    catch (Exception e) {
+      log.warn("Ignoring the unreadable component report cache at {}: {}", cacheFile, e.getMessage());
+      modified = true;
+    }
+  }
+
+  /**
+   * Adds the entries other processes stored since this cache was loaded. For the keys known to both, the entry
+   * expiring last is kept.
+   */
+  private void mergeStoredContent() {
+    CacheContent content;
+    try {
+      content = readContent();
+    }
+    catch (Exception e) {
+      log.warn("Replacing the unreadable component report cache at {}: {}", cacheFile, e.getMessage());
+      return;
+    }
+    if (content == null) {
+      return;
+    }
+
+    long now = System.currentTimeMillis();
+    merge(entries, content.reports, now, entry -> entry.report.getCoordinates());
+    merge(graphs, content.graphs, now, graph -> graph.fingerprint);
+    evict();
+  }
+
+  private <K, E extends Expiring> void merge(Map<K, E> current, List<E> stored, long now, Function<E, K> keyFunction) {
+    Map<K, E> storedValid = new LinkedHashMap<>();
+    putValid(storedValid, stored, now, keyFunction);
+
+    List<E> merged = new ArrayList<>(current.values());
+    merged.addAll(storedValid.values());
+    merged.sort(Comparator.comparingLong(Expiring::getExpiresAt));
+
+    // sorted by expiration, so the entry expiring last replaces the others and ends up in its place in the order
+    current.clear();
+    for (E entry : merged) {
+      K key = keyFunction.apply(entry);
+      current.remove(key);
+      current.put(key, entry);
+    }
+  }
+
+  /**
+   * @return whether all the stored entries were valid.
+   */
+  private <K, E extends Expiring> boolean putValid(
+      Map<K, E> target,
+      List<E> stored,
+      long now,
+      Function<E, K> keyFunction)
+  {
+    if (stored == null) {
+      return true;
+    }
+
+    boolean allValid = true;
+    for (E entry : stored) {
+      if (entry != null && entry.isComplete() && !entry.isExpired(now, expireAfterMillis)) {
+        target.put(keyFunction.apply(entry), entry);
+      }
+      else {
+        allValid = false;
+      }
+    }
+    return allValid;
+  }
+
+  private CacheContent readContent() throws IOException {
+    if (!Files.isRegularFile(cacheFile)) {
+      return null;
+    }
+
+    try (Reader reader = new BufferedReader(new InputStreamReader(
+        new GZIPInputStream(Files.newInputStream(cacheFile)), StandardCharsets.UTF_8))) {
+      return marshaller.unmarshal(reader, CacheContent.class);
+    }
+  }
+
+  private void evict() {
+    evict(entries, maxEntries);
+    evict(graphs, MAX_GRAPHS);
+  }
+
+  private void evict(Map<?, ?> map, int maxSize) {
+    Iterator<?> iterator = map.keySet().iterator();
+    while (map.size() > maxSize && iterator.hasNext()) {
+      iterator.next();
+      iterator.remove();
+      modified = true;
+    }
+  }
+
+  private static class CacheContent
+  {
+    private List<CacheEntry> reports;
+
+    private List<GraphEntry> graphs;
+
+    CacheContent(Collection<CacheEntry> reports, Collection<GraphEntry> graphs) {
+      this.reports = new ArrayList<>(reports);
+      this.graphs = new ArrayList<>(graphs);
+    }
+  }
+
+  private abstract static class Expiring
+  {
+    // epoch millis
+    private long expiresAt;
+
+    Expiring(long expiresAt) {
+      this.expiresAt = expiresAt;
+    }
+
+    long getExpiresAt() {
+      return expiresAt;
+    }
+
+    abstract boolean isComplete();
+
+    boolean isExpired(long now) {
+      return now >= expiresAt;
+    }
+
+    /**
+     * An entry can't outlive the expiration configured now, so shortening it applies to the entries already stored.
+     */
+    boolean isExpired(long now, long expireAfterMillis) {
+      expiresAt = Math.min(expiresAt, now + expireAfterMillis);
+      return isExpired(now);
+    }
+  }
+
+  private static class CacheEntry
+      extends Expiring
+  {
+    private ComponentReport report;
+
+    CacheEntry(long expiresAt, ComponentReport report) {
+      super(expiresAt);
+      this.report = report;
+    }
+
+    @Override
+    boolean isComplete() {
+      return report != null && report.getCoordinates() != null;
+    }
+  }
+
+  private static class GraphEntry
+      extends Expiring
+  {
+    private String fingerprint;
+
+    private List<PackageUrl> packageUrls;
+
+    GraphEntry(long expiresAt, String fingerprint, List<PackageUrl> packageUrls) {
+      super(expiresAt);
+      this.fingerprint = fingerprint;
+      this.packageUrls = packageUrls;
+    }
+
+    @Override
+    boolean isComplete() {
+      return fingerprint != null && packageUrls != null;
+    }
+  }
+
+  public static class Configuration
+      implements CacheConfiguration
+  {
+    public static final int DEFAULT_MAX_ENTRIES = 50_000;
+
+    private Path baseDir = DirectoryCache.Configuration.DEFAULT_BASE_DIR;
+
+    private Duration expireAfter = DirectoryCache.Configuration.DEFAULT_EXPIRE_AFTER;
+
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    public Path getBaseDir() {
+      return baseDir;
+    }
+
+    public void setBaseDir(Path baseDir) {
+      this.baseDir = baseDir;
+    }
+
+    public Duration getExpireAfter() {
+      return expireAfter;
+    }
+
+    public void setExpireAfter(Duration expireAfter) {
+      this.expireAfter = expireAfter;
+    }
+
+    public int getMaxEntries() {
+      return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+      this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public Cache create() {
+      return new ComponentReportCache(this);
+    }
+  }
+}
@@ -15,13 +15,15 @@
  */
 package org.sonatype.gradle.plugins.scan.ossindex;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -29,8 +31,10 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import org.sonatype.goodies.packageurl.PackageUrl;
+import org.sonatype.gradle.plugins.scan.common.FileWriteUtils;
 import org.sonatype.gradle.plugins.scan.common.PluginVersionUtils;
 import org.sonatype.ossindex.service.api.componentreport.ComponentReport;
 import org.sonatype.ossindex.service.api.componentreport.ComponentReportVulnerability;
@@ -38,9 +42,9 @@ import org.sonatype.ossindex.service.api.componentreport.ComponentReportVulnerab
 import com.google.common.base.CharMatcher;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
-import org.cyclonedx.generators.BomGeneratorFactory;
 import org.cyclonedx.Version;
-import org.cyclonedx.generators.json.BomJsonGenerator;
+import org.cyclonedx.exception.GeneratorException;
+import org.cyclonedx.generators.xml.BomXmlGenerator;
 import org.cyclonedx.model.Bom;
 import org.cyclonedx.model.Component;
 import org.cyclonedx.model.Metadata;
@@ -55,6 +59,11 @@ import org.gradle.api.Project;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.artifacts.ResolvedDependency;
 
+/**
+ * Writes a CycloneDX SBOM file for each of the configured CycloneDX output formats. The components and the
+ * vulnerabilities are built once, in a single pass over the response: each component is streamed to all the JSON files
+ * as it's built, and only kept in memory when an XML file needs a whole BOM.
+ */
 public class CycloneDxResponseHandler
     implements OssIndexResponseHandler
 {
@@ -62,11 +71,32 @@ public class CycloneDxResponseHandler
 
   private final OssIndexPluginExtension extension;
 
-  private final Project project;
+  private final String projectGroup;
+
+  private final String projectName;
+
+  private final String projectVersion;
+
+  private final Map<OutputFormat, Path> outputFiles;
 
   public CycloneDxResponseHandler(OssIndexPluginExtension extension, Project project) {
+    this(extension, Objects.toString(project.getGroup()), project.getName(), Objects.toString(project.getVersion()),
+        OssIndexAuditTask.resolveCycloneDxFiles(extension.resolveOutputFormats(),
+            project.getLayout().getBuildDirectory().get().getAsFile()));
+  }
+
+  public CycloneDxResponseHandler(
+      OssIndexPluginExtension extension,
+      String projectGroup,
+      String projectName,
+      String projectVersion,
+      Map<OutputFormat, Path> outputFiles)
+  {
     this.extension = extension;
-    this.project = project;
+    this.projectGroup = projectGroup;
+    this.projectName = projectName;
+    this.projectVersion = projectVersion;
+    this.outputFiles = outputFiles;
   }
 
   @Override
@@ -84,6 +114,7 @@ public class CycloneDxResponseHandler
 
       if (dependenciesCount == 0) {
         log.info("No vulnerabilities found!");
+        deleteOutputFiles();
         return false;
       }
       else {
@@ -91,10 +122,54 @@ public class CycloneDxResponseHandler
       }
     }
 
-    Bom bom = buildBom();
+    Map<String, Vulnerability> vulnerabilitiesById = new LinkedHashMap<>();
+    List<Component> components =
+        outputFiles.keySet().stream().anyMatch(OutputFormat::isXml) ? new ArrayList<>() : null;
+    List<JsonBomWriter> jsonWriters = new ArrayList<>();
+    try {
+      for (Entry<OutputFormat, Path> entry : outputFiles.entrySet()) {
+        if (!entry.getKey().isXml()) {
+          jsonWriters.add(new JsonBomWriter(entry.getValue(), buildBom(), entry.getKey().getCycloneDxVersion()));
+        }
+      }
+
+      writeComponents(dependenciesMap, response, vulnerabilitiesById, component -> {
+        for (JsonBomWriter jsonWriter : jsonWriters) {
+          jsonWriter.writeComponent(component);
+        }
+        if (components != null) {
+          components.add(component);
+        }
+      });
+
+      List<Vulnerability> vulnerabilities = new ArrayList<>(vulnerabilitiesById.values());
+      for (JsonBomWriter jsonWriter : jsonWriters) {
+        jsonWriter.finish(vulnerabilities);
+      }
+      for (Entry<OutputFormat, Path> entry : outputFiles.entrySet()) {
+        if (entry.getKey().isXml()) {
+          writeXmlBom(entry.getKey(), entry.getValue(), components, vulnerabilities);
+        }
+        log.info("CycloneDX SBOM file: {}", entry.getValue());
+      }
 
-    Map<String, Vulnerability> vulnerabilitiesById = new HashMap<>();
+      return !vulnerabilities.isEmpty();
+    }
+    finally {
+      jsonWriters.forEach(JsonBomWriter::discard);
+    }
+  }
 
+  /**
+   * Builds each component to report and hands it to the writer right away, so JSON files get it without the
+   * components being kept in memory. The vulnerabilities are collected, they're written after the components.
+   */
+  private void writeComponents(
+      Map<ResolvedDependency, PackageUrl> dependenciesMap,
+      Map<PackageUrl, ComponentReport> response,
+      Map<String, Vulnerability> vulnerabilitiesById,
+      Consumer<Component> componentWriter)
+  {
     for (Entry<ResolvedDependency, PackageUrl> entry : dependenciesMap.entrySet()) {
       PackageUrl packageUrl = entry.getValue();
       ComponentReport componentReport = response.get(packageUrl);
@@ -128,18 +203,49 @@ public class CycloneDxResponseHandler
             addAffectedVersionRanges(component, componentVulnerability, vulnerability);
           }
 
-          bom.addComponent(component);
+          componentWriter.accept(component);
         }
       }
     }
+  }
 
-    if (!vulnerabilitiesById.isEmpty()) {
-      bom.setVulnerabilities(new ArrayList<>(vulnerabilitiesById.values()));
+  /**
+   * The XML generator of the CycloneDX library has no streaming mode, so XML files are generated from a whole BOM.
+   */
+  private void writeXmlBom(
+      OutputFormat outputFormat,
+      Path outputFile,
+      List<Component> components,
+      List<Vulnerability> vulnerabilities)
+  {
+    Bom bom = buildBom();
+    bom.setComponents(components);
+    bom.setVulnerabilities(vulnerabilities.isEmpty() ? null : vulnerabilities);
+    try {
+      FileWriteUtils.writeAtomically(outputFile, outputStream -> {
+        try {
+          outputStream.write(new BomXmlGenerator(bom, outputFormat.getCycloneDxVersion()).toXmlString()
+              .getBytes(StandardCharsets.UTF_8));
+        }
+        catch (GeneratorException e) {
+          throw new IOException(e);
+        }
+      });
     }
+    catch (IOException e) {
+      throw new UncheckedIOException("Error generating the CycloneDX SBOM file " + outputFile, e);
+    }
+  }
 
-    generateFile(bom);
-
-    return !vulnerabilitiesById.isEmpty();
+  private void deleteOutputFiles() {
+    try {
+      for (Path outputFile : outputFiles.values()) {
+        Files.deleteIfExists(outputFile);
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Error deleting the previous CycloneDX SBOM file", e);
+    }
   }
 
   private Bom buildBom() {
@@ -156,9 +262,9 @@ public class CycloneDxResponseHandler
     metadata.setTimestamp(new Date());
 
     Component component = new Component();
-    component.setGroup(Objects.toString(project.getGroup()));
-    component.setName(project.getName());
-    component.setVersion(Objects.toString(project.getVersion()));
+    component.setGroup(projectGroup);
+    component.setName(projectName);
+    component.setVersion(projectVersion);
     component.setType(extension.getCycloneDxComponentType());
     metadata.setComponent(component);
 
@@ -233,16 +339,71 @@ public class CycloneDxResponseHandler
     vulnerability.setAffects(affects);
   }
 
-  private void generateFile(Bom bom) {
-    BomJsonGenerator generator = BomGeneratorFactory.createJson(Version.VERSION_14, bom);
+  /**
+   * Streams a JSON SBOM to a temporary file, which replaces the output file once complete.
+   */
+  private static class JsonBomWriter
+  {
+    private final Path outputFile;
+
+    private final Path tempFile;
+
+    private final StreamingBomJsonGenerator generator;
+
+    JsonBomWriter(Path outputFile, Bom header, Version version) {
+      this.outputFile = outputFile;
+      try {
+        tempFile = FileWriteUtils.createTempFile(outputFile);
+        OutputStream outputStream = FileWriteUtils.newBufferedOutputStream(tempFile);
+        try {
+          generator = new StreamingBomJsonGenerator(header, version, outputStream);
+        }
+        catch (IOException | RuntimeException e) {
+          outputStream.close();
+          Files.deleteIfExists(tempFile);
+          throw e;
+        }
+      }
+      catch (IOException e) {
+        throw failure(e);
+      }
+    }
+
+    void writeComponent(Component component) {
+      try {
+        generator.writeComponent(component);
+      }
+      catch (IOException e) {
+        throw failure(e);
+      }
+    }
+
+    void finish(List<Vulnerability> vulnerabilities) {
+      try {
+        generator.writeVulnerabilities(vulnerabilities);
+        generator.close();
+        FileWriteUtils.moveReplacing(tempFile, outputFile);
+      }
+      catch (IOException e) {
+        throw failure(e);
+      }
+    }
 
-    try (BufferedWriter writer = new BufferedWriter(new FileWriter(FILE_NAME_OUTPUT))) {
-      writer.write(generator.toJsonString());
-      writer.flush();
-      log.info("CycloneDX SBOM file: {}", FILE_NAME_OUTPUT);
+    /**
+     * Releases the temporary file, which is only left when the SBOM could not be finished.
+     */
+    void discard() {
+      try {
+        generator.close();
+        Files.deleteIfExists(tempFile);
+      }
+      catch (IOException e) {
+        log.debug("Could not delete the temporary file {}: {}", tempFile, e.getMessage());
+      }
     }
-    catch (IOException e) {
-      throw new UncheckedIOException("Error generating the CycloneDX SBOM file", e);
+
+    private UncheckedIOException failure(IOException e) {
+      return new UncheckedIOException("Error generating the CycloneDX SBOM file " + outputFile, e);
     }
   }
 }
@@ -86,7 +86,8 @@ public class DefaultResponseHandler
   private List<ComponentReportVulnerability> getSortedVulnerabilities(ComponentReport componentReport) {
     List<ComponentReportVulnerability> vulnerabilities = new ArrayList<>();
     if (!Objects.isNull(componentReport)) {
-      vulnerabilities = componentReport.getVulnerabilities();
+      // sorts a copy, the report may be shared with the other audit tasks of the build
+      vulnerabilities = new ArrayList<>(componentReport.getVulnerabilities());
       vulnerabilities.sort(Comparator.comparing(ComponentReportVulnerability::getCvssScore).reversed());
 
     }
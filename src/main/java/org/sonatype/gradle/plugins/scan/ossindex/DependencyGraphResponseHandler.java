@@ -15,35 +15,70 @@
  */
 package org.sonatype.gradle.plugins.scan.ossindex;
 
-import java.util.Collections;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeSet;
-import java.util.stream.Collectors;
 
 import org.sonatype.goodies.packageurl.PackageUrl;
+import org.sonatype.gradle.plugins.scan.common.FileWriteUtils;
 import org.sonatype.ossindex.service.api.componentreport.ComponentReport;
 import org.sonatype.ossindex.service.api.componentreport.ComponentReportVulnerability;
 
 import org.apache.commons.lang3.StringUtils;
+import org.gradle.api.UncheckedIOException;
 import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.artifacts.ResolvedDependency;
+import org.gradle.internal.impldep.com.google.common.annotations.VisibleForTesting;
 
+/**
+ * Renders the dependency graph with the vulnerabilities of each dependency. The whole tree is built in a single buffer
+ * and then logged at once, or written to the configured report file.
+ */
 public class DependencyGraphResponseHandler
     implements OssIndexResponseHandler
 {
   private static final String DEPENDENCY_PREFIX = "+--- ";
 
+  private static final String PARENT_INDENT = "|    ";
+
+  private static final String VULNERABILITY_INDENT = "     ";
+
   private static final String REPEATED_MARKER = "(*)";
 
+  private static final Comparator<ResolvedDependency> CHILDREN_COMPARATOR =
+      Comparator.comparing(ResolvedDependency::getModuleGroup)
+          .thenComparing(ResolvedDependency::getModuleName)
+          .thenComparing(ResolvedDependency::getModuleVersion);
+
   private  final OssIndexPluginExtension extension;
 
+  private final File reportFile;
+
+  private final StringBuilder buffer = new StringBuilder();
+
+  // the prefix of the dependencies and the indent of their vulnerabilities at each depth, computed once per depth
+  private final List<String> dependencyPrefixes = new ArrayList<>();
+
+  private final List<String> vulnerabilityIndents = new ArrayList<>();
+
   public DependencyGraphResponseHandler(OssIndexPluginExtension extension) {
     this.extension = extension;
+    this.reportFile = extension.getDependencyGraphReportFile();
   }
 
   @Override
@@ -57,6 +92,7 @@ public class DependencyGraphResponseHandler
       dependenciesMap = getDependenciesMapWithVulnerabilities(dependenciesMap, response);
       if (dependenciesMap.isEmpty()) {
         log.info("No vulnerabilities found!");
+        deleteReportFile();
         return false;
       }
       else {
@@ -64,28 +100,32 @@ public class DependencyGraphResponseHandler
       }
     }
 
+    buffer.setLength(0);
     Set<PackageUrl> processedPackageUrls = new HashSet<>();
     for (ResolvedDependency dependency : dependencies) {
-      boolean vulnerable =
-          logWithVulnerabilities(dependency, dependenciesMap, response, processedPackageUrls, DEPENDENCY_PREFIX);
+      boolean vulnerable = appendWithVulnerabilities(dependency, dependenciesMap, response, processedPackageUrls, 0);
       if (vulnerable) {
         hasVulnerabilities = true;
       }
     }
 
     if (!dependencies.isEmpty()) {
-      log.info("{}{} - if present, dependencies omitted (listed previously)", System.lineSeparator(), REPEATED_MARKER);
+      buffer.append(System.lineSeparator())
+          .append(REPEATED_MARKER)
+          .append(" - if present, dependencies omitted (listed previously)");
     }
 
+    flush();
+
     return hasVulnerabilities;
   }
 
-  private boolean logWithVulnerabilities(
+  private boolean appendWithVulnerabilities(
       ResolvedDependency dependency,
       Map<ResolvedDependency, PackageUrl> dependenciesMap,
       Map<PackageUrl, ComponentReport> response,
       Set<PackageUrl> processedPackageUrls,
-      String prefix)
+      int depth)
   {
     PackageUrl packageUrl = dependenciesMap.get(dependency);
 
@@ -94,55 +134,61 @@ public class DependencyGraphResponseHandler
     }
 
     ComponentReport report = response.get(packageUrl);
+    // sorts a copy, the report may be shared with the other audit tasks of the build
     List<ComponentReportVulnerability> vulnerabilities =
-        report != null ? report.getVulnerabilities() : Collections.emptyList();
+        report != null ? new ArrayList<>(report.getVulnerabilities()) : new ArrayList<>();
     vulnerabilities.sort(Comparator.comparing(ComponentReportVulnerability::getCvssScore).reversed());
 
-    StringBuilder vulnerabilitiesText = new StringBuilder()
-        .append(vulnerabilities.size())
-        .append(" vulnerabilities detected");
-
-    vulnerabilitiesText.append(vulnerabilities.stream()
-        .map(vulnerability -> handleComponentReportVulnerability(vulnerability, prefix))
-        .collect(Collectors.joining("")));
-
-    String id = getDependencyId(dependency);
     boolean isRepeated = !processedPackageUrls.add(packageUrl);
-    String repeatedMarker = isRepeated && !dependency.getChildren().isEmpty() ? " " + REPEATED_MARKER : "";
-    boolean hasVulnerabilities = !vulnerabilities.isEmpty();
-
-    log.info("{}{}{}: {}", prefix, id, repeatedMarker, vulnerabilitiesText);
+    Set<ResolvedDependency> children = dependency.getChildren();
 
-    if (isRepeated) {
-      return hasVulnerabilities;
+    ModuleVersionIdentifier moduleVersionId = dependency.getModule().getId();
+    buffer.append(getDependencyPrefix(depth))
+        .append(moduleVersionId.getGroup()).append(':')
+        .append(moduleVersionId.getName()).append(':')
+        .append(moduleVersionId.getVersion());
+    if (isRepeated && !children.isEmpty()) {
+      buffer.append(' ').append(REPEATED_MARKER);
     }
+    buffer.append(": ").append(vulnerabilities.size()).append(" vulnerabilities detected");
+    for (ComponentReportVulnerability vulnerability : vulnerabilities) {
+      appendComponentReportVulnerability(vulnerability, depth);
+    }
+    buffer.append(System.lineSeparator());
 
-    Set<ResolvedDependency> childrenSet = new TreeSet<>(
-        Comparator.comparing(ResolvedDependency::getModuleGroup)
-            .thenComparing(ResolvedDependency::getModuleName)
-            .thenComparing(ResolvedDependency::getModuleVersion));
-    childrenSet.addAll(dependency.getChildren());
+    boolean hasVulnerabilities = !vulnerabilities.isEmpty();
 
-    if (childrenSet.isEmpty()) {
+    if (isRepeated || children.isEmpty()) {
       return hasVulnerabilities;
     }
 
-    return childrenSet.stream()
-        .map(child -> logWithVulnerabilities(child, dependenciesMap, response, processedPackageUrls,
-            StringUtils.replaceOnce(prefix, DEPENDENCY_PREFIX, "|    ") + DEPENDENCY_PREFIX))
-        .collect(Collectors.toList())
-        .contains(true) || hasVulnerabilities;
-
+    for (ResolvedDependency child : sortChildren(children)) {
+      if (appendWithVulnerabilities(child, dependenciesMap, response, processedPackageUrls, depth + 1)) {
+        hasVulnerabilities = true;
+      }
+    }
+    return hasVulnerabilities;
   }
 
-  private String getDependencyId(ResolvedDependency dependency) {
-    ModuleVersionIdentifier moduleVersionId = dependency.getModule().getId();
-    return moduleVersionId.getGroup() + ":" + moduleVersionId.getName() + ":" + moduleVersionId.getVersion();
+  /**
+   * Sorts the children by coordinates, dropping the ones with the same coordinates as the previous one, which happens
+   * when a module is resolved for more than one of its configurations.
+   */
+  private static List<ResolvedDependency> sortChildren(Set<ResolvedDependency> children) {
+    List<ResolvedDependency> sortedChildren = new ArrayList<>(children);
+    sortedChildren.sort(CHILDREN_COMPARATOR);
+
+    int size = 0;
+    for (ResolvedDependency child : sortedChildren) {
+      if (size == 0 || CHILDREN_COMPARATOR.compare(sortedChildren.get(size - 1), child) != 0) {
+        sortedChildren.set(size++, child);
+      }
+    }
+    return sortedChildren.subList(0, size);
   }
 
-  private String handleComponentReportVulnerability(ComponentReportVulnerability vulnerability, String prefix) {
-    String indent = System.lineSeparator() +
-        StringUtils.replaceOnce(prefix, DEPENDENCY_PREFIX, StringUtils.repeat(" ", DEPENDENCY_PREFIX.length()));
+  private void appendComponentReportVulnerability(ComponentReportVulnerability vulnerability, int depth) {
+    buffer.append(getVulnerabilityIndent(depth));
 
     StringBuilder builder = new StringBuilder(vulnerability.getTitle());
 
@@ -158,35 +204,203 @@ public class DependencyGraphResponseHandler
 
     builder.append(": ").append(vulnerability.getReference());
 
-    String vulnerabilityText = builder.toString();
-    if (extension.isColorEnabled()) {
-      vulnerabilityText = VulnerabilityUtils.addColorBasedOnCvssScore(cvssScore, vulnerabilityText);
+    // the colors are only meant for the console
+    if (extension.isColorEnabled() && reportFile == null) {
+      buffer.append(VulnerabilityUtils.addColorBasedOnCvssScore(cvssScore, builder.toString()));
+    }
+    else {
+      buffer.append(builder);
+    }
+  }
+
+  private String getDependencyPrefix(int depth) {
+    computeIndents(depth);
+    return dependencyPrefixes.get(depth);
+  }
+
+  private String getVulnerabilityIndent(int depth) {
+    computeIndents(depth);
+    return vulnerabilityIndents.get(depth);
+  }
+
+  private void computeIndents(int depth) {
+    for (int i = dependencyPrefixes.size(); i <= depth; i++) {
+      String parentsIndent = StringUtils.repeat(PARENT_INDENT, i);
+      dependencyPrefixes.add(parentsIndent + DEPENDENCY_PREFIX);
+      vulnerabilityIndents.add(System.lineSeparator() + parentsIndent + VULNERABILITY_INDENT);
+    }
+  }
+
+  private void flush() {
+    if (reportFile == null) {
+      if (buffer.length() > 0) {
+        log.info(buffer.toString());
+      }
+      return;
+    }
+
+    try {
+      FileWriteUtils.writeAtomically(reportFile.toPath(), outputStream -> {
+        Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+        writer.append(buffer).append(System.lineSeparator());
+        writer.flush();
+      });
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Error writing the dependency graph report file", e);
     }
-    return indent + vulnerabilityText;
+    log.info("Dependency graph report file: {}", reportFile);
   }
 
-  private Map<ResolvedDependency, PackageUrl> getDependenciesMapWithVulnerabilities(
+  private void deleteReportFile() {
+    if (reportFile == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(reportFile.toPath());
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Error deleting the previous dependency graph report file", e);
+    }
+  }
+
+  @VisibleForTesting
+  Map<ResolvedDependency, PackageUrl> getDependenciesMapWithVulnerabilities(
       Map<ResolvedDependency, PackageUrl> dependenciesMap,
       Map<PackageUrl, ComponentReport> response)
   {
-    return dependenciesMap.entrySet().parallelStream()
-        .filter(entry -> hasVulnerabilities(entry.getKey(), dependenciesMap, response))
-        .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
+    Map<ResolvedDependency, Boolean> subtreeVulnerabilities = new IdentityHashMap<>();
+    Map<ResolvedDependency, PackageUrl> dependenciesMapWithVulnerabilities = new HashMap<>();
+
+    for (Entry<ResolvedDependency, PackageUrl> entry : dependenciesMap.entrySet()) {
+      if (hasVulnerabilities(entry.getKey(), dependenciesMap, response, subtreeVulnerabilities)) {
+        dependenciesMapWithVulnerabilities.put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    return dependenciesMapWithVulnerabilities;
   }
 
+  /**
+   * Whether the dependency or any of its transitive dependencies has vulnerabilities. The graph is walked in post-order
+   * with an explicit stack and the result of each dependency is kept in {@code subtreeVulnerabilities}, so each one is
+   * evaluated once no matter how many paths lead to it. Dependencies in a cycle reach each other, so they share one
+   * result: the walk finds the strongly connected components as in Tarjan's algorithm and only stores the result of a
+   * component once all of it is visited, which keeps the results independent of the order of the walk.
+   */
   private boolean hasVulnerabilities(
       ResolvedDependency dependency,
       Map<ResolvedDependency, PackageUrl> dependenciesMap,
-      Map<PackageUrl, ComponentReport> response)
+      Map<PackageUrl, ComponentReport> response,
+      Map<ResolvedDependency, Boolean> subtreeVulnerabilities)
+  {
+    Boolean knownResult = subtreeVulnerabilities.get(dependency);
+    if (knownResult != null) {
+      return knownResult;
+    }
+
+    Map<ResolvedDependency, SubtreeVisit> visitsInProgress = new IdentityHashMap<>();
+    Deque<SubtreeVisit> pendingComponent = new ArrayDeque<>();
+    Deque<SubtreeVisit> stack = new ArrayDeque<>();
+    int visitCount = 0;
+    SubtreeVisit rootVisit =
+        visit(dependency, dependenciesMap, response, subtreeVulnerabilities, visitsInProgress, visitCount++);
+    if (rootVisit != null) {
+      stack.push(rootVisit);
+      pendingComponent.push(rootVisit);
+    }
+
+    while (!stack.isEmpty()) {
+      SubtreeVisit current = stack.peek();
+
+      if (!current.vulnerable && current.children.hasNext()) {
+        ResolvedDependency child = current.children.next();
+        Boolean childResult = subtreeVulnerabilities.get(child);
+        SubtreeVisit childInProgress = visitsInProgress.get(child);
+        if (childResult != null) {
+          current.vulnerable = childResult;
+        }
+        else if (childInProgress != null) {
+          // a cycle closes here, the result of the child is only known once its whole component is visited
+          current.lowLink = Math.min(current.lowLink, childInProgress.index);
+        }
+        else {
+          SubtreeVisit childVisit =
+              visit(child, dependenciesMap, response, subtreeVulnerabilities, visitsInProgress, visitCount++);
+          if (childVisit != null) {
+            stack.push(childVisit);
+            pendingComponent.push(childVisit);
+          }
+          else {
+            current.vulnerable = subtreeVulnerabilities.get(child);
+          }
+        }
+        continue;
+      }
+
+      stack.pop();
+      if (current.lowLink == current.index) {
+        // the visit of a whole component ends, every dependency in it reaches the others
+        SubtreeVisit member;
+        do {
+          member = pendingComponent.pop();
+          visitsInProgress.remove(member.dependency);
+          subtreeVulnerabilities.put(member.dependency, current.vulnerable);
+        }
+        while (member != current);
+      }
+      if (!stack.isEmpty()) {
+        SubtreeVisit parent = stack.peek();
+        parent.vulnerable |= current.vulnerable;
+        parent.lowLink = Math.min(parent.lowLink, current.lowLink);
+      }
+    }
+
+    return subtreeVulnerabilities.get(dependency);
+  }
+
+  /**
+   * Stores the result of a dependency known without looking at its children and returns null, otherwise returns the
+   * visit of its children, which stays in progress until the result of its component is known.
+   */
+  private SubtreeVisit visit(
+      ResolvedDependency dependency,
+      Map<ResolvedDependency, PackageUrl> dependenciesMap,
+      Map<PackageUrl, ComponentReport> response,
+      Map<ResolvedDependency, Boolean> subtreeVulnerabilities,
+      Map<ResolvedDependency, SubtreeVisit> visitsInProgress,
+      int index)
   {
     PackageUrl packageUrl = dependenciesMap.get(dependency);
-    ComponentReport componentReport = response.get(packageUrl);
-    if (componentReport != null) {
-      return !componentReport.getVulnerabilities().isEmpty() || dependency.getChildren().parallelStream()
-          .map(child -> hasVulnerabilities(child, dependenciesMap, response))
-          .collect(Collectors.toList())
-          .contains(true);
-    }
-    return false;
+    ComponentReport componentReport = packageUrl != null ? response.get(packageUrl) : null;
+
+    if (componentReport == null || !componentReport.getVulnerabilities().isEmpty()) {
+      subtreeVulnerabilities.put(dependency, componentReport != null);
+      return null;
+    }
+
+    SubtreeVisit subtreeVisit = new SubtreeVisit(dependency, index);
+    visitsInProgress.put(dependency, subtreeVisit);
+    return subtreeVisit;
+  }
+
+  private static class SubtreeVisit
+  {
+    private final ResolvedDependency dependency;
+
+    private final Iterator<ResolvedDependency> children;
+
+    private final int index;
+
+    private int lowLink;
+
+    private boolean vulnerable;
+
+    SubtreeVisit(ResolvedDependency dependency, int index) {
+      this.dependency = dependency;
+      this.children = dependency.getChildren().iterator();
+      this.index = index;
+      this.lowLink = index;
+    }
   }
 }
@@ -15,21 +15,40 @@
  */
 package org.sonatype.gradle.plugins.scan.ossindex;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 import org.sonatype.goodies.packageurl.PackageUrl;
 import org.sonatype.goodies.packageurl.PackageUrlBuilder;
+import org.sonatype.gradle.plugins.scan.common.ConfigurationRootComponent;
 import org.sonatype.gradle.plugins.scan.common.DependenciesFinder;
+import org.sonatype.gradle.plugins.scan.common.FileWriteUtils;
 import org.sonatype.ossindex.service.api.componentreport.ComponentReport;
 import org.sonatype.ossindex.service.api.componentreport.ComponentReportVulnerability;
 import org.sonatype.ossindex.service.client.OssindexClient;
@@ -43,13 +62,26 @@ import org.sonatype.ossindex.service.client.transport.Transport.TransportExcepti
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.cyclonedx.model.Component;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
+import org.gradle.api.Project;
 import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.artifacts.ResolvedDependency;
+import org.gradle.api.file.Directory;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.OutputFiles;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.internal.impldep.com.google.common.annotations.VisibleForTesting;
 import org.slf4j.Logger;
@@ -58,33 +90,84 @@ import org.slf4j.LoggerFactory;
 public class OssIndexAuditTask
     extends DefaultTask
 {
+  public static final String REPORTS_DIRECTORY = "reports/ossindex";
+
+  public static final String INCREMENTAL_STATE_DIRECTORY = "ossindex";
+
+  public static final String AUDIT_RESULT_FILE = "audit-result.properties";
+
+  public static final String INCREMENTAL_STATE_FILE = "incremental-state.properties";
+
+  private static final String AUDITED_AT_PROPERTY = "auditedAt";
+
+  private static final String VULNERABILITIES_PROPERTY = "vulnerabilities";
+
+  private static final String GRAPH_FINGERPRINT_PROPERTY = "graphFingerprint";
+
   private static Logger log = LoggerFactory.getLogger(OssIndexResponseHandler.class);
 
   private final OssIndexPluginExtension extension;
 
   private final DependenciesFinder dependenciesFinder;
 
+  private final String gradleVersion;
+
+  private final Provider<String> projectGroup;
+
+  private final String projectName;
+
+  private final Provider<String> projectVersion;
+
+  private final Provider<Directory> buildDirectory;
+
+  private List<ConfigurationRootComponent> rootComponents;
+
+  private Provider<OssIndexBuildService> buildService;
+
+  private transient Set<ResolvedDependency> auditedDependencies;
+
   public OssIndexAuditTask() {
     extension = getProject().getExtensions().getByType(OssIndexPluginExtension.class);
     dependenciesFinder = new DependenciesFinder();
+    gradleVersion = getProject().getGradle().getGradleVersion();
+    projectGroup = getProject().provider(() -> Objects.toString(getProject().getGroup()));
+    projectName = getProject().getName();
+    projectVersion = getProject().provider(() -> Objects.toString(getProject().getVersion()));
+    buildDirectory = getProject().getLayout().getBuildDirectory();
+
+    // the vulnerabilities known by OSS Index change without any input changing, so the result of an audit is only
+    // reused for the configured max age after it was recorded
+    getOutputs().upToDateWhen(task -> isAuditResultReusable(System.currentTimeMillis()));
+  }
+
+  /**
+   * Wires the resolution results of the audited projects as lazy inputs, so the task action doesn't need to access
+   * the projects and the task can be stored in the configuration cache. Must be called once all the projects have
+   * been evaluated.
+   */
+  public void useResolutionResults() {
+    rootComponents = getAuditedProjects().stream()
+        .flatMap(project -> dependenciesFinder.findRootComponents(project, extension.isAllConfigurations(),
+            extension.getVariantAttributes(), extension.isExcludeCompileOnly()).stream())
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Shares the clients and the component reports with the other audit tasks of the build. Requires Gradle 6.1+.
+   */
+  public void useBuildService(Provider<OssIndexBuildService> buildService) {
+    this.buildService = buildService;
+    usesService(buildService);
   }
 
   @TaskAction
   public void audit() {
+    long auditedAt = System.currentTimeMillis();
     boolean hasVulnerabilities;
 
-    try (OssindexClient ossIndexClient = buildOssIndexClient()) {
-      Set<ResolvedDependency> dependencies = getProject().getAllprojects().stream()
-          .filter(project -> extension.getModulesIncluded() == null || extension.getModulesIncluded().isEmpty() || extension.getModulesIncluded().contains(project.getName()))
-          .filter(project -> extension.getModulesExcluded() == null || !extension.getModulesExcluded().contains(project.getName()))
-          .flatMap(project -> dependenciesFinder
-              .findResolvedDependencies(project, extension.isAllConfigurations(), extension.getVariantAttributes(),
-                  extension.isExcludeCompileOnly())
-              .stream())
-          .collect(Collectors.toCollection(LinkedHashSet::new));
-      BiMap<ResolvedDependency, PackageUrl> dependenciesMap = HashBiMap.create();
-
-      dependencies.forEach(dependency -> buildDependenciesMap(dependency, dependenciesMap));
+    try (OssindexClient ossIndexClient = buildService != null ? null : buildOssIndexClient()) {
+      Set<ResolvedDependency> dependencies = getAuditedDependencies();
+      BiMap<ResolvedDependency, PackageUrl> dependenciesMap = buildDependenciesMap(dependencies);
 
       List<PackageUrl> packageUrls = new ArrayList<>(dependenciesMap.values());
 
@@ -96,21 +179,44 @@ public class OssIndexAuditTask
 
       log.info("Checking vulnerabilities in {} dependencies", dependenciesMap.size());
 
-      if (extension.isSimulationEnabled()) {
+      VulnerabilityExclusionMatcher exclusionMatcher = buildExclusionMatcher();
+      Map<PackageUrl, ComponentReport> excludedReports = buildExcludedReports(exclusionMatcher, packageUrls);
+      if (!excludedReports.isEmpty()) {
+        log.info("Skipping {} fully excluded dependencies", excludedReports.size());
+        packageUrls.removeIf(excludedReports::containsKey);
+      }
+
+      if (packageUrls.isEmpty()) {
+        response = new HashMap<>();
+      }
+      else if (extension.isSimulationEnabled()) {
         response = buildSimulatedResponse(packageUrls);
       }
+      else if (extension.isIncremental()) {
+        response = requestChangedComponentReports(ossIndexClient, dependencies, packageUrls);
+      }
       else {
-        response = ossIndexClient.requestComponentReports(packageUrls);
+        response = requestComponentReports(ossIndexClient, packageUrls);
+      }
+
+      if (!excludedReports.isEmpty()) {
+        excludedReports.putAll(response);
+        response = excludedReports;
       }
 
-      Set<String> vulnerabilityIdsToExclude = extension.getExcludeVulnerabilityIds();
-      Set<PackageUrl> coordinatesToExclude = toPackageUrls(extension.getExcludeCoordinates());
-      VulnerabilityExclusionFilter vulnerabilityExclusionFilter =
-          new VulnerabilityExclusionFilter(vulnerabilityIdsToExclude, coordinatesToExclude);
+      VulnerabilityExclusionFilter vulnerabilityExclusionFilter = new VulnerabilityExclusionFilter(exclusionMatcher);
       vulnerabilityExclusionFilter.apply(response);
 
-      OssIndexResponseHandler responseHandler = buildResponseHandler();
-      hasVulnerabilities = responseHandler.handleOssIndexResponse(dependencies, dependenciesMap, response);
+      // every output format is produced from the same response, without auditing again
+      hasVulnerabilities = false;
+      for (OssIndexResponseHandler responseHandler : buildResponseHandlers()) {
+        hasVulnerabilities |= responseHandler.handleOssIndexResponse(dependencies, dependenciesMap, response);
+      }
+
+      File auditResultFile = getAuditResultFile();
+      if (auditResultFile != null) {
+        writeAuditResult(auditResultFile, auditedAt, dependenciesMap.size(), hasVulnerabilities);
+      }
     }
     catch (TransportException e) {
       throw new GradleException("Connection to OSS Index failed, check your credentials: " + e.getMessage(), e);
@@ -127,13 +233,220 @@ public class OssIndexAuditTask
     }
   }
 
+  /**
+   * Builds an empty report for each component whose vulnerabilities are all excluded, so it's neither requested nor
+   * cached while the response handlers still see every dependency.
+   */
+  @VisibleForTesting
+  static Map<PackageUrl, ComponentReport> buildExcludedReports(
+      VulnerabilityExclusionMatcher exclusionMatcher,
+      Collection<PackageUrl> packageUrls)
+  {
+    Map<PackageUrl, ComponentReport> reports = new HashMap<>();
+    if (exclusionMatcher.isEmpty()) {
+      return reports;
+    }
+
+    for (PackageUrl packageUrl : packageUrls) {
+      if (exclusionMatcher.isFullyExcluded(packageUrl)) {
+        ComponentReport report = new ComponentReport();
+        report.setCoordinates(packageUrl);
+        report.setVulnerabilities(new ArrayList<>());
+        reports.put(packageUrl, report);
+      }
+    }
+    return reports;
+  }
+
+  /**
+   * Looks the components of the previous audit of this project up in the component report cache, where the package
+   * URLs of the audited graph are kept under its fingerprint. Only that fingerprint is saved in the build directory.
+   * The reports of the components still in the graph and not expired are reused, only the other ones are requested.
+   */
+  private Map<PackageUrl, ComponentReport> requestChangedComponentReports(
+      OssindexClient ossIndexClient,
+      Set<ResolvedDependency> dependencies,
+      List<PackageUrl> packageUrls) throws Exception
+  {
+    File stateFile =
+        new File(resolveIncrementalStateDirectory(buildDirectory.get().getAsFile()), INCREMENTAL_STATE_FILE);
+    String previousGraphFingerprint = readPreviousGraphFingerprint(stateFile);
+    String graphFingerprint = dependenciesFinder.findDependencyGraphFingerprint(dependencies);
+
+    Map<PackageUrl, ComponentReport> response = new HashMap<>();
+    try (ComponentReportCache cache =
+        new ComponentReportCache(new OssIndexClientConfigurationBuilder().buildCacheConfiguration(extension))) {
+      Set<PackageUrl> previousPackageUrls =
+          previousGraphFingerprint != null ? cache.getGraphIfPresent(previousGraphFingerprint) : null;
+
+      List<PackageUrl> changedPackageUrls = new ArrayList<>();
+      for (PackageUrl packageUrl : packageUrls) {
+        ComponentReport report = previousPackageUrls != null && previousPackageUrls.contains(packageUrl)
+            ? cache.getIfPresent(packageUrl)
+            : null;
+        if (report != null) {
+          response.put(packageUrl, report);
+        }
+        else {
+          changedPackageUrls.add(packageUrl);
+        }
+      }
+
+      log.info("Reusing {} component reports from the previous audit, requesting {} new or expired ones",
+          response.size(), changedPackageUrls.size());
+
+      if (!changedPackageUrls.isEmpty()) {
+        Map<PackageUrl, ComponentReport> changedReports =
+            requestComponentReports(ossIndexClient, changedPackageUrls);
+        cache.putAll(changedReports);
+        response.putAll(changedReports);
+      }
+      cache.putGraph(graphFingerprint, packageUrls);
+    }
+
+    String state = GRAPH_FINGERPRINT_PROPERTY + "=" + graphFingerprint + System.lineSeparator();
+    FileWriteUtils.writeAtomically(stateFile.toPath(),
+        outputStream -> outputStream.write(state.getBytes(StandardCharsets.UTF_8)));
+    return response;
+  }
+
+  private String readPreviousGraphFingerprint(File stateFile) {
+    if (!stateFile.isFile()) {
+      return null;
+    }
+
+    Properties state = new Properties();
+    try (InputStream inputStream = Files.newInputStream(stateFile.toPath())) {
+      state.load(inputStream);
+    }
+    catch (IOException e) {
+      log.debug("Could not read the previous incremental audit state, requesting every component: {}",
+          e.getMessage());
+      return null;
+    }
+    return state.getProperty(GRAPH_FINGERPRINT_PROPERTY);
+  }
+
+  @VisibleForTesting
+  Map<PackageUrl, ComponentReport> requestComponentReports(
+      OssindexClient ossIndexClient,
+      List<PackageUrl> packageUrls) throws Exception
+  {
+    return buildService != null
+        ? buildService.get().requestComponentReports(extension, gradleVersion, packageUrls)
+        : ossIndexClient.requestComponentReports(packageUrls);
+  }
+
+  /**
+   * The dependencies are looked up once per task execution, both the fingerprint and the audit use them.
+   */
+  private Set<ResolvedDependency> getAuditedDependencies() {
+    if (auditedDependencies == null) {
+      auditedDependencies = rootComponents != null
+          ? dependenciesFinder.findResolvedDependencies(rootComponents)
+          : getAuditedProjects().stream()
+              .flatMap(project -> findResolvedDependencies(project).stream())
+              .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+    return auditedDependencies;
+  }
+
+  private long getAuditMaxAgeMillis() {
+    if (StringUtils.isBlank(extension.getAuditMaxAge())) {
+      return 0;
+    }
+    try {
+      return Duration.parse(extension.getAuditMaxAge()).toMillis();
+    }
+    catch (DateTimeParseException e) {
+      log.warn("Invalid audit max age value: {}, the audit result won't be reused", extension.getAuditMaxAge());
+      return 0;
+    }
+  }
+
+  /**
+   * The result recorded by the previous audit is reused until the max age has passed since that audit. A result with
+   * vulnerabilities is never reused when the build fails on detection, so the audit runs and fails again instead of
+   * being skipped.
+   */
+  @VisibleForTesting
+  boolean isAuditResultReusable(long now) {
+    File auditResultFile = getAuditResultFile();
+    if (auditResultFile == null || !auditResultFile.isFile()) {
+      return false;
+    }
+
+    Properties auditResult = new Properties();
+    try (InputStream inputStream = Files.newInputStream(auditResultFile.toPath())) {
+      auditResult.load(inputStream);
+    }
+    catch (IOException e) {
+      log.debug("Could not read the previous audit result, auditing again: {}", e.getMessage());
+      return false;
+    }
+
+    long auditedAt = NumberUtils.toLong(auditResult.getProperty(AUDITED_AT_PROPERTY), -1);
+    if (auditedAt < 0 || auditedAt > now || now - auditedAt >= getAuditMaxAgeMillis()) {
+      return false;
+    }
+    return !extension.isFailOnDetection() || !Boolean.parseBoolean(auditResult.getProperty(VULNERABILITIES_PROPERTY));
+  }
+
+  private static void writeAuditResult(
+      File auditResultFile,
+      long auditedAt,
+      int dependenciesCount,
+      boolean hasVulnerabilities) throws IOException
+  {
+    String auditResult = AUDITED_AT_PROPERTY + "=" + auditedAt + System.lineSeparator()
+        + "dependencies=" + dependenciesCount + System.lineSeparator()
+        + VULNERABILITIES_PROPERTY + "=" + hasVulnerabilities + System.lineSeparator();
+    FileWriteUtils.writeAtomically(auditResultFile.toPath(),
+        outputStream -> outputStream.write(auditResult.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Internal
+  public List<Project> getAuditedProjects() {
+    return getProject().getAllprojects().stream()
+        .filter(project -> extension.getModulesIncluded() == null || extension.getModulesIncluded().isEmpty()
+            || extension.getModulesIncluded().contains(project.getName()))
+        .filter(project -> extension.getModulesExcluded() == null
+            || !extension.getModulesExcluded().contains(project.getName()))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * When parallel resolution is enabled the dependencies were already resolved by the
+   * {@link OssIndexResolveDependenciesTask} of each project and kept by the build service, otherwise they are resolved
+   * here one project at a time.
+   */
+  private Set<ResolvedDependency> findResolvedDependencies(Project project) {
+    if (extension.isParallelResolution() && buildService != null) {
+      Set<ResolvedDependency> resolvedDependencies = buildService.get().takeResolvedDependencies(
+          project.absoluteProjectPath(OssIndexResolveDependenciesTask.getTaskName(getProject())));
+      if (resolvedDependencies != null) {
+        return resolvedDependencies;
+      }
+    }
+
+    return dependenciesFinder.findResolvedDependencies(project, extension.isAllConfigurations(),
+        extension.getVariantAttributes(), extension.isExcludeCompileOnly());
+  }
+
   @VisibleForTesting
   OssindexClient buildOssIndexClient() {
+    return buildOssIndexClient(extension, gradleVersion);
+  }
+
+  static OssindexClient buildOssIndexClient(OssIndexPluginExtension extension, String gradleVersion) {
     OssindexClientConfiguration clientConfiguration = new OssIndexClientConfigurationBuilder().build(extension);
-    Transport transport = new TransportBuilder().build(getProject());
+    Transport transport = new TransportBuilder().build(gradleVersion);
     Marshaller marshaller = new GsonMarshaller();
+    String host = Objects.toString(clientConfiguration.getBaseUrl().getAuthority());
 
-    return new OssindexClientImpl(clientConfiguration, transport, marshaller);
+    return new BatchingOssIndexClient(new OssindexClientImpl(clientConfiguration, transport, marshaller), host,
+        extension.getBatchSize(), extension.getMaxConcurrentRequests(), extension.getRateLimitMaxRetries(),
+        extension.getRateLimitBackoffMillis());
   }
 
   private Map<PackageUrl, ComponentReport> buildSimulatedResponse(
@@ -160,36 +473,65 @@ public class OssIndexAuditTask
     return map;
   }
 
+  /**
+   * Maps each dependency of the graph to its package URL. The graph is walked depth first with an explicit stack, so
+   * deep graphs can't overflow the call stack, the children of each dependency are visited only once and a single
+   * package URL is built per module version.
+   */
   @VisibleForTesting
-  void buildDependenciesMap(ResolvedDependency dependency, BiMap<ResolvedDependency, PackageUrl> mapAccumulator) {
-    mapAccumulator.forcePut(dependency, toPackageUrl(dependency));
-
-    dependency.getChildren().forEach(child -> {
-      if (mapAccumulator.forcePut(child, toPackageUrl(child)) == null) {
-        buildDependenciesMap(child, mapAccumulator);
+  BiMap<ResolvedDependency, PackageUrl> buildDependenciesMap(Collection<ResolvedDependency> dependencies) {
+    BiMap<ResolvedDependency, PackageUrl> dependenciesMap = HashBiMap.create();
+    Set<ResolvedDependency> visitedDependencies = Collections.newSetFromMap(new IdentityHashMap<>());
+    Map<ModuleVersionIdentifier, PackageUrl> packageUrls = new HashMap<>();
+    Deque<Iterator<ResolvedDependency>> stack = new ArrayDeque<>();
+
+    for (ResolvedDependency root : dependencies) {
+      stack.push(Collections.singleton(root).iterator());
+
+      while (!stack.isEmpty()) {
+        Iterator<ResolvedDependency> siblings = stack.peek();
+        if (!siblings.hasNext()) {
+          stack.pop();
+          continue;
+        }
+
+        ResolvedDependency dependency = siblings.next();
+        PackageUrl packageUrl = packageUrls.computeIfAbsent(dependency.getModule().getId(), this::toPackageUrl);
+        // the same module found through another path replaces the previous entry, as the package URL is unique
+        dependenciesMap.forcePut(dependency, packageUrl);
+
+        if (visitedDependencies.add(dependency)) {
+          stack.push(dependency.getChildren().iterator());
+        }
       }
-    });
-  }
+    }
 
-  private Set<PackageUrl> toPackageUrls(Set<String> coordinates) {
-    Set<PackageUrl> packageUrls = new HashSet<>();
+    return dependenciesMap;
+  }
 
-    for (String coordinate : coordinates) {
-      String[] sections = coordinate.split(":");
-      if (sections.length != 3) {
-        continue;
+  @VisibleForTesting
+  VulnerabilityExclusionMatcher buildExclusionMatcher() {
+    VulnerabilityExclusionMatcher matcher = new VulnerabilityExclusionMatcher();
+    extension.getExcludeVulnerabilityIds().forEach(matcher::excludeVulnerability);
+
+    try {
+      extension.getExcludeCoordinates().forEach(matcher::excludeCoordinates);
+      File suppressionFile = extension.getSuppressionFile();
+      if (suppressionFile != null) {
+        matcher.load(suppressionFile.toPath());
       }
-      String group = sections[0];
-      String name = sections[1];
-      String version = sections[2];
-      packageUrls.add(toPackageUrl(group, name, version));
+    }
+    catch (IllegalArgumentException e) {
+      throw new GradleException("Invalid vulnerability exclusion: " + e.getMessage(), e);
+    }
+    catch (IOException e) {
+      throw new GradleException("Could not read the suppression file: " + e.getMessage(), e);
     }
 
-    return packageUrls;
+    return matcher;
   }
 
-  private PackageUrl toPackageUrl(ResolvedDependency dependency) {
-    ModuleVersionIdentifier id = dependency.getModule().getId();
+  private PackageUrl toPackageUrl(ModuleVersionIdentifier id) {
     return toPackageUrl(id.getGroup(), id.getName(), id.getVersion());
   }
 
@@ -202,16 +544,30 @@ public class OssIndexAuditTask
         .build();
   }
 
+  /**
+   * Builds a handler per console output format and a single one writing all the CycloneDX SBOM files.
+   */
   @VisibleForTesting
-  OssIndexResponseHandler buildResponseHandler() {
-    switch (extension.getOutputFormat()) {
-      case DEPENDENCY_GRAPH:
-        return new DependencyGraphResponseHandler(extension);
-      case JSON_CYCLONE_DX_1_4:
-        return new CycloneDxResponseHandler(extension, getProject());
-      default:
-        return new DefaultResponseHandler(extension);
+  List<OssIndexResponseHandler> buildResponseHandlers() {
+    List<OssIndexResponseHandler> responseHandlers = new ArrayList<>();
+
+    for (OutputFormat outputFormat : getOutputFormats()) {
+      if (outputFormat == OutputFormat.DEPENDENCY_GRAPH) {
+        responseHandlers.add(new DependencyGraphResponseHandler(extension));
+      }
+      else if (outputFormat == null || !outputFormat.isCycloneDx()) {
+        responseHandlers.add(new DefaultResponseHandler(extension));
+      }
     }
+
+    Map<OutputFormat, Path> cycloneDxFiles =
+        resolveCycloneDxFiles(getOutputFormats(), buildDirectory.get().getAsFile());
+    if (!cycloneDxFiles.isEmpty()) {
+      responseHandlers.add(new CycloneDxResponseHandler(extension, projectGroup.get(), projectName,
+          projectVersion.get(), cycloneDxFiles));
+    }
+
+    return responseHandlers;
   }
 
   @Input
@@ -239,6 +595,31 @@ public class OssIndexAuditTask
     return extension.getCacheExpiration();
   }
 
+  @Input
+  public int getCacheMaxEntries() {
+    return extension.getCacheMaxEntries();
+  }
+
+  @Input
+  public int getBatchSize() {
+    return extension.getBatchSize();
+  }
+
+  @Input
+  public int getMaxConcurrentRequests() {
+    return extension.getMaxConcurrentRequests();
+  }
+
+  @Input
+  public int getRateLimitMaxRetries() {
+    return extension.getRateLimitMaxRetries();
+  }
+
+  @Input
+  public long getRateLimitBackoffMillis() {
+    return extension.getRateLimitBackoffMillis();
+  }
+
   @Input
   public boolean isAllConfigurations() {
     return extension.isAllConfigurations();
@@ -259,6 +640,64 @@ public class OssIndexAuditTask
     return extension.isPrintBanner();
   }
 
+  @Input
+  public boolean isParallelResolution() {
+    return extension.isParallelResolution();
+  }
+
+  @Input
+  public boolean isIncremental() {
+    return extension.isIncremental();
+  }
+
+  @Input
+  public boolean isFailOnDetection() {
+    return extension.isFailOnDetection();
+  }
+
+  @Input
+  public boolean isSimulationEnabled() {
+    return extension.isSimulationEnabled();
+  }
+
+  @Input
+  public boolean isSimulatedVulnerabilityFound() {
+    return extension.isSimulatedVulnerabilityFound();
+  }
+
+  /**
+   * A hash of everything the result of the audit depends on besides the OSS Index data: the resolved dependency graph,
+   * the exclusions and the output formats. Only computed when the audit max age is set, as otherwise the audit always
+   * runs.
+   */
+  @Input
+  @Optional
+  public String getAuditFingerprint() {
+    if (getAuditMaxAgeMillis() <= 0) {
+      return null;
+    }
+
+    Hasher hasher = Hashing.sha256().newHasher();
+    putString(hasher, dependenciesFinder.findDependencyGraphFingerprint(getAuditedDependencies()));
+    hasher.putInt(extension.getExcludeVulnerabilityIds().size());
+    new TreeSet<>(extension.getExcludeVulnerabilityIds()).forEach(id -> putString(hasher, id));
+    hasher.putInt(extension.getExcludeCoordinates().size());
+    new TreeSet<>(extension.getExcludeCoordinates()).forEach(coordinates -> putString(hasher, coordinates));
+    getOutputFormats().forEach(outputFormat -> putString(hasher, String.valueOf(outputFormat)));
+    return hasher.hash().toString();
+  }
+
+  private static void putString(Hasher hasher, String value) {
+    hasher.putInt(value.length()).putString(value, StandardCharsets.UTF_8);
+  }
+
+  @InputFile
+  @Optional
+  @PathSensitive(PathSensitivity.NONE)
+  public File getSuppressionFile() {
+    return extension.getSuppressionFile();
+  }
+
   @Input
   @Optional
   public Set<String> getModulesIncluded() {
@@ -272,9 +711,8 @@ public class OssIndexAuditTask
   }
 
   @Input
-  @Optional
-  public OutputFormat getOutputFormat() {
-    return extension.getOutputFormat();
+  public List<OutputFormat> getOutputFormats() {
+    return extension.resolveOutputFormats();
   }
 
   @Input
@@ -282,4 +720,52 @@ public class OssIndexAuditTask
   public Component.Type getCycloneDxComponentType() {
     return extension.getCycloneDxComponentType();
   }
+
+  /**
+   * @return the file where the result of the audit is kept, only when the audit max age is set so it can be reused.
+   */
+  @OutputFile
+  @Optional
+  public File getAuditResultFile() {
+    return getAuditMaxAgeMillis() > 0
+        ? new File(resolveIncrementalStateDirectory(buildDirectory.get().getAsFile()), AUDIT_RESULT_FILE)
+        : null;
+  }
+
+  /**
+   * @return the dependency graph report file, only when the dependency graph output format is used.
+   */
+  @OutputFile
+  @Optional
+  public File getDependencyGraphReportFile() {
+    return getOutputFormats().contains(OutputFormat.DEPENDENCY_GRAPH) ? extension.getDependencyGraphReportFile() : null;
+  }
+
+  /**
+   * @return the CycloneDX SBOM files, one per CycloneDX output format.
+   */
+  @OutputFiles
+  public List<File> getCycloneDxFiles() {
+    return resolveCycloneDxFiles(getOutputFormats(), buildDirectory.get().getAsFile()).values().stream()
+        .map(Path::toFile)
+        .collect(Collectors.toList());
+  }
+
+  static Map<OutputFormat, Path> resolveCycloneDxFiles(Collection<OutputFormat> outputFormats, File buildDirectory) {
+    Map<OutputFormat, Path> cycloneDxFiles = new LinkedHashMap<>();
+    for (OutputFormat outputFormat : outputFormats) {
+      if (outputFormat != null && outputFormat.isCycloneDx()) {
+        cycloneDxFiles.put(outputFormat, resolveCycloneDxFile(buildDirectory, outputFormat).toPath());
+      }
+    }
+    return cycloneDxFiles;
+  }
+
+  static File resolveIncrementalStateDirectory(File buildDirectory) {
+    return new File(buildDirectory, INCREMENTAL_STATE_DIRECTORY);
+  }
+
+  static File resolveCycloneDxFile(File buildDirectory, OutputFormat outputFormat) {
+    return new File(new File(buildDirectory, REPORTS_DIRECTORY), outputFormat.getFileName());
+  }
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.ossindex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import org.sonatype.goodies.packageurl.PackageUrl;
+import org.sonatype.ossindex.service.api.componentreport.ComponentReport;
+import org.sonatype.ossindex.service.client.OssindexClient;
+import org.sonatype.ossindex.service.client.transport.ProxyConfiguration;
+
+import org.gradle.api.artifacts.ResolvedDependency;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.internal.impldep.com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared by all the {@link OssIndexAuditTask}s of a build, so each component report is requested to OSS Index only
+ * once per build no matter how many projects use the component. The clients are kept open until the end of the build
+ * and there is one per distinct client configuration, which usually means a single one. It also hands the
+ * dependencies resolved by each {@link OssIndexResolveDependenciesTask} to the audit task that needs them.
+ * <p>
+ * Build services are available since Gradle 6.1, on older versions each task uses its own client.
+ */
+public abstract class OssIndexBuildService
+    implements BuildService<BuildServiceParameters.None>, AutoCloseable
+{
+  public static final String NAME = "ossIndexBuildService";
+
+  private static final Logger log = LoggerFactory.getLogger(OssIndexBuildService.class);
+
+  private final Map<String, OssindexClient> clients = new ConcurrentHashMap<>();
+
+  private final Map<PackageUrl, CompletableFuture<ComponentReport>> reports = new ConcurrentHashMap<>();
+
+  private final Map<String, Set<ResolvedDependency>> resolvedDependencies = new ConcurrentHashMap<>();
+
+  public static Provider<OssIndexBuildService> registerIfAbsent(Gradle gradle) {
+    return gradle.getSharedServices().registerIfAbsent(NAME, OssIndexBuildService.class, spec -> { });
+  }
+
+  /**
+   * Returns the reports of the given components, requesting only the ones not requested before in this build. The
+   * ones being requested by another task at the same time are waited for instead of requested again.
+   */
+  public Map<PackageUrl, ComponentReport> requestComponentReports(
+      OssIndexPluginExtension extension,
+      String gradleVersion,
+      List<PackageUrl> packageUrls) throws Exception
+  {
+    Map<PackageUrl, CompletableFuture<ComponentReport>> requestedReports = new LinkedHashMap<>();
+    List<PackageUrl> missingPackageUrls = new ArrayList<>();
+
+    for (PackageUrl packageUrl : packageUrls) {
+      CompletableFuture<ComponentReport> newReport = new CompletableFuture<>();
+      CompletableFuture<ComponentReport> existingReport = reports.putIfAbsent(packageUrl, newReport);
+      if (existingReport == null) {
+        missingPackageUrls.add(packageUrl);
+        requestedReports.put(packageUrl, newReport);
+      }
+      else {
+        requestedReports.put(packageUrl, existingReport);
+      }
+    }
+
+    log.debug("Requesting {} of {} component reports not requested before in this build",
+        missingPackageUrls.size(), packageUrls.size());
+
+    if (!missingPackageUrls.isEmpty()) {
+      try {
+        Map<PackageUrl, ComponentReport> response =
+            getClient(extension, gradleVersion).requestComponentReports(missingPackageUrls);
+        missingPackageUrls.forEach(packageUrl -> requestedReports.get(packageUrl).complete(response.get(packageUrl)));
+      }
+      catch (Throwable e) {
+        // let a later request try again, errors included so the tasks waiting for these reports don't block forever
+        missingPackageUrls.forEach(packageUrl -> {
+          reports.remove(packageUrl);
+          requestedReports.get(packageUrl).completeExceptionally(e);
+        });
+        throw e;
+      }
+    }
+
+    Map<PackageUrl, ComponentReport> response = new HashMap<>();
+    for (Entry<PackageUrl, CompletableFuture<ComponentReport>> entry : requestedReports.entrySet()) {
+      ComponentReport report = getReport(entry.getValue());
+      if (report != null) {
+        response.put(entry.getKey(), report);
+      }
+    }
+    return response;
+  }
+
+  /**
+   * Keeps the dependencies resolved by a {@link OssIndexResolveDependenciesTask} until the audit task takes them.
+   */
+  public void putResolvedDependencies(String resolveTaskPath, Set<ResolvedDependency> dependencies) {
+    resolvedDependencies.put(resolveTaskPath, dependencies);
+  }
+
+  /**
+   * @return the dependencies resolved by the task with the given path, or {@code null} if it has not run in this build.
+   */
+  public Set<ResolvedDependency> takeResolvedDependencies(String resolveTaskPath) {
+    return resolvedDependencies.remove(resolveTaskPath);
+  }
+
+  @Override
+  public void close() {
+    clients.values().forEach(client -> {
+      try {
+        client.close();
+      }
+      catch (Exception e) {
+        log.warn("Could not close the OSS Index client: {}", e.getMessage());
+      }
+    });
+    clients.clear();
+    reports.clear();
+    resolvedDependencies.clear();
+  }
+
+  @VisibleForTesting
+  OssindexClient buildClient(OssIndexPluginExtension extension, String gradleVersion) {
+    return OssIndexAuditTask.buildOssIndexClient(extension, gradleVersion);
+  }
+
+  private OssindexClient getClient(OssIndexPluginExtension extension, String gradleVersion) {
+    return clients.computeIfAbsent(getClientKey(extension), key -> buildClient(extension, gradleVersion));
+  }
+
+  private static ComponentReport getReport(CompletableFuture<ComponentReport> report) throws Exception {
+    try {
+      return report.get();
+    }
+    catch (ExecutionException e) {
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+  }
+
+  private static String getClientKey(OssIndexPluginExtension extension) {
+    List<Object> values = new ArrayList<>();
+    values.add(extension.getUsername());
+    values.add(extension.getPassword());
+    values.add(extension.isUseCache());
+    values.add(extension.getCacheDirectory());
+    values.add(extension.getCacheExpiration());
+    values.add(extension.getCacheMaxEntries());
+    values.add(extension.getBatchSize());
+    values.add(extension.getMaxConcurrentRequests());
+    values.add(extension.getRateLimitMaxRetries());
+    values.add(extension.getRateLimitBackoffMillis());
+
+    ProxyConfiguration proxyConfiguration = extension.getProxyConfiguration();
+    if (proxyConfiguration != null) {
+      values.add(proxyConfiguration.getProtocol());
+      values.add(proxyConfiguration.getHost());
+      values.add(proxyConfiguration.getPort());
+      if (proxyConfiguration.getAuthConfiguration() != null) {
+        values.add(proxyConfiguration.getAuthConfiguration().getUsername());
+        values.add(proxyConfiguration.getAuthConfiguration().getPassword());
+      }
+    }
+
+    return values.stream().map(Objects::toString).collect(Collectors.joining("\u0000"));
+  }
+}
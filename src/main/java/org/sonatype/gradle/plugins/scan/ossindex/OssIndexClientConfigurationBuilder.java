@@ -18,7 +18,6 @@ package org.sonatype.gradle.plugins.scan.ossindex;
 import java.io.File;
 
 import org.sonatype.ossindex.service.client.OssindexClientConfiguration;
-import org.sonatype.ossindex.service.client.cache.DirectoryCache;
 import org.sonatype.ossindex.service.client.transport.AuthConfiguration;
 
 import org.apache.commons.lang3.StringUtils;
@@ -43,25 +42,11 @@ public class OssIndexClientConfigurationBuilder
       }
 
       if (extension.isUseCache()) {
-        DirectoryCache.Configuration cacheConfig = new DirectoryCache.Configuration();
-
-        if (StringUtils.isNotBlank(extension.getCacheDirectory())) {
-          File cacheDirectory = new File(extension.getCacheDirectory());
-          cacheConfig.setBaseDir(cacheDirectory.toPath());
-        }
-
-        if (StringUtils.isNotBlank(extension.getCacheExpiration())) {
-          try {
-            cacheConfig.setExpireAfter(Duration.parse(extension.getCacheExpiration()));
-          }
-          catch (IllegalArgumentException e) {
-            log.warn(
-                "Invalid cache duration value: {}. Please read https://www.javadoc.io/doc/joda-time/joda-time/2.10.4/org/joda/time/Duration.html#parse-java.lang.String-",
-                extension.getCacheExpiration());
-          }
-        }
+        clientConfiguration.setCacheConfiguration(buildCacheConfiguration(extension));
+      }
 
-        clientConfiguration.setCacheConfiguration(cacheConfig);
+      if (extension.getBatchSize() > 0) {
+        clientConfiguration.setBatchSize(extension.getBatchSize());
       }
 
       clientConfiguration.setProxyConfiguration(extension.getProxyConfiguration());
@@ -69,4 +54,30 @@ public class OssIndexClientConfigurationBuilder
 
     return clientConfiguration;
   }
+
+  public ComponentReportCache.Configuration buildCacheConfiguration(OssIndexPluginExtension extension) {
+    ComponentReportCache.Configuration cacheConfig = new ComponentReportCache.Configuration();
+
+    if (StringUtils.isNotBlank(extension.getCacheDirectory())) {
+      File cacheDirectory = new File(extension.getCacheDirectory());
+      cacheConfig.setBaseDir(cacheDirectory.toPath());
+    }
+
+    if (StringUtils.isNotBlank(extension.getCacheExpiration())) {
+      try {
+        cacheConfig.setExpireAfter(Duration.parse(extension.getCacheExpiration()));
+      }
+      catch (IllegalArgumentException e) {
+        log.warn(
+            "Invalid cache duration value: {}. Please read https://www.javadoc.io/doc/joda-time/joda-time/2.10.4/org/joda/time/Duration.html#parse-java.lang.String-",
+            extension.getCacheExpiration());
+      }
+    }
+
+    if (extension.getCacheMaxEntries() > 0) {
+      cacheConfig.setMaxEntries(extension.getCacheMaxEntries());
+    }
+
+    return cacheConfig;
+  }
 }
@@ -15,11 +15,17 @@
  */
 package org.sonatype.gradle.plugins.scan.ossindex;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
+import org.sonatype.ossindex.service.client.OssindexClientConfiguration;
 import org.sonatype.ossindex.service.client.transport.AuthConfiguration;
 import org.sonatype.ossindex.service.client.transport.ProxyConfiguration;
 
@@ -45,6 +51,8 @@ public class OssIndexPluginExtension
    */
   private String cacheExpiration;
 
+  private int cacheMaxEntries;
+
   private boolean allConfigurations;
 
   private Set<String> modulesIncluded;
@@ -69,20 +77,57 @@ public class OssIndexPluginExtension
 
   private Set<String> excludeCoordinates;
 
+  /**
+   * A file listing more exclusions, one per line: a vulnerability id, a coordinates pattern, or a coordinates pattern
+   * followed by a vulnerability id. See {@link VulnerabilityExclusionMatcher} for the patterns.
+   */
+  private File suppressionFile;
+
   private OutputFormat outputFormat;
 
+  /**
+   * When not empty, replaces {@link #outputFormat} so more than one report is produced from the same audit.
+   */
+  private List<OutputFormat> outputFormats;
+
   private Component.Type cycloneDxComponentType;
 
+  /**
+   * When set, the dependency graph output is written to this file instead of the log.
+   */
+  private File dependencyGraphReportFile;
+
   private Map<String, String> variantAttributes;
 
   private boolean excludeCompileOnly;
 
+  private boolean parallelResolution;
+
+  private boolean incremental;
+
+  /**
+   * How long at most the result of an audit can be reused while the dependencies, the exclusions and the output formats
+   * don't change, counted from the time of that audit. It must be an ISO-8601 duration, e.g. PT24H; when empty the
+   * audit always runs.
+   */
+  private String auditMaxAge;
+
+  private int batchSize;
+
+  private int maxConcurrentRequests;
+
+  private int rateLimitMaxRetries;
+
+  private long rateLimitBackoffMillis;
+
   public OssIndexPluginExtension(Project project) {
     username = "";
     password = "";
     useCache = true;
     cacheDirectory = "";
     cacheExpiration = "";
+    auditMaxAge = "";
+    cacheMaxEntries = ComponentReportCache.Configuration.DEFAULT_MAX_ENTRIES;
     simulationEnabled = false;
     simulatedVulnerabilityFound = false;
     colorEnabled = true;
@@ -92,8 +137,13 @@ public class OssIndexPluginExtension
     excludeVulnerabilityIds = new HashSet<>();
     excludeCoordinates = new HashSet<>();
     outputFormat = OutputFormat.DEFAULT;
+    outputFormats = new ArrayList<>();
     cycloneDxComponentType = Component.Type.LIBRARY;
     variantAttributes = Collections.emptyMap();
+    batchSize = OssindexClientConfiguration.DEFAULT_BATCH_SIZE;
+    maxConcurrentRequests = 1;
+    rateLimitMaxRetries = 3;
+    rateLimitBackoffMillis = 1000;
   }
 
   public String getUsername() {
@@ -136,6 +186,14 @@ public class OssIndexPluginExtension
     this.cacheExpiration = cacheExpiration;
   }
 
+  public int getCacheMaxEntries() {
+    return cacheMaxEntries;
+  }
+
+  public void setCacheMaxEntries(int cacheMaxEntries) {
+    this.cacheMaxEntries = cacheMaxEntries;
+  }
+
   public boolean isAllConfigurations() {
     return allConfigurations;
   }
@@ -241,6 +299,14 @@ public class OssIndexPluginExtension
     this.excludeCoordinates = excludeCoordinates;
   }
 
+  public File getSuppressionFile() {
+    return suppressionFile;
+  }
+
+  public void setSuppressionFile(File suppressionFile) {
+    this.suppressionFile = suppressionFile;
+  }
+
   public OutputFormat getOutputFormat() {
     return outputFormat;
   }
@@ -249,6 +315,24 @@ public class OssIndexPluginExtension
     this.outputFormat = outputFormat;
   }
 
+  public List<OutputFormat> getOutputFormats() {
+    return outputFormats;
+  }
+
+  public void setOutputFormats(List<?> outputFormats) {
+    this.outputFormats = outputFormats.stream().map(OutputFormat::of).collect(Collectors.toList());
+  }
+
+  /**
+   * @return the formats of the reports to produce, without duplicates and in the order they were given.
+   */
+  List<OutputFormat> resolveOutputFormats() {
+    if (outputFormats == null || outputFormats.isEmpty()) {
+      return Collections.singletonList(outputFormat);
+    }
+    return new ArrayList<>(new LinkedHashSet<>(outputFormats));
+  }
+
   public Component.Type getCycloneDxComponentType() {
     return cycloneDxComponentType;
   }
@@ -257,6 +341,14 @@ public class OssIndexPluginExtension
     this.cycloneDxComponentType = cycloneDxComponentType;
   }
 
+  public File getDependencyGraphReportFile() {
+    return dependencyGraphReportFile;
+  }
+
+  public void setDependencyGraphReportFile(File dependencyGraphReportFile) {
+    this.dependencyGraphReportFile = dependencyGraphReportFile;
+  }
+
   public Map<String, String> getVariantAttributes() {
     return variantAttributes;
   }
@@ -272,4 +364,60 @@ public class OssIndexPluginExtension
   public void setExcludeCompileOnly(boolean excludeCompileOnly) {
     this.excludeCompileOnly = excludeCompileOnly;
   }
+
+  public boolean isParallelResolution() {
+    return parallelResolution;
+  }
+
+  public void setParallelResolution(boolean parallelResolution) {
+    this.parallelResolution = parallelResolution;
+  }
+
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  public void setIncremental(boolean incremental) {
+    this.incremental = incremental;
+  }
+
+  public String getAuditMaxAge() {
+    return auditMaxAge;
+  }
+
+  public void setAuditMaxAge(String auditMaxAge) {
+    this.auditMaxAge = auditMaxAge;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public int getMaxConcurrentRequests() {
+    return maxConcurrentRequests;
+  }
+
+  public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+    this.maxConcurrentRequests = maxConcurrentRequests;
+  }
+
+  public int getRateLimitMaxRetries() {
+    return rateLimitMaxRetries;
+  }
+
+  public void setRateLimitMaxRetries(int rateLimitMaxRetries) {
+    this.rateLimitMaxRetries = rateLimitMaxRetries;
+  }
+
+  public long getRateLimitBackoffMillis() {
+    return rateLimitBackoffMillis;
+  }
+
+  public void setRateLimitBackoffMillis(long rateLimitBackoffMillis) {
+    this.rateLimitBackoffMillis = rateLimitBackoffMillis;
+  }
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.ossindex;
+
+import java.util.Collections;
+
+import javax.inject.Inject;
+
+import org.sonatype.gradle.plugins.scan.common.DependenciesFinder;
+import org.sonatype.gradle.plugins.scan.common.TaskNameUtils;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.Project;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Resolves the dependencies of the project owning this task on behalf of an {@link OssIndexAuditTask}. Having one of
+ * these tasks per audited project lets Gradle resolve each project while holding its own lock, running them
+ * concurrently when the build uses {@code --parallel}. The resolved dependencies are handed to the audit task through
+ * the {@link OssIndexBuildService}, keyed by the path of this task, so the audit task never reads the state of tasks
+ * of other projects. Requires Gradle 6.1+.
+ */
+public class OssIndexResolveDependenciesTask
+    extends DefaultTask
+{
+  private static final String TASK_NAME_PREFIX = "ossIndexResolveDependencies";
+
+  private final OssIndexPluginExtension extension;
+
+  private final DependenciesFinder dependenciesFinder;
+
+  private Provider<OssIndexBuildService> buildService;
+
+  @Inject
+  public OssIndexResolveDependenciesTask(OssIndexPluginExtension extension) {
+    this.extension = extension;
+    dependenciesFinder = new DependenciesFinder();
+  }
+
+  public void useBuildService(Provider<OssIndexBuildService> buildService) {
+    this.buildService = buildService;
+    usesService(buildService);
+  }
+
+  @TaskAction
+  public void resolve() {
+    if (buildService == null) {
+      return;
+    }
+
+    buildService.get().putResolvedDependencies(getPath(), Collections.unmodifiableSet(
+        dependenciesFinder.findResolvedDependencies(getProject(), extension.isAllConfigurations(),
+            extension.getVariantAttributes(), extension.isExcludeCompileOnly())));
+  }
+
+  /**
+   * Each project applying the plugin audits its own subtree, so the task name includes the path of the auditing
+   * project to keep it unique when the plugin is applied on more than one project of the build.
+   */
+  public static String getTaskName(Project auditingProject) {
+    return TaskNameUtils.getTaskName(TASK_NAME_PREFIX, auditingProject);
+  }
+}
@@ -15,9 +15,60 @@
  */
 package org.sonatype.gradle.plugins.scan.ossindex;
 
+import java.util.Locale;
+
+import org.cyclonedx.Version;
+
+import static org.sonatype.gradle.plugins.scan.ossindex.CycloneDxResponseHandler.FILE_NAME_OUTPUT;
+
 public enum OutputFormat
 {
-  DEFAULT,
-  DEPENDENCY_GRAPH,
-  JSON_CYCLONE_DX_1_4
+  DEFAULT(null, null),
+  DEPENDENCY_GRAPH(null, null),
+  JSON_CYCLONE_DX_1_4(Version.VERSION_14, FILE_NAME_OUTPUT),
+  JSON_CYCLONE_DX_1_5(Version.VERSION_15, "oss-index-cyclonedx-1.5-bom.json"),
+  JSON_CYCLONE_DX_1_6(Version.VERSION_16, "oss-index-cyclonedx-1.6-bom.json"),
+  XML_CYCLONE_DX_1_4(Version.VERSION_14, "oss-index-cyclonedx-1.4-bom.xml"),
+  XML_CYCLONE_DX_1_5(Version.VERSION_15, "oss-index-cyclonedx-1.5-bom.xml"),
+  XML_CYCLONE_DX_1_6(Version.VERSION_16, "oss-index-cyclonedx-1.6-bom.xml");
+
+  private final Version cycloneDxVersion;
+
+  private final String fileName;
+
+  OutputFormat(Version cycloneDxVersion, String fileName) {
+    this.cycloneDxVersion = cycloneDxVersion;
+    this.fileName = fileName;
+  }
+
+  public boolean isCycloneDx() {
+    return cycloneDxVersion != null;
+  }
+
+  public boolean isXml() {
+    return name().startsWith("XML_");
+  }
+
+  /**
+   * @return the CycloneDX schema version of the SBOM, null when the format is not CycloneDX.
+   */
+  public Version getCycloneDxVersion() {
+    return cycloneDxVersion;
+  }
+
+  /**
+   * @return the name of the SBOM file written to the reports directory, null when the format is not CycloneDX.
+   */
+  public String getFileName() {
+    return fileName;
+  }
+
+  /**
+   * Accepts the formats given by name in the build scripts, as Groovy and Kotlin don't convert the elements of a list.
+   */
+  static OutputFormat of(Object value) {
+    return value instanceof OutputFormat
+        ? (OutputFormat) value
+        : valueOf(String.valueOf(value).trim().toUpperCase(Locale.ROOT));
+  }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.ossindex;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.sonatype.ossindex.service.client.transport.HttpClientTransport;
+import org.sonatype.ossindex.service.client.transport.UserAgentSupplier;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpStatus;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * {@link HttpClientTransport} reporting the responses with a status other than 200 as an
+ * {@link UnexpectedStatusException}, which carries the status code instead of only the status line in its message.
+ */
+public class StatusHttpClientTransport
+    extends HttpClientTransport
+{
+  public StatusHttpClientTransport(UserAgentSupplier userAgent) {
+    super(userAgent);
+  }
+
+  @Override
+  public String post(
+      URI url,
+      String payloadType,
+      String payload,
+      String accept) throws TransportException, IOException
+  {
+    try {
+      return super.post(url, payloadType, payload, accept);
+    }
+    catch (StatusIOException e) {
+      throw new UnexpectedStatusException(e.statusLine.getStatusCode(), String.valueOf(e.statusLine));
+    }
+  }
+
+  @Override
+  protected CloseableHttpClient createClient() {
+    return new StatusCheckingHttpClient(super.createClient());
+  }
+
+  /**
+   * Carries the status line out of the client, as the transport only reports it in a message.
+   */
+  private static class StatusIOException
+      extends IOException
+  {
+    private final transient StatusLine statusLine;
+
+    StatusIOException(StatusLine statusLine) {
+      super(String.valueOf(statusLine));
+      this.statusLine = statusLine;
+    }
+  }
+
+  private static class StatusCheckingHttpClient
+      extends CloseableHttpClient
+  {
+    private final CloseableHttpClient delegate;
+
+    StatusCheckingHttpClient(CloseableHttpClient delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    protected CloseableHttpResponse doExecute(
+        HttpHost target,
+        HttpRequest request,
+        HttpContext context) throws IOException
+    {
+      CloseableHttpResponse response = delegate.execute(target, request, context);
+      StatusLine statusLine = response.getStatusLine();
+      if (statusLine.getStatusCode() == HttpStatus.SC_OK) {
+        return response;
+      }
+
+      try {
+        EntityUtils.consumeQuietly(response.getEntity());
+      }
+      finally {
+        response.close();
+      }
+      throw new StatusIOException(statusLine);
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+
+    @Override
+    @Deprecated
+    public HttpParams getParams() {
+      return delegate.getParams();
+    }
+
+    @Override
+    @Deprecated
+    public ClientConnectionManager getConnectionManager() {
+      return delegate.getConnectionManager();
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.ossindex;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.DefaultIndenter;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.cyclonedx.Version;
+import org.cyclonedx.generators.json.BomJsonGenerator;
+import org.cyclonedx.model.Bom;
+import org.cyclonedx.model.Component;
+import org.cyclonedx.model.vulnerability.Vulnerability;
+import org.cyclonedx.util.introspector.VersionJsonAnnotationIntrospector;
+import org.cyclonedx.util.serializer.ComponentWrapperSerializer;
+import org.cyclonedx.util.serializer.CustomSerializerModifier;
+import org.cyclonedx.util.serializer.DependencySerializer;
+import org.cyclonedx.util.serializer.EvidenceSerializer;
+import org.cyclonedx.util.serializer.ExternalReferenceSerializer;
+import org.cyclonedx.util.serializer.HashSerializer;
+import org.cyclonedx.util.serializer.InputTypeSerializer;
+import org.cyclonedx.util.serializer.LicenseChoiceSerializer;
+import org.cyclonedx.util.serializer.LifecycleSerializer;
+import org.cyclonedx.util.serializer.MetadataSerializer;
+import org.cyclonedx.util.serializer.OutputTypeSerializer;
+import org.cyclonedx.util.serializer.SignatorySerializer;
+import org.cyclonedx.util.serializer.TrimStringSerializer;
+
+/**
+ * Writes a CycloneDX JSON BOM to a stream as its components are found, so neither the whole list of components nor the
+ * whole document have to be kept in memory. Its object mapper is configured with the same CycloneDX serializers as the
+ * one of {@link BomJsonGenerator} for the schema version, so each part of the BOM is serialized the same way the non
+ * streaming generator does.
+ * <p>
+ * The BOM given to the constructor is the header of the document: the metadata and the other properties written
+ * before the components. Components are written next, one at a time, followed by the vulnerabilities.
+ */
+public class StreamingBomJsonGenerator
+    implements Closeable
+{
+  private static final String BOM_FORMAT = "CycloneDX";
+
+  private static final String BOM_FORMAT_FIELD = "bomFormat";
+
+  private static final String SPEC_VERSION_FIELD = "specVersion";
+
+  private static final String COMPONENTS_FIELD = "components";
+
+  private static final String VULNERABILITIES_FIELD = "vulnerabilities";
+
+  private final JsonGenerator generator;
+
+  private final ObjectWriter objectWriter;
+
+  private boolean writingComponents;
+
+  private boolean closed;
+
+  public StreamingBomJsonGenerator(Bom header, Version version, OutputStream outputStream) throws IOException {
+    ObjectMapper mapper = buildObjectMapper(version);
+
+    DefaultPrettyPrinter prettyPrinter = new DefaultPrettyPrinter();
+    prettyPrinter.indentArraysWith(DefaultIndenter.SYSTEM_LINEFEED_INSTANCE);
+
+    generator = mapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8);
+    generator.setPrettyPrinter(prettyPrinter);
+    objectWriter = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    generator.writeStartObject();
+    generator.writeStringField(BOM_FORMAT_FIELD, BOM_FORMAT);
+    generator.writeStringField(SPEC_VERSION_FIELD, version.getVersionString());
+    Iterator<Entry<String, JsonNode>> fields = mapper.valueToTree(header).fields();
+    while (fields.hasNext()) {
+      Entry<String, JsonNode> field = fields.next();
+      if (!isWrittenSeparately(field.getKey())) {
+        generator.writeFieldName(field.getKey());
+        generator.writeTree(field.getValue());
+      }
+    }
+  }
+
+  /**
+   * Mirrors the configuration of the object mapper of {@link BomJsonGenerator}, which is private to it.
+   */
+  private static ObjectMapper buildObjectMapper(Version version) {
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.setAnnotationIntrospector(new VersionJsonAnnotationIntrospector(version));
+
+    SimpleModule module = new SimpleModule();
+    module.addSerializer(new LicenseChoiceSerializer(false, version));
+    module.addSerializer(new LifecycleSerializer(false));
+    module.addSerializer(new MetadataSerializer(false, version));
+    module.addSerializer(new InputTypeSerializer(false));
+    module.addSerializer(new OutputTypeSerializer(false));
+    module.addSerializer(new EvidenceSerializer(false, version));
+    module.addSerializer(new SignatorySerializer(false));
+    module.addSerializer(new ExternalReferenceSerializer(version));
+    module.addSerializer(new HashSerializer(version));
+    module.addSerializer(new TrimStringSerializer());
+    module.addSerializer(new DependencySerializer(false, null));
+    module.addSerializer(new ComponentWrapperSerializer(mapper));
+    module.setSerializerModifier(new CustomSerializerModifier(false, version));
+    mapper.registerModule(module);
+    return mapper;
+  }
+
+  private static boolean isWrittenSeparately(String fieldName) {
+    return BOM_FORMAT_FIELD.equals(fieldName) || SPEC_VERSION_FIELD.equals(fieldName)
+        || COMPONENTS_FIELD.equals(fieldName) || VULNERABILITIES_FIELD.equals(fieldName);
+  }
+
+  public void writeComponent(Component component) throws IOException {
+    if (!writingComponents) {
+      generator.writeArrayFieldStart(COMPONENTS_FIELD);
+      writingComponents = true;
+    }
+    objectWriter.writeValue(generator, component);
+  }
+
+  /**
+   * Ends the list of components, so it must be called once all of them are written.
+   */
+  public void writeVulnerabilities(Collection<Vulnerability> vulnerabilities) throws IOException {
+    endComponents();
+
+    if (!vulnerabilities.isEmpty()) {
+      generator.writeArrayFieldStart(VULNERABILITIES_FIELD);
+      for (Vulnerability vulnerability : vulnerabilities) {
+        objectWriter.writeValue(generator, vulnerability);
+      }
+      generator.writeEndArray();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    try {
+      endComponents();
+      generator.writeEndObject();
+    }
+    finally {
+      generator.close();
+    }
+  }
+
+  private void endComponents() throws IOException {
+    if (writingComponents) {
+      generator.writeEndArray();
+      writingComponents = false;
+    }
+  }
+}
@@ -28,17 +28,25 @@ import org.gradle.internal.impldep.com.google.common.annotations.VisibleForTesti
 public class TransportBuilder
 {
   public HttpClientTransport build(Project project) {
-    UserAgentSupplier userAgentSupplier = buildUserAgentSupplier(project);
-    return new HttpClientTransport(userAgentSupplier);
+    return build(project.getGradle().getGradleVersion());
+  }
+
+  public HttpClientTransport build(String gradleVersion) {
+    UserAgentSupplier userAgentSupplier = buildUserAgentSupplier(gradleVersion);
+    return new StatusHttpClientTransport(userAgentSupplier);
   }
 
   @VisibleForTesting
   UserAgentSupplier buildUserAgentSupplier(Project project) {
+    return buildUserAgentSupplier(project.getGradle().getGradleVersion());
+  }
+
+  private UserAgentSupplier buildUserAgentSupplier(String gradleVersion) {
     return new UserAgentSupplier(new VersionSupplier().get())
     {
       @Override
       protected void customize(UserAgentBuilder builder) {
-        builder.product(new Product("Gradle", project.getGradle().getGradleVersion()));
+        builder.product(new Product("Gradle", gradleVersion));
         builder.product(new Product("Gradle-Plugin", PluginVersionUtils.getPluginVersion()));
       }
     };
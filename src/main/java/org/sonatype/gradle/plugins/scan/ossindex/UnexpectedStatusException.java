@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.ossindex;
+
+import org.sonatype.ossindex.service.client.transport.Transport.TransportException;
+
+/**
+ * Thrown by {@link StatusHttpClientTransport} when OSS Index answers with a status other than 200, keeping the status
+ * code so callers don't need to parse the message.
+ */
+public class UnexpectedStatusException
+    extends TransportException
+{
+  private final int statusCode;
+
+  public UnexpectedStatusException(int statusCode, String statusLine) {
+    // same message as the HttpClientTransport one
+    super("Unexpected response; status: " + statusLine);
+    this.statusCode = statusCode;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+}
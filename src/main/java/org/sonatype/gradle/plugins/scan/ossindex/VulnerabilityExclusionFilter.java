@@ -15,39 +15,69 @@
  */
 package org.sonatype.gradle.plugins.scan.ossindex;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
 import org.sonatype.goodies.packageurl.PackageUrl;
+import org.sonatype.gradle.plugins.scan.ossindex.VulnerabilityExclusionMatcher.Exclusions;
 import org.sonatype.ossindex.service.api.componentreport.ComponentReport;
 import org.sonatype.ossindex.service.api.componentreport.ComponentReportVulnerability;
 
 public class VulnerabilityExclusionFilter
 {
-  private final Set<String> vulnerabilityIds;
-
-  private final Set<PackageUrl> coordinates;
+  private final VulnerabilityExclusionMatcher matcher;
 
   public VulnerabilityExclusionFilter(Set<String> vulnerabilityIds, Set<PackageUrl> coordinates) {
-    this.vulnerabilityIds = vulnerabilityIds;
-    this.coordinates = coordinates;
+    this(new VulnerabilityExclusionMatcher());
+    vulnerabilityIds.forEach(matcher::excludeVulnerability);
+    coordinates.forEach(matcher::excludeCoordinates);
+  }
+
+  public VulnerabilityExclusionFilter(VulnerabilityExclusionMatcher matcher) {
+    this.matcher = matcher;
   }
 
+  /**
+   * Replaces the reports of the map with filtered copies, leaving the original reports untouched as they may be shared
+   * through a cache or with the other audit tasks of the build. The reports are copied even when nothing is excluded,
+   * so the response handlers can't modify the shared ones.
+   */
   public void apply(Map<PackageUrl, ComponentReport> report) {
-    if (!vulnerabilityIds.isEmpty() || !coordinates.isEmpty()) {
-      for (Entry<PackageUrl, ComponentReport> entry : report.entrySet()) {
-        PackageUrl packageUrl = entry.getKey();
-        List<ComponentReportVulnerability> vulnerabilities = entry.getValue().getVulnerabilities();
+    for (Entry<PackageUrl, ComponentReport> entry : report.entrySet()) {
+      ComponentReport componentReport = entry.getValue();
+      List<ComponentReportVulnerability> vulnerabilities = new ArrayList<>();
 
-        if (coordinates.contains(packageUrl)) {
-          vulnerabilities.clear();
+      if (componentReport.getVulnerabilities() != null) {
+        if (matcher.isEmpty()) {
+          vulnerabilities.addAll(componentReport.getVulnerabilities());
         }
         else {
-          vulnerabilities.removeIf(vulnerability -> vulnerabilityIds.contains(vulnerability.getId()));
+          // the exclusions of the component are looked up once, not for each of its vulnerabilities
+          Exclusions exclusions = matcher.findExclusions(entry.getKey());
+          if (!exclusions.isAll()) {
+            componentReport.getVulnerabilities().stream()
+                .filter(vulnerability -> !exclusions.excludes(vulnerability.getId()))
+                .forEach(vulnerabilities::add);
+          }
         }
       }
+
+      entry.setValue(copyOf(componentReport, vulnerabilities));
+    }
+  }
+
+  private static ComponentReport copyOf(ComponentReport report, List<ComponentReportVulnerability> vulnerabilities) {
+    ComponentReport copy = new ComponentReport();
+    copy.setCoordinates(report.getCoordinates());
+    copy.setDescription(report.getDescription());
+    copy.setReference(report.getReference());
+    if (report.getSonatypeOssiScore() != null) {
+      copy.setSonatypeOssiScore(report.getSonatypeOssiScore());
     }
+    copy.setVulnerabilities(vulnerabilities);
+    return copy;
   }
 }
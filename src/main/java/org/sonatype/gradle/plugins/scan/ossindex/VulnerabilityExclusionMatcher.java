@@ -0,0 +1,514 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.ossindex;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.sonatype.goodies.packageurl.PackageUrl;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Compiled vulnerability exclusions. A vulnerability can be excluded by id for every component, and the vulnerabilities
+ * of the components matching a coordinates pattern can be excluded all at once or by id.
+ * <p>
+ * Coordinates patterns have the form {@code group:name[:version]}. The group, the name and the version are either
+ * exact or end with {@code *} to match a prefix, e.g. {@code 1.*} matches 1.0 and 1.2.3 but not 10.0, {@code *} alone
+ * matching anything. The version can also be Maven style ranges such as {@code [1.0,2.0)} or {@code (,1.0],[1.2,)};
+ * without version all the versions match.
+ * <p>
+ * The patterns are indexed by tries over the group, the name and the version, and the version ranges of each group and
+ * name are kept in an interval tree. Matching a component walks its coordinates once per matching group and name
+ * pattern, and finds the ranges containing its version in a time logarithmic in the number of ranges plus the number
+ * of matches.
+ */
+public class VulnerabilityExclusionMatcher
+{
+  private static final String WILDCARD = "*";
+
+  private static final String COMMENT_PREFIX = "#";
+
+  private final Set<String> vulnerabilityIds = new HashSet<>();
+
+  private final PrefixIndex<PrefixIndex<VersionRules>> groups = new PrefixIndex<>();
+
+  private boolean hasCoordinates;
+
+  /**
+   * Excludes the vulnerability for every component.
+   */
+  public void excludeVulnerability(String vulnerabilityId) {
+    vulnerabilityIds.add(vulnerabilityId);
+  }
+
+  /**
+   * Excludes all the vulnerabilities of the components matching the pattern.
+   */
+  public void excludeCoordinates(String coordinatesPattern) {
+    addRule(coordinatesPattern, null);
+  }
+
+  /**
+   * Excludes all the vulnerabilities of the component.
+   */
+  public void excludeCoordinates(PackageUrl packageUrl) {
+    addRule(packageUrl.getNamespaceAsString(), packageUrl.getName(), packageUrl.getVersion(), null);
+  }
+
+  /**
+   * Excludes the vulnerability only for the components matching the pattern.
+   */
+  public void excludeVulnerability(String coordinatesPattern, String vulnerabilityId) {
+    addRule(coordinatesPattern, vulnerabilityId);
+  }
+
+  /**
+   * Loads a suppression file. Each line holds a vulnerability id, a coordinates pattern, or a coordinates pattern
+   * followed by the vulnerability id to exclude for the matching components only. Empty lines and lines starting with
+   * {@code #} are ignored.
+   */
+  public void load(Path suppressionFile) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(suppressionFile, StandardCharsets.UTF_8)) {
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith(COMMENT_PREFIX)) {
+          continue;
+        }
+
+        String[] parts = StringUtils.split(line);
+        try {
+          if (parts.length > 2) {
+            throw new IllegalArgumentException("Expected at most a coordinates pattern and a vulnerability id");
+          }
+          else if (parts.length == 2) {
+            excludeVulnerability(parts[0], parts[1]);
+          }
+          else if (parts[0].contains(":")) {
+            excludeCoordinates(parts[0]);
+          }
+          else {
+            excludeVulnerability(parts[0]);
+          }
+        }
+        catch (IllegalArgumentException e) {
+          throw new IllegalArgumentException(
+              "Invalid suppression at " + suppressionFile + ":" + lineNumber + ": " + e.getMessage(), e);
+        }
+      }
+    }
+  }
+
+  public boolean isEmpty() {
+    return vulnerabilityIds.isEmpty() && !hasCoordinates;
+  }
+
+  /**
+   * @return whether all the vulnerabilities of the component are excluded, whatever they are.
+   */
+  public boolean isFullyExcluded(PackageUrl packageUrl) {
+    return hasCoordinates && findExclusions(packageUrl).all;
+  }
+
+  /**
+   * @return the exclusions applying to the component, to be checked for each of its vulnerabilities.
+   */
+  public Exclusions findExclusions(PackageUrl packageUrl) {
+    Exclusions exclusions = new Exclusions(vulnerabilityIds);
+    if (hasCoordinates) {
+      String version = StringUtils.defaultString(packageUrl.getVersion());
+      groups.collect(StringUtils.defaultString(packageUrl.getNamespaceAsString()), names ->
+          names.collect(packageUrl.getName(), versionRules -> versionRules.collect(version, exclusions)));
+    }
+    return exclusions;
+  }
+
+  private void addRule(String coordinatesPattern, String vulnerabilityId) {
+    String[] sections = StringUtils.trimToEmpty(coordinatesPattern).split(":", -1);
+    if (sections.length < 2 || sections.length > 3) {
+      throw new IllegalArgumentException(
+          "Invalid coordinates '" + coordinatesPattern + "', expected group:name or group:name:version");
+    }
+    addRule(sections[0], sections[1], sections.length == 3 ? sections[2] : WILDCARD, vulnerabilityId);
+  }
+
+  private void addRule(String group, String name, String version, String vulnerabilityId) {
+    if (StringUtils.isAnyBlank(group, name, version)) {
+      throw new IllegalArgumentException(
+          "Invalid coordinates '" + group + ":" + name + ":" + version + "', the sections can't be empty");
+    }
+    groups.getOrCreate(group, PrefixIndex::new)
+        .getOrCreate(name, VersionRules::new)
+        .add(version, vulnerabilityId);
+    hasCoordinates = true;
+  }
+
+  /**
+   * Compares versions the way Maven mostly does: numbers are compared as numbers, qualifiers alphabetically, a number
+   * is greater than a qualifier and a release is greater than the same version with a qualifier (1.0 > 1.0-beta).
+   */
+  static int compareVersions(String version1, String version2) {
+    List<String> tokens1 = tokenize(version1);
+    List<String> tokens2 = tokenize(version2);
+
+    for (int i = 0; i < Math.max(tokens1.size(), tokens2.size()); i++) {
+      String token1 = i < tokens1.size() ? tokens1.get(i) : null;
+      String token2 = i < tokens2.size() ? tokens2.get(i) : null;
+      int result = compareTokens(token1, token2);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return 0;
+  }
+
+  private static int compareTokens(String token1, String token2) {
+    if (token1 == null || token2 == null) {
+      // a missing number is 0 and a missing qualifier is a release, greater than any qualifier
+      String token = token1 != null ? token1 : token2;
+      int sign = token1 != null ? 1 : -1;
+      if (isNumber(token)) {
+        return sign * new BigInteger(token).signum();
+      }
+      return -sign;
+    }
+
+    boolean isNumber1 = isNumber(token1);
+    boolean isNumber2 = isNumber(token2);
+    if (isNumber1 && isNumber2) {
+      return new BigInteger(token1).compareTo(new BigInteger(token2));
+    }
+    if (isNumber1 != isNumber2) {
+      return isNumber1 ? 1 : -1;
+    }
+    return token1.compareTo(token2);
+  }
+
+  private static List<String> tokenize(String version) {
+    List<String> tokens = new ArrayList<>();
+    StringBuilder token = new StringBuilder();
+    for (char character : version.toLowerCase(Locale.ROOT).toCharArray()) {
+      boolean separator = character == '.' || character == '-' || character == '_' || character == '+';
+      boolean typeChange = token.length() > 0
+          && Character.isDigit(character) != Character.isDigit(token.charAt(token.length() - 1));
+      if (separator || typeChange) {
+        if (token.length() > 0) {
+          tokens.add(token.toString());
+          token.setLength(0);
+        }
+      }
+      if (!separator) {
+        token.append(character);
+      }
+    }
+    if (token.length() > 0) {
+      tokens.add(token.toString());
+    }
+    return tokens;
+  }
+
+  private static boolean isNumber(String token) {
+    return !token.isEmpty() && Character.isDigit(token.charAt(0));
+  }
+
+  /**
+   * The exclusions applying to a component. {@link #isAll()} is true when all its vulnerabilities are excluded.
+   */
+  public static class Exclusions
+  {
+    private final Set<String> globalVulnerabilityIds;
+
+    private Set<String> vulnerabilityIds = Collections.emptySet();
+
+    private boolean all;
+
+    Exclusions(Set<String> globalVulnerabilityIds) {
+      this.globalVulnerabilityIds = globalVulnerabilityIds;
+    }
+
+    public boolean isAll() {
+      return all;
+    }
+
+    public boolean excludes(String vulnerabilityId) {
+      return all || globalVulnerabilityIds.contains(vulnerabilityId) || vulnerabilityIds.contains(vulnerabilityId);
+    }
+
+    private void add(String vulnerabilityId) {
+      if (vulnerabilityId == null) {
+        all = true;
+        return;
+      }
+      if (vulnerabilityIds.isEmpty()) {
+        vulnerabilityIds = new HashSet<>();
+      }
+      vulnerabilityIds.add(vulnerabilityId);
+    }
+  }
+
+  /**
+   * Values keyed by exact strings or by prefixes, the ones with a prefix kept in a trie so all the values matching a
+   * string are found walking its characters once.
+   */
+  private static class PrefixIndex<T>
+  {
+    private final Map<String, T> exactValues = new HashMap<>();
+
+    private final TrieNode<T> prefixValues = new TrieNode<>();
+
+    T getOrCreate(String pattern, Supplier<T> factory) {
+      int wildcardIndex = pattern.indexOf(WILDCARD);
+      if (wildcardIndex < 0) {
+        return exactValues.computeIfAbsent(pattern, key -> factory.get());
+      }
+      if (wildcardIndex != pattern.length() - 1) {
+        throw new IllegalArgumentException("Invalid pattern '" + pattern + "', '*' is only allowed at the end");
+      }
+
+      TrieNode<T> node = prefixValues;
+      for (int i = 0; i < wildcardIndex; i++) {
+        node = node.children.computeIfAbsent(pattern.charAt(i), key -> new TrieNode<>());
+      }
+      if (node.value == null) {
+        node.value = factory.get();
+      }
+      return node.value;
+    }
+
+    void collect(String key, Consumer<T> consumer) {
+      T exactValue = exactValues.get(key);
+      if (exactValue != null) {
+        consumer.accept(exactValue);
+      }
+
+      TrieNode<T> node = prefixValues;
+      for (int i = 0; node != null; i++) {
+        if (node.value != null) {
+          consumer.accept(node.value);
+        }
+        node = i < key.length() ? node.children.get(key.charAt(i)) : null;
+      }
+    }
+  }
+
+  private static class TrieNode<T>
+  {
+    private final Map<Character, TrieNode<T>> children = new HashMap<>(4);
+
+    private T value;
+  }
+
+  /**
+   * The version rules of a group and name. Each rule holds the vulnerability id it excludes, null for all of them.
+   * <p>
+   * The ranges are sorted by lower bound and seen as an implicit balanced tree, the middle of each slice being the root
+   * of its subtree, where each node also knows the highest upper bound of its subtree. A lookup skips the subtrees
+   * ending before the version and the right subtrees of the nodes starting after it.
+   */
+  private static class VersionRules
+  {
+    private static final Comparator<VersionRange> LOWER_BOUND_COMPARATOR = Comparator.comparing(
+        range -> range.lowerBound, Comparator.nullsFirst(VulnerabilityExclusionMatcher::compareVersions));
+
+    private final PrefixIndex<List<String>> versionRules = new PrefixIndex<>();
+
+    // sorted by lower bound, unbounded first
+    private final List<VersionRange> ranges = new ArrayList<>();
+
+    // by index of the root of each subtree, the range with the highest upper bound of the subtree
+    private VersionRange[] maxUpperBounds;
+
+    void add(String version, String vulnerabilityId) {
+      if (version.startsWith("[") || version.startsWith("(")) {
+        for (VersionRange range : VersionRange.parse(version, vulnerabilityId)) {
+          int index = Collections.binarySearch(ranges, range, LOWER_BOUND_COMPARATOR);
+          ranges.add(index < 0 ? -index - 1 : index, range);
+        }
+        maxUpperBounds = null;
+      }
+      else {
+        versionRules.getOrCreate(version, () -> new ArrayList<>(1)).add(vulnerabilityId);
+      }
+    }
+
+    void collect(String version, Exclusions exclusions) {
+      versionRules.collect(version, vulnerabilityIds -> vulnerabilityIds.forEach(exclusions::add));
+      if (!ranges.isEmpty()) {
+        collectRanges(getMaxUpperBounds(), 0, ranges.size(), version, exclusions);
+      }
+    }
+
+    private void collectRanges(
+        VersionRange[] maxUpperBounds,
+        int low,
+        int high,
+        String version,
+        Exclusions exclusions)
+    {
+      if (low >= high) {
+        return;
+      }
+      int middle = (low + high) >>> 1;
+      String maxUpperBound = maxUpperBounds[middle].upperBound;
+      if (maxUpperBound != null && compareVersions(maxUpperBound, version) < 0) {
+        // every range of the subtree ends before the version
+        return;
+      }
+
+      collectRanges(maxUpperBounds, low, middle, version, exclusions);
+      VersionRange range = ranges.get(middle);
+      if (range.lowerBound != null && compareVersions(range.lowerBound, version) > 0) {
+        // this range and the ones after it start after the version
+        return;
+      }
+      if (range.contains(version)) {
+        exclusions.add(range.vulnerabilityId);
+      }
+      collectRanges(maxUpperBounds, middle + 1, high, version, exclusions);
+    }
+
+    private synchronized VersionRange[] getMaxUpperBounds() {
+      if (maxUpperBounds == null) {
+        VersionRange[] result = new VersionRange[ranges.size()];
+        computeMaxUpperBounds(result, 0, ranges.size());
+        maxUpperBounds = result;
+      }
+      return maxUpperBounds;
+    }
+
+    private VersionRange computeMaxUpperBounds(VersionRange[] result, int low, int high) {
+      if (low >= high) {
+        return null;
+      }
+      int middle = (low + high) >>> 1;
+      VersionRange left = computeMaxUpperBounds(result, low, middle);
+      VersionRange right = computeMaxUpperBounds(result, middle + 1, high);
+      result[middle] = higherUpperBound(ranges.get(middle), higherUpperBound(left, right));
+      return result[middle];
+    }
+
+    private static VersionRange higherUpperBound(VersionRange range1, VersionRange range2) {
+      if (range1 == null || range2 == null) {
+        return range1 != null ? range1 : range2;
+      }
+      if (range1.upperBound == null || range2.upperBound == null) {
+        return range1.upperBound == null ? range1 : range2;
+      }
+      return compareVersions(range1.upperBound, range2.upperBound) >= 0 ? range1 : range2;
+    }
+  }
+
+  private static class VersionRange
+  {
+    private final String lowerBound;
+
+    private final boolean lowerInclusive;
+
+    private final String upperBound;
+
+    private final boolean upperInclusive;
+
+    private final String vulnerabilityId;
+
+    private VersionRange(
+        String lowerBound,
+        boolean lowerInclusive,
+        String upperBound,
+        boolean upperInclusive,
+        String vulnerabilityId)
+    {
+      this.lowerBound = lowerBound;
+      this.lowerInclusive = lowerInclusive;
+      this.upperBound = upperBound;
+      this.upperInclusive = upperInclusive;
+      this.vulnerabilityId = vulnerabilityId;
+    }
+
+    boolean contains(String version) {
+      if (lowerBound != null) {
+        int result = compareVersions(version, lowerBound);
+        if (result < 0 || (result == 0 && !lowerInclusive)) {
+          return false;
+        }
+      }
+      if (upperBound != null) {
+        int result = compareVersions(version, upperBound);
+        return result < 0 || (result == 0 && upperInclusive);
+      }
+      return true;
+    }
+
+    /**
+     * Parses one or more ranges separated by commas, e.g. {@code [1.0,2.0)}, {@code [1.5]} or {@code (,1.0],[1.2,)}.
+     */
+    static List<VersionRange> parse(String ranges, String vulnerabilityId) {
+      List<VersionRange> result = new ArrayList<>();
+      int index = 0;
+      while (index < ranges.length()) {
+        char open = ranges.charAt(index);
+        int closeIndex = StringUtils.indexOfAny(ranges.substring(index), ")]");
+        if ((open != '[' && open != '(') || closeIndex < 0) {
+          throw new IllegalArgumentException("Invalid version range '" + ranges + "'");
+        }
+        closeIndex += index;
+
+        String[] bounds = ranges.substring(index + 1, closeIndex).split(",", -1);
+        boolean lowerInclusive = open == '[';
+        boolean upperInclusive = ranges.charAt(closeIndex) == ']';
+        if (bounds.length == 1) {
+          if (!lowerInclusive || !upperInclusive || bounds[0].trim().isEmpty()) {
+            throw new IllegalArgumentException("Invalid version range '" + ranges + "'");
+          }
+          result.add(new VersionRange(bounds[0].trim(), true, bounds[0].trim(), true, vulnerabilityId));
+        }
+        else if (bounds.length == 2) {
+          result.add(new VersionRange(StringUtils.trimToNull(bounds[0]), lowerInclusive,
+              StringUtils.trimToNull(bounds[1]), upperInclusive, vulnerabilityId));
+        }
+        else {
+          throw new IllegalArgumentException("Invalid version range '" + ranges + "'");
+        }
+
+        index = closeIndex + 1;
+        if (index < ranges.length()) {
+          if (ranges.charAt(index) != ',') {
+            throw new IllegalArgumentException("Invalid version range '" + ranges + "'");
+          }
+          index++;
+        }
+      }
+      return result;
+    }
+  }
+}
@@ -15,14 +15,22 @@
  */
 package org.sonatype.gradle.plugins.scan;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 import org.sonatype.gradle.plugins.scan.nexus.iq.index.NexusIqPluginIndexExtension;
+import org.sonatype.gradle.plugins.scan.nexus.iq.index.NexusIqIndexModuleTask;
 import org.sonatype.gradle.plugins.scan.nexus.iq.index.NexusIqIndexTask;
 import org.sonatype.gradle.plugins.scan.nexus.iq.scan.NexusIqPluginScanExtension;
 import org.sonatype.gradle.plugins.scan.nexus.iq.scan.NexusIqScanTask;
 import org.sonatype.gradle.plugins.scan.ossindex.OssIndexAuditTask;
+import org.sonatype.gradle.plugins.scan.ossindex.OssIndexBuildService;
 import org.sonatype.gradle.plugins.scan.ossindex.OssIndexPluginExtension;
+import org.sonatype.gradle.plugins.scan.ossindex.OssIndexResolveDependenciesTask;
 
 import org.gradle.api.Project;
+import org.gradle.api.Task;
 import org.gradle.testfixtures.ProjectBuilder;
 import org.junit.Before;
 import org.junit.Test;
@@ -48,8 +56,72 @@ public class ScanPluginTest
 
     assertThat(project.getTasks().getByName("nexusIQIndex")).isInstanceOf(NexusIqIndexTask.class);
     assertThat(project.getExtensions().getByName("nexusIQIndex")).isInstanceOf(NexusIqPluginIndexExtension.class);
+    assertThat(project.getTasks().getByName(NexusIqIndexModuleTask.getTaskName(project)))
+        .isInstanceOf(NexusIqIndexModuleTask.class);
 
     assertThat(project.getTasks().getByName("ossIndexAudit")).isInstanceOf(OssIndexAuditTask.class);
     assertThat(project.getExtensions().getByName("ossIndexAudit")).isInstanceOf(OssIndexPluginExtension.class);
+
+    assertThat(project.getTasks().getByName(OssIndexResolveDependenciesTask.getTaskName(project)))
+        .isInstanceOf(OssIndexResolveDependenciesTask.class);
+  }
+
+  @Test
+  public void testApply_multiModuleRegistersResolveDependenciesTaskInEveryProject() {
+    Project parentProject = ProjectBuilder.builder().withName("parent").build();
+    Project childProject = ProjectBuilder.builder().withName("child").withParent(parentProject).build();
+    plugin.apply(parentProject);
+
+    String taskName = OssIndexResolveDependenciesTask.getTaskName(parentProject);
+    assertThat(parentProject.getTasks().getByName(taskName)).isInstanceOf(OssIndexResolveDependenciesTask.class);
+    assertThat(childProject.getTasks().getByName(taskName)).isInstanceOf(OssIndexResolveDependenciesTask.class);
+  }
+
+  @Test
+  public void testApply_ossIndexAuditDependsOnResolveDependenciesTasksOnlyWhenParallelResolution() {
+    Project parentProject = ProjectBuilder.builder().withName("parent").build();
+    Project childProject = ProjectBuilder.builder().withName("child").withParent(parentProject).build();
+    plugin.apply(parentProject);
+
+    String taskName = OssIndexResolveDependenciesTask.getTaskName(parentProject);
+    Task auditTask = parentProject.getTasks().getByName("ossIndexAudit");
+    assertThat(auditTask.getTaskDependencies().getDependencies(auditTask)).isEmpty();
+
+    parentProject.getExtensions().getByType(OssIndexPluginExtension.class).setParallelResolution(true);
+    Set<Task> dependencies = new HashSet<>(auditTask.getTaskDependencies().getDependencies(auditTask));
+    assertThat(dependencies).containsExactlyInAnyOrder(
+        parentProject.getTasks().getByName(taskName), childProject.getTasks().getByName(taskName));
+  }
+
+  @Test
+  public void testApply_nexusIqIndexDependsOnIndexModuleTasksOfModulesNotExcluded() {
+    Project parentProject = ProjectBuilder.builder().withName("parent").build();
+    Project childProject1 = ProjectBuilder.builder().withName("child-1").withParent(parentProject).build();
+    Project childProject2 = ProjectBuilder.builder().withName("child-2").withParent(parentProject).build();
+    plugin.apply(parentProject);
+
+    String taskName = NexusIqIndexModuleTask.getTaskName(parentProject);
+    assertThat(childProject2.getTasks().getByName(taskName)).isInstanceOf(NexusIqIndexModuleTask.class);
+
+    parentProject.getExtensions().getByType(NexusIqPluginIndexExtension.class)
+        .setModulesExcluded(Collections.singleton(childProject2.getName()));
+    Task indexTask = parentProject.getTasks().getByName("nexusIQIndex");
+    Set<Task> dependencies = new HashSet<>(indexTask.getTaskDependencies().getDependencies(indexTask));
+    assertThat(dependencies).containsExactlyInAnyOrder(
+        parentProject.getTasks().getByName(taskName), childProject1.getTasks().getByName(taskName));
+  }
+
+  @Test
+  public void testApply_ossIndexAuditTasksShareBuildService() {
+    Project parentProject = ProjectBuilder.builder().withName("parent").build();
+    Project childProject = ProjectBuilder.builder().withName("child").withParent(parentProject).build();
+    plugin.apply(parentProject);
+    new ScanPlugin().apply(childProject);
+
+    parentProject.getTasks().getByName("ossIndexAudit");
+    childProject.getTasks().getByName("ossIndexAudit");
+
+    assertThat(parentProject.getGradle().getSharedServices().getRegistrations().getNames())
+        .containsOnlyOnce(OssIndexBuildService.NAME);
   }
 }
@@ -18,8 +18,10 @@ package org.sonatype.gradle.plugins.scan.common;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import com.sonatype.insight.scan.module.model.Artifact;
 import com.sonatype.insight.scan.module.model.Dependency;
@@ -39,11 +41,14 @@ import org.junit.Test;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.emptySet;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.gradle.api.plugins.JavaPlugin.COMPILE_ONLY_CONFIGURATION_NAME;
 import static org.gradle.api.plugins.JavaPlugin.IMPLEMENTATION_CONFIGURATION_NAME;
 import static org.gradle.api.plugins.JavaPlugin.RUNTIME_ONLY_CONFIGURATION_NAME;
 import static org.gradle.api.plugins.JavaPlugin.TEST_IMPLEMENTATION_CONFIGURATION_NAME;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class DependenciesFinderTest
@@ -184,6 +189,63 @@ public class DependenciesFinderTest
     assertThat(result).isEmpty();
   }
 
+  @Test
+  public void testFindResolvedDependencies_fromRootComponents() {
+    Project project = buildProject(IMPLEMENTATION_CONFIGURATION_NAME, false);
+    project.getDependencies().add(IMPLEMENTATION_CONFIGURATION_NAME, "commons-beanutils:commons-beanutils:1.9.4");
+
+    List<ConfigurationRootComponent> rootComponents = finder.findRootComponents(project, false, emptyMap(), false);
+    assertThat(rootComponents).extracting(ConfigurationRootComponent::getConfigurationName)
+        .containsExactlyInAnyOrder("compileClasspath", "runtimeClasspath");
+
+    Set<ResolvedDependency> result = finder.findResolvedDependencies(rootComponents);
+    assertThat(result).extracting(ResolvedDependency::getModuleName)
+        .containsExactly("commons-collections", "commons-beanutils");
+
+    ResolvedDependency beanUtils = result.stream()
+        .filter(dependency -> dependency.getModuleName().equals("commons-beanutils"))
+        .findFirst()
+        .get();
+    assertThat(beanUtils.getChildren()).extracting(ResolvedDependency::getModuleName)
+        .contains("commons-logging", "commons-collections");
+    assertThat(beanUtils.getChildren()).allSatisfy(child -> assertThat(child.getParents()).contains(beanUtils));
+  }
+
+  @Test
+  public void testFindResolvedDependencies_fromRootComponentsReportResolvedConfiguration() {
+    Project project = buildProject(IMPLEMENTATION_CONFIGURATION_NAME, false);
+
+    Set<ResolvedDependency> result =
+        finder.findResolvedDependencies(finder.findRootComponents(project, false, emptyMap(), false));
+
+    ResolvedDependency dependency = result.iterator().next();
+    assertThat(dependency.getConfiguration()).isEqualTo("runtimeClasspath");
+    assertThatThrownBy(dependency::getModuleArtifacts)
+        .isInstanceOf(UnsupportedOperationException.class)
+        .hasMessageContaining("commons-collections:commons-collections:3.1")
+        .hasMessageContaining("artifact view");
+  }
+
+  @Test
+  public void testFindResolvedDependencies_fromRootComponentsMatchesResolvedConfiguration() {
+    Project project = buildProject(IMPLEMENTATION_CONFIGURATION_NAME, false);
+
+    Set<ResolvedDependency> expected = finder.findResolvedDependencies(project, false, emptyMap(), false);
+    Set<ResolvedDependency> result =
+        finder.findResolvedDependencies(finder.findRootComponents(project, false, emptyMap(), false));
+
+    assertThat(result).extracting(ResolvedDependency::getName)
+        .containsExactlyElementsOf(expected.stream().map(ResolvedDependency::getName).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testFindResolvedDependencies_fromRootComponentsExcludeCompileOnlyDependencies() {
+    Project project = buildProject(COMPILE_ONLY_CONFIGURATION_NAME, false);
+    Set<ResolvedDependency> result =
+        finder.findResolvedDependencies(finder.findRootComponents(project, false, emptyMap(), true));
+    assertThat(result).isEmpty();
+  }
+
   @Test
   public void testFindResolvedArtifacts_includeCompileDependencies() {
     Project project = buildProject(IMPLEMENTATION_CONFIGURATION_NAME, false);
@@ -234,6 +296,29 @@ public class DependenciesFinderTest
     assertThat(result).isEmpty();
   }
 
+  @Test
+  public void testResolveDependencies_artifactsAndDependenciesFromSameResolution() {
+    Project project = buildProject(IMPLEMENTATION_CONFIGURATION_NAME, false);
+    ResolvedDependenciesSnapshot snapshot = finder.resolveDependencies(project, false, emptySet());
+
+    assertThat(snapshot.getFirstLevelDependencies()).hasSize(1);
+    assertThat(snapshot.getArtifacts()).hasSize(1);
+
+    ResolvedDependency dependency = snapshot.getFirstLevelDependencies().iterator().next();
+    assertThat(dependency.getName()).isEqualTo(COMMONS_COLLECTIONS_DEPENDENCY);
+    assertThat(dependency.getAllModuleArtifacts()).containsAll(snapshot.getArtifacts());
+  }
+
+  @Test
+  public void testResolveDependencies_omitCompileOnlyDependencies() {
+    Project project = buildProject(COMPILE_ONLY_CONFIGURATION_NAME, false);
+    ResolvedDependenciesSnapshot snapshot =
+        finder.resolveDependencies(project, false, Sets.newHashSet(COMMONS_COLLECTIONS_DEPENDENCY));
+
+    assertThat(snapshot.getFirstLevelDependencies()).isEmpty();
+    assertThat(snapshot.getArtifacts()).isEmpty();
+  }
+
   @Test
   public void testBuildModule_withBasicInfo() {
     Project project = buildProject(IMPLEMENTATION_CONFIGURATION_NAME, false);
@@ -337,6 +422,52 @@ public class DependenciesFinderTest
     assertThat(modules.get(0).getId()).isEqualTo(parentProject.getName());
   }
 
+  @Test
+  public void testFindModule_onlyTheProject() {
+    Project parentProject = ProjectBuilder.builder().withName("parent").build();
+    Project childProject = buildProject(IMPLEMENTATION_CONFIGURATION_NAME, false, parentProject);
+
+    Module parentModule = finder.findModule(parentProject, false, emptyMap(), false);
+    assertThat(parentModule.getId()).isEqualTo(parentProject.getName());
+    assertThat(parentModule.getDependencies()).isEmpty();
+
+    Module childModule = finder.findModule(childProject, false, emptyMap(), false);
+    assertThat(childModule.getId()).isEqualTo(parentProject.getName() + ":" + childProject.getName());
+    assertThat(childModule.getParentId()).isEqualTo(parentProject.getName());
+    assertThat(childModule.getDependencies()).hasSize(1);
+    assertThat(childModule.getConsumedArtifacts()).hasSize(1);
+  }
+
+  @Test
+  public void testFindModuleFingerprint_sameDependencies() {
+    Project project = buildProject(IMPLEMENTATION_CONFIGURATION_NAME, false);
+
+    String fingerprint = finder.findModuleFingerprint(project, false, emptyMap(), false);
+
+    assertThat(fingerprint).isNotEmpty();
+    assertThat(new DependenciesFinder().findModuleFingerprint(project, false, emptyMap(), false))
+        .isEqualTo(fingerprint);
+  }
+
+  @Test
+  public void testFindModuleFingerprint_differentProjects() {
+    Project parentProject = ProjectBuilder.builder().withName("parent").build();
+    Project childProject = buildProject(IMPLEMENTATION_CONFIGURATION_NAME, false, parentProject);
+
+    assertThat(finder.findModuleFingerprint(childProject, false, emptyMap(), false))
+        .isNotEqualTo(finder.findModuleFingerprint(parentProject, false, emptyMap(), false));
+  }
+
+  @Test
+  public void testFindModuleFingerprint_excludeCompileOnlyDependencies() {
+    Project project = buildProject(COMPILE_ONLY_CONFIGURATION_NAME, false);
+
+    String fingerprint = finder.findModuleFingerprint(project, false, emptyMap(), false);
+    String fingerprintWithoutCompileOnly = finder.findModuleFingerprint(project, false, emptyMap(), true);
+
+    assertThat(fingerprintWithoutCompileOnly).isNotEqualTo(fingerprint);
+  }
+
   @Test
   public void testProcessDependency() {
     testProcessDependency(false);
@@ -347,6 +478,61 @@ public class DependenciesFinderTest
     testProcessDependency(true);
   }
 
+  @Test
+  public void testProcessDependency_longCircularDependencyOmitted() {
+    ResolvedDependency firstDependency = mock(ResolvedDependency.class);
+    when(firstDependency.getName()).thenReturn("g:a:v");
+    ResolvedDependency secondDependency = mock(ResolvedDependency.class);
+    when(secondDependency.getName()).thenReturn("g2:a2:v2");
+    ResolvedDependency thirdDependency = mock(ResolvedDependency.class);
+    when(thirdDependency.getName()).thenReturn("g3:a3:v3");
+
+    when(firstDependency.getChildren()).thenReturn(Set.of(secondDependency));
+    when(secondDependency.getChildren()).thenReturn(Set.of(thirdDependency));
+    when(thirdDependency.getChildren()).thenReturn(Set.of(firstDependency));
+
+    Dependency dependency = finder.processDependency(firstDependency, true, new HashSet<>());
+
+    Dependency second = dependency.getDependencies().get(0);
+    assertThat(second.getId()).isEqualTo("g2:a2:v2");
+    Dependency third = second.getDependencies().get(0);
+    assertThat(third.getId()).isEqualTo("g3:a3:v3");
+    assertThat(third.getDependencies()).isEmpty();
+  }
+
+  @Test
+  public void testProcessDependency_sharedDependencyRepeatedWithoutChildren() {
+    ResolvedDependency rootDependency = mock(ResolvedDependency.class);
+    when(rootDependency.getName()).thenReturn("g:a:v");
+    ResolvedDependency leftDependency = mock(ResolvedDependency.class);
+    when(leftDependency.getName()).thenReturn("g2:a2:v2");
+    ResolvedDependency rightDependency = mock(ResolvedDependency.class);
+    when(rightDependency.getName()).thenReturn("g3:a3:v3");
+    ResolvedDependency sharedDependency = mock(ResolvedDependency.class);
+    when(sharedDependency.getName()).thenReturn("g4:a4:v4");
+    ResolvedDependency sharedChildDependency = mock(ResolvedDependency.class);
+    when(sharedChildDependency.getName()).thenReturn("g5:a5:v5");
+
+    when(rootDependency.getChildren()).thenReturn(new LinkedHashSet<>(List.of(leftDependency, rightDependency)));
+    when(leftDependency.getChildren()).thenReturn(Set.of(sharedDependency));
+    when(rightDependency.getChildren()).thenReturn(Set.of(sharedDependency));
+    when(sharedDependency.getChildren()).thenReturn(Set.of(sharedChildDependency));
+
+    Dependency dependency = finder.processDependency(rootDependency, true, new HashSet<>());
+
+    Dependency left = dependency.getDependencies().get(0);
+    assertThat(left.getDependencies()).hasSize(1);
+    assertThat(left.getDependencies().get(0).getId()).isEqualTo("g4:a4:v4");
+    assertThat(left.getDependencies().get(0).getDependencies()).hasSize(1);
+
+    Dependency right = dependency.getDependencies().get(1);
+    assertThat(right.getDependencies()).hasSize(1);
+    assertThat(right.getDependencies().get(0).getId()).isEqualTo("g4:a4:v4");
+    assertThat(right.getDependencies().get(0).getDependencies()).isEmpty();
+
+    verify(sharedDependency, never()).getParents();
+  }
+
   private void testProcessDependency(boolean setupCircularDependencies) {
     ResolvedDependency parentDependency = mock(ResolvedDependency.class);
     when(parentDependency.getName()).thenReturn("g:a:v");
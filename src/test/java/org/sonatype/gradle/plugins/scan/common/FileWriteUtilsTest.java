@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.common;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class FileWriteUtilsTest
+{
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testWriteAtomically() throws Exception {
+    Path file = temporaryFolder.getRoot().toPath().resolve("reports/report.json");
+
+    FileWriteUtils.writeAtomically(file, outputStream -> outputStream.write("first".getBytes(StandardCharsets.UTF_8)));
+    FileWriteUtils.writeAtomically(file, outputStream -> outputStream.write("second".getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(file).hasContent("second");
+    assertThat(file.getParent().toFile().list()).containsExactly("report.json");
+  }
+
+  @Test
+  public void testWriteAtomically_permissionsFollowUmask() throws Exception {
+    assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+    Path file = temporaryFolder.getRoot().toPath().resolve("report.json");
+    Path plainFile = Files.createFile(temporaryFolder.getRoot().toPath().resolve("plain.json"));
+
+    FileWriteUtils.writeAtomically(file, outputStream -> outputStream.write('x'));
+
+    assertThat(Files.getPosixFilePermissions(file)).isEqualTo(Files.getPosixFilePermissions(plainFile));
+  }
+
+  @Test
+  public void testHasSameContent() throws Exception {
+    byte[] content = new byte[100_000];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+    Path file = Files.write(temporaryFolder.getRoot().toPath().resolve("file"), content);
+    Path sameFile = Files.write(temporaryFolder.getRoot().toPath().resolve("same"), content);
+    content[content.length - 1]++;
+    Path otherFile = Files.write(temporaryFolder.getRoot().toPath().resolve("other"), content);
+    Path shorterFile = Files.write(temporaryFolder.getRoot().toPath().resolve("shorter"), new byte[10]);
+
+    assertThat(FileWriteUtils.hasSameContent(file, sameFile)).isTrue();
+    assertThat(FileWriteUtils.hasSameContent(file, otherFile)).isFalse();
+    assertThat(FileWriteUtils.hasSameContent(file, shorterFile)).isFalse();
+  }
+}
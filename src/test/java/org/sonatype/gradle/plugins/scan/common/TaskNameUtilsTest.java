@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.common;
+
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TaskNameUtilsTest
+{
+  @Test
+  public void testGetTaskName_rootProject() {
+    Project rootProject = ProjectBuilder.builder().build();
+
+    assertThat(TaskNameUtils.getTaskName("prefix", rootProject)).isEqualTo("prefix");
+  }
+
+  @Test
+  public void testGetTaskName_nestedAndCamelCaseProjectsDiffer() {
+    Project rootProject = ProjectBuilder.builder().build();
+    Project aProject = ProjectBuilder.builder().withName("a").withParent(rootProject).build();
+    Project abProject = ProjectBuilder.builder().withName("b").withParent(aProject).build();
+    Project aBProject = ProjectBuilder.builder().withName("aB").withParent(rootProject).build();
+
+    assertThat(TaskNameUtils.getTaskName("prefix", abProject)).isEqualTo("prefix_-a_-b");
+    assertThat(TaskNameUtils.getTaskName("prefix", aBProject)).isEqualTo("prefix_-aB");
+  }
+
+  @Test
+  public void testGetTaskName_underscoresDontClashWithSeparators() {
+    Project rootProject = ProjectBuilder.builder().build();
+    Project underscoreEndProject = ProjectBuilder.builder().withName("a_").withParent(rootProject).build();
+    Project childProject = ProjectBuilder.builder().withName("b").withParent(underscoreEndProject).build();
+    Project aProject = ProjectBuilder.builder().withName("a").withParent(rootProject).build();
+    Project underscoreStartProject = ProjectBuilder.builder().withName("_b").withParent(aProject).build();
+
+    assertThat(TaskNameUtils.getTaskName("prefix", childProject)).isEqualTo("prefix_-a___-b");
+    assertThat(TaskNameUtils.getTaskName("prefix", underscoreStartProject)).isEqualTo("prefix_-a_-__b");
+  }
+}
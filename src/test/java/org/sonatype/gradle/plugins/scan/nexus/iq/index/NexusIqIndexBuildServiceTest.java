@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.nexus.iq.index;
+
+import java.io.IOException;
+
+import org.gradle.api.Project;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class NexusIqIndexBuildServiceTest
+{
+  private NexusIqIndexBuildService buildService;
+
+  @Before
+  public void setup() {
+    buildService = new NexusIqIndexBuildService()
+    {
+      @Override
+      public BuildServiceParameters.None getParameters() {
+        return null;
+      }
+    };
+  }
+
+  @Test
+  public void testAddFailure_sortedByProjectPath() {
+    buildService.addFailure(":b", new IOException("disk full"));
+    buildService.addFailure(":a", new IllegalStateException("broken"));
+
+    assertThat(buildService.getFailures()).containsExactly(entry(":a", "broken"), entry(":b", "disk full"));
+  }
+
+  @Test
+  public void testClose_clearsFailures() {
+    buildService.addFailure(":a", new IOException("disk full"));
+
+    buildService.close();
+
+    assertThat(buildService.getFailures()).isEmpty();
+  }
+
+  @Test
+  public void testConfigureMaxParallelWrites_firstConfiguredValueKept() {
+    Project project = ProjectBuilder.builder().build();
+    NexusIqIndexBuildService.registerIfAbsent(project.getGradle());
+    Property<Integer> maxParallelUsages = project.getGradle().getSharedServices().getRegistrations()
+        .getByName(NexusIqIndexBuildService.NAME).getMaxParallelUsages();
+
+    NexusIqIndexBuildService.configureMaxParallelWrites(project.getGradle(), ":a", 0);
+    assertThat(maxParallelUsages.isPresent()).isFalse();
+
+    NexusIqIndexBuildService.configureMaxParallelWrites(project.getGradle(), ":b", 2);
+    NexusIqIndexBuildService.configureMaxParallelWrites(project.getGradle(), ":c", 3);
+    assertThat(maxParallelUsages.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testRecordHeapUsage_keepsMaximumOfSamples() {
+    buildService.recordHeapUsage(30);
+    buildService.recordHeapUsage(50);
+    buildService.recordHeapUsage(20);
+
+    assertThat(buildService.getMaxHeapUsage()).isEqualTo(50);
+
+    buildService.close();
+
+    assertThat(buildService.getMaxHeapUsage()).isZero();
+  }
+
+  @Test
+  public void testSampleHeapUsage_totalHeapUsed() {
+    buildService.sampleHeapUsage();
+
+    assertThat(buildService.getMaxHeapUsage())
+        .isPositive()
+        .isLessThanOrEqualTo(Runtime.getRuntime().maxMemory());
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.nexus.iq.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+import com.sonatype.insight.scan.module.model.Module;
+import com.sonatype.insight.scan.module.model.io.ModuleIoManager;
+
+import org.sonatype.gradle.plugins.scan.common.DependenciesFinder;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.api.provider.Provider;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonatype.gradle.plugins.scan.nexus.iq.index.NexusIqIndexTask.MODULE_XML_FILE;
+import static org.sonatype.gradle.plugins.scan.nexus.iq.scan.NexusIqPluginScanExtension.SONATYPE_CLM_FOLDER;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NexusIqIndexModuleTaskTest
+{
+  @Mock
+  private DependenciesFinder dependenciesFinderMock;
+
+  @Mock
+  private ModuleIoManager moduleIoManagerMock;
+
+  @Test
+  public void testSaveModule() throws IOException {
+    Module module = new Module().setId("test-module");
+
+    NexusIqIndexModuleTask task = buildIndexModuleTask(null);
+    File file = getModuleFile(task.getProject());
+
+    when(dependenciesFinderMock.findModule(any(Project.class), eq(false), anyMap(), eq(false))).thenReturn(module);
+    writeModuleId();
+
+    task.setDependenciesFinder(dependenciesFinderMock);
+    task.setModuleIoManager(moduleIoManagerMock);
+    task.saveModule();
+
+    verify(dependenciesFinderMock).findModule(task.getProject(), false, Collections.emptyMap(), false);
+    verify(moduleIoManagerMock).writeModule(any(File.class), eq(module));
+    assertThat(file).hasContent("test-module");
+    assertThat(file.getParentFile().list()).containsExactly(MODULE_XML_FILE);
+  }
+
+  @Test
+  public void testSaveModule_unchangedContentNotRewritten() throws IOException {
+    when(dependenciesFinderMock.findModule(any(Project.class), anyBoolean(), anyMap(), anyBoolean()))
+        .thenReturn(new Module().setId("test-module"));
+    writeModuleId();
+
+    NexusIqIndexModuleTask task = buildIndexModuleTask(null);
+    task.setDependenciesFinder(dependenciesFinderMock);
+    task.setModuleIoManager(moduleIoManagerMock);
+
+    task.saveModule();
+    assertThat(task.getModuleFileWritten()).isTrue();
+
+    Path file = getModuleFile(task.getProject()).toPath();
+    FileTime lastModified = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+    Files.setLastModifiedTime(file, lastModified);
+    task.saveModule();
+
+    assertThat(task.getModuleFileWritten()).isFalse();
+    assertThat(Files.getLastModifiedTime(file)).isEqualTo(lastModified);
+    assertThat(file.getParent().toFile().list()).containsExactly(MODULE_XML_FILE);
+  }
+
+  @Test
+  public void testSaveModule_permissionsFollowUmask() throws IOException {
+    assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+    when(dependenciesFinderMock.findModule(any(Project.class), anyBoolean(), anyMap(), anyBoolean()))
+        .thenReturn(new Module().setId("test-module"));
+    writeModuleId();
+
+    NexusIqIndexModuleTask task = buildIndexModuleTask(null);
+    task.setDependenciesFinder(dependenciesFinderMock);
+    task.setModuleIoManager(moduleIoManagerMock);
+    task.saveModule();
+
+    Path file = getModuleFile(task.getProject()).toPath();
+    Path plainFile = Files.createFile(file.resolveSibling("plain.xml"));
+    assertThat(Files.getPosixFilePermissions(file)).isEqualTo(Files.getPosixFilePermissions(plainFile));
+  }
+
+  @Test
+  public void testSaveModule_changedContentRewritten() throws IOException {
+    when(dependenciesFinderMock.findModule(any(Project.class), anyBoolean(), anyMap(), anyBoolean()))
+        .thenReturn(new Module().setId("test-module"), new Module().setId("other-module"));
+    writeModuleId();
+
+    NexusIqIndexModuleTask task = buildIndexModuleTask(null);
+    task.setDependenciesFinder(dependenciesFinderMock);
+    task.setModuleIoManager(moduleIoManagerMock);
+
+    task.saveModule();
+    task.saveModule();
+
+    assertThat(getModuleFile(task.getProject())).hasContent("other-module");
+  }
+
+  @Test
+  public void testSaveModule_excludeCompileOnly() {
+    when(dependenciesFinderMock.findModule(any(Project.class), anyBoolean(), anyMap(), eq(true)))
+        .thenReturn(new Module());
+
+    NexusIqIndexModuleTask task = buildIndexModuleTask(extension -> extension.setExcludeCompileOnly(true));
+    task.setDependenciesFinder(dependenciesFinderMock);
+    task.setModuleIoManager(moduleIoManagerMock);
+    task.saveModule();
+
+    verify(dependenciesFinderMock).findModule(any(Project.class), anyBoolean(), anyMap(), eq(true));
+  }
+
+  @Test
+  public void testSaveModule_writeError() throws IOException {
+    Module module = new Module().setId("test-module");
+    when(dependenciesFinderMock.findModule(any(Project.class), anyBoolean(), anyMap(), anyBoolean()))
+        .thenReturn(module);
+    doThrow(new IOException("disk full")).when(moduleIoManagerMock).writeModule(any(File.class), eq(module));
+
+    NexusIqIndexModuleTask task = buildIndexModuleTask(null);
+    task.setDependenciesFinder(dependenciesFinderMock);
+    task.setModuleIoManager(moduleIoManagerMock);
+
+    assertThatThrownBy(task::saveModule)
+        .isInstanceOf(GradleException.class)
+        .hasMessageContaining("disk full");
+  }
+
+  @Test
+  public void testSaveModule_writeErrorCollectedByBuildService() throws IOException {
+    Module module = new Module().setId("test-module");
+    when(dependenciesFinderMock.findModule(any(Project.class), anyBoolean(), anyMap(), anyBoolean()))
+        .thenReturn(module);
+    doThrow(new IOException("disk full")).when(moduleIoManagerMock).writeModule(any(File.class), eq(module));
+
+    NexusIqIndexModuleTask task = buildIndexModuleTask(null);
+    Provider<NexusIqIndexBuildService> buildService =
+        NexusIqIndexBuildService.registerIfAbsent(task.getProject().getGradle());
+    task.useBuildService(buildService);
+    task.setDependenciesFinder(dependenciesFinderMock);
+    task.setModuleIoManager(moduleIoManagerMock);
+
+    assertThatThrownBy(task::saveModule).isInstanceOf(GradleException.class);
+    assertThat(buildService.get().getFailures()).containsExactly(entry(task.getProject().getPath(), "disk full"));
+  }
+
+  @Test
+  public void testGetDependencyGraphFingerprint() {
+    when(dependenciesFinderMock.findModuleFingerprint(any(Project.class), eq(false), anyMap(), eq(false)))
+        .thenReturn("fingerprint");
+
+    NexusIqIndexModuleTask task = buildIndexModuleTask(null);
+    task.setDependenciesFinder(dependenciesFinderMock);
+
+    assertThat(task.getDependencyGraphFingerprint()).isEqualTo("fingerprint");
+  }
+
+  @Test
+  public void testGetModuleFile() {
+    NexusIqIndexModuleTask task = buildIndexModuleTask(null);
+
+    assertThat(task.getModuleFile()).isEqualTo(getModuleFile(task.getProject()));
+  }
+
+  @Test
+  public void testGetTaskName() {
+    Project parentProject = ProjectBuilder.builder().withName("parent").build();
+    Project childProject = ProjectBuilder.builder().withName("child").withParent(parentProject).build();
+
+    assertThat(NexusIqIndexModuleTask.getTaskName(parentProject)).isEqualTo("nexusIQIndexModule");
+    assertThat(NexusIqIndexModuleTask.getTaskName(childProject)).isEqualTo("nexusIQIndexModule_-child");
+  }
+
+  private void writeModuleId() throws IOException {
+    doAnswer(invocation -> {
+      File file = invocation.getArgument(0);
+      Module module = invocation.getArgument(1);
+      Files.write(file.toPath(), module.getId().getBytes(StandardCharsets.UTF_8));
+      return null;
+    }).when(moduleIoManagerMock).writeModule(any(File.class), any(Module.class));
+  }
+
+  private File getModuleFile(Project project) {
+    return Paths.get(project.getProjectDir().getPath(), "build", SONATYPE_CLM_FOLDER, MODULE_XML_FILE).toFile();
+  }
+
+  private NexusIqIndexModuleTask buildIndexModuleTask(Consumer<NexusIqPluginIndexExtension> extensionConsumer) {
+    Project project = ProjectBuilder.builder().build();
+    NexusIqPluginIndexExtension extension = new NexusIqPluginIndexExtension(project);
+    if (extensionConsumer != null) {
+      extensionConsumer.accept(extension);
+    }
+    return project.getTasks().create("nexusIQIndexModule", NexusIqIndexModuleTask.class, extension);
+  }
+}
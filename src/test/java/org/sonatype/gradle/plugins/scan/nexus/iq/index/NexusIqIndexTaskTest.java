@@ -15,126 +15,107 @@
  */
 package org.sonatype.gradle.plugins.scan.nexus.iq.index;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Paths;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Set;
+import java.util.List;
 import java.util.function.Consumer;
 
-import com.sonatype.insight.scan.module.model.Module;
-import com.sonatype.insight.scan.module.model.io.ModuleIoManager;
-
-import org.sonatype.gradle.plugins.scan.common.DependenciesFinder;
-
 import com.google.common.collect.Sets;
+import org.gradle.api.GradleException;
 import org.gradle.api.Project;
+import org.gradle.api.internal.tasks.TaskStateInternal;
 import org.gradle.testfixtures.ProjectBuilder;
 import org.junit.Test;
-import org.junit.runner.RunWith;
-import org.mockito.Mock;
-import org.mockito.junit.MockitoJUnitRunner;
-
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyBoolean;
-import static org.mockito.ArgumentMatchers.anyMap;
-import static org.mockito.ArgumentMatchers.anySet;
-import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.doNothing;
-import static org.mockito.Mockito.verify;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
-import static org.sonatype.gradle.plugins.scan.nexus.iq.index.NexusIqIndexTask.MODULE_XML_FILE;
-import static org.sonatype.gradle.plugins.scan.nexus.iq.scan.NexusIqPluginScanExtension.SONATYPE_CLM_FOLDER;
 
-@RunWith(MockitoJUnitRunner.class)
 public class NexusIqIndexTaskTest
 {
-  @Mock
-  private DependenciesFinder dependenciesFinderMock;
+  @Test
+  public void testGetModuleTasks_singleModule() {
+    Project project = ProjectBuilder.builder().build();
+    NexusIqIndexTask task = buildIndexTask(project, null);
 
-  @Mock
-  private ModuleIoManager moduleIoManagerMock;
+    assertThat(task.getModuleTasks()).containsExactly(getModuleTask(project, project));
+  }
 
   @Test
-  public void testSaveModule_singleModule() throws IOException {
-    Module module = new Module()
-        .setId("test-module")
-        .setPathname("test-module");
-    File file = Paths.get("test-module", "build", SONATYPE_CLM_FOLDER, MODULE_XML_FILE).toFile();
-
-    when(dependenciesFinderMock.findModules(any(Project.class), eq(false), anySet(), anyMap(), eq(false)))
-        .thenReturn(Collections.singletonList(module));
-    doNothing().when(moduleIoManagerMock).writeModule(file, module);
-
-    NexusIqIndexTask task = buildIndexTask(null);
-    task.setDependenciesFinder(dependenciesFinderMock);
-    task.setModuleIoManager(moduleIoManagerMock);
-    task.saveModule();
-
-    verify(dependenciesFinderMock).findModules(any(Project.class), eq(false), anySet(), anyMap(), eq(false));
-    verify(moduleIoManagerMock).writeModule(file, module);
+  public void testGetModuleTasks_multipleModules() {
+    Project parentProject = ProjectBuilder.builder().withName("parent").build();
+    Project childProject1 = ProjectBuilder.builder().withName("test-module-1").withParent(parentProject).build();
+    Project childProject2 = ProjectBuilder.builder().withName("test-module-2").withParent(parentProject).build();
+    NexusIqIndexTask task = buildIndexTask(parentProject, null);
+
+    assertThat(task.getModuleTasks()).containsExactly(
+        getModuleTask(parentProject, parentProject),
+        getModuleTask(parentProject, childProject1),
+        getModuleTask(parentProject, childProject2));
   }
 
   @Test
-  public void testSaveModule_multipleModules() throws IOException {
-    Module module1 = new Module()
-        .setId("test-module-1")
-        .setPathname("test-module-1");
-    Module module2 = new Module()
-        .setId("test-module-2")
-        .setPathname("test-module-2");
-    File file1 = Paths.get("test-module-1", "build", SONATYPE_CLM_FOLDER, MODULE_XML_FILE).toFile();
-    File file2 = Paths.get("test-module-2", "build", SONATYPE_CLM_FOLDER, MODULE_XML_FILE).toFile();
-
-    when(dependenciesFinderMock.findModules(any(Project.class), eq(false), anySet(), anyMap(), eq(false)))
-        .thenReturn(Arrays.asList(module1, module2));
-    doNothing().when(moduleIoManagerMock).writeModule(file1, module1);
-    doNothing().when(moduleIoManagerMock).writeModule(file2, module2);
-
-    NexusIqIndexTask task = buildIndexTask(null);
-    task.setDependenciesFinder(dependenciesFinderMock);
-    task.setModuleIoManager(moduleIoManagerMock);
-    task.saveModule();
-
-    verify(dependenciesFinderMock).findModules(any(Project.class), eq(false), anySet(), anyMap(), eq(false));
-    verify(moduleIoManagerMock).writeModule(file1, module1);
-    verify(moduleIoManagerMock).writeModule(file2, module2);
+  public void testGetModuleTasks_excludeModules() {
+    Project parentProject = ProjectBuilder.builder().withName("parent").build();
+    ProjectBuilder.builder().withName("test-module-1").withParent(parentProject).build();
+    ProjectBuilder.builder().withName("test-module-2").withParent(parentProject).build();
+    NexusIqIndexTask task = buildIndexTask(parentProject,
+        extension -> extension.setModulesExcluded(Sets.newHashSet("test-module-1", "test-module-2")));
+
+    assertThat(task.getModuleTasks()).containsExactly(getModuleTask(parentProject, parentProject));
   }
 
   @Test
-  public void testSaveModule_excludeModules() throws IOException {
-    Set<String> modulesExcluded = Sets.newHashSet("test-module-1", "test-module-2");
-
-    when(dependenciesFinderMock.findModules(any(Project.class), eq(false), eq(modulesExcluded), anyMap(), eq(false)))
-        .thenReturn(Collections.emptyList());
-
-    NexusIqIndexTask task = buildIndexTask(extension -> extension.setModulesExcluded(modulesExcluded));
-    task.setDependenciesFinder(dependenciesFinderMock);
-    task.saveModule();
-
-    verify(dependenciesFinderMock).findModules(any(Project.class), eq(false), eq(modulesExcluded), anyMap(), eq(false));
+  public void testSummarizeModuleTasks() {
+    List<NexusIqIndexModuleTask> moduleTasks = Arrays.asList(
+        mockModuleTask(null, null, false, true),
+        mockModuleTask(null, null, false, true),
+        mockModuleTask(null, null, false, false),
+        mockModuleTask(null, "UP-TO-DATE", true, null),
+        mockModuleTask(null, "FROM-CACHE", true, null),
+        mockModuleTask(new GradleException("disk full"), null, false, null));
+
+    assertThat(NexusIqIndexTask.summarizeModuleTasks(moduleTasks))
+        .isEqualTo("2 written, 1 unchanged, 1 up-to-date, 1 from cache, 1 failed");
   }
 
   @Test
-  public void testSaveModule_excludeCompileOnly() throws IOException {
-    when(dependenciesFinderMock.findModules(any(Project.class), anyBoolean(), anySet(), anyMap(), eq(true)))
-        .thenReturn(Collections.emptyList());
+  public void testSummarizeModuleTasks_onlyOutcomesFound() {
+    List<NexusIqIndexModuleTask> moduleTasks = Arrays.asList(
+        mockModuleTask(null, "UP-TO-DATE", true, null),
+        mockModuleTask(null, "SKIPPED", false, null));
+
+    assertThat(NexusIqIndexTask.summarizeModuleTasks(moduleTasks)).isEqualTo("1 up-to-date, 1 skipped");
+  }
 
-    NexusIqIndexTask task = buildIndexTask(extension -> extension.setExcludeCompileOnly(true));
-    task.setDependenciesFinder(dependenciesFinderMock);
-    task.saveModule();
+  private NexusIqIndexModuleTask mockModuleTask(
+      Throwable failure,
+      String skipMessage,
+      boolean upToDate,
+      Boolean moduleFileWritten)
+  {
+    TaskStateInternal state = mock(TaskStateInternal.class);
+    when(state.getFailure()).thenReturn(failure);
+    when(state.getSkipMessage()).thenReturn(skipMessage);
+    when(state.getUpToDate()).thenReturn(upToDate);
+    NexusIqIndexModuleTask moduleTask = mock(NexusIqIndexModuleTask.class);
+    when(moduleTask.getState()).thenReturn(state);
+    when(moduleTask.getModuleFileWritten()).thenReturn(moduleFileWritten);
+    return moduleTask;
+  }
 
-    verify(dependenciesFinderMock).findModules(any(Project.class), anyBoolean(), anySet(), anyMap(), eq(true));
+  private NexusIqIndexModuleTask getModuleTask(Project indexingProject, Project project) {
+    return (NexusIqIndexModuleTask) project.getTasks().getByName(NexusIqIndexModuleTask.getTaskName(indexingProject));
   }
 
-  private NexusIqIndexTask buildIndexTask(Consumer<NexusIqPluginIndexExtension> extenstionConsumer) {
-    Project project = ProjectBuilder.builder().build();
+  private NexusIqIndexTask buildIndexTask(Project project, Consumer<NexusIqPluginIndexExtension> extenstionConsumer) {
     NexusIqPluginIndexExtension extension = new NexusIqPluginIndexExtension(project);
     if (extenstionConsumer != null) {
       extenstionConsumer.accept(extension);
     }
     project.getExtensions().add("nexusIQIndex", extension);
+    String taskName = NexusIqIndexModuleTask.getTaskName(project);
+    project.allprojects(indexedProject ->
+        indexedProject.getTasks().create(taskName, NexusIqIndexModuleTask.class, extension));
     return project.getTasks().create("nexusIQIndex", NexusIqIndexTask.class);
   }
 }
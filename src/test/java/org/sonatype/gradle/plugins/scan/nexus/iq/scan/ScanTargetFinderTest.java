@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.nexus.iq.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.tools.ant.DirectoryScanner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ScanTargetFinderTest
+{
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Before
+  public void setup() throws IOException {
+    for (String path : Arrays.asList("1.txt", "2.lock", "a/3.lock", "a/b/4.lock", "a/b/c/d/e/f/5.lock",
+        "a/b/c/d/e/f/g/6.jar", "lib/x.jar", "lib/sub/y.jar", "lib/sub/y.jar~", ".git/objects/7.lock",
+        "a/.svn/8.lock", "a/.DS_Store", "a/b/.gitignore", "other/z.war", "other/z.war.bak")) {
+      File file = new File(temporaryFolder.getRoot(), path);
+      file.getParentFile().mkdirs();
+      assertThat(file.createNewFile()).isTrue();
+    }
+  }
+
+  @Test
+  public void testFind_sameAsDirectoryScanner() {
+    List<List<String>> includesList = Arrays.asList(
+        Arrays.asList("1.txt", "**/*.lock", "file-not-exists.log"),
+        Collections.singletonList("**"),
+        Collections.singletonList("a/**"),
+        Collections.singletonList("a/"),
+        Collections.singletonList("**/b/**/*.lock"),
+        Arrays.asList("lib/*", "lib/**/*.jar*"),
+        Collections.singletonList("?ib/s?b/*.jar"),
+        Collections.singletonList("**/*.war*"),
+        Collections.singletonList("**/.git/**"),
+        Collections.singletonList("a/b/c/**/g"),
+        Collections.singletonList("a\\b\\*.lock"));
+
+    for (List<String> includes : includesList) {
+      assertThat(new ScanTargetFinder(temporaryFolder.getRoot().toPath(), includes).find())
+          .as("includes %s", includes)
+          .containsExactlyElementsOf(scanWithDirectoryScanner(includes));
+    }
+  }
+
+  @Test
+  public void testFind_directoriesThenFilesSorted() {
+    List<File> targets = new ScanTargetFinder(temporaryFolder.getRoot().toPath(), Collections.singletonList("lib/**"))
+        .find();
+
+    assertThat(targets).containsExactly(
+        new File(temporaryFolder.getRoot(), "lib"),
+        new File(temporaryFolder.getRoot(), "lib/sub"),
+        new File(temporaryFolder.getRoot(), "lib/sub/y.jar"),
+        new File(temporaryFolder.getRoot(), "lib/x.jar"));
+  }
+
+  @Test
+  public void testFind_missingBaseDirectory() {
+    ScanTargetFinder finder =
+        new ScanTargetFinder(new File(temporaryFolder.getRoot(), "missing").toPath(), Collections.singletonList("**"));
+
+    assertThatThrownBy(finder::find).isInstanceOf(IllegalStateException.class);
+  }
+
+  private List<File> scanWithDirectoryScanner(List<String> includes) {
+    DirectoryScanner directoryScanner = new DirectoryScanner();
+    directoryScanner.setBasedir(temporaryFolder.getRoot());
+    directoryScanner.setIncludes(includes.toArray(new String[0]));
+    directoryScanner.addDefaultExcludes();
+    directoryScanner.scan();
+    return Stream.concat(
+        Arrays.stream(directoryScanner.getIncludedDirectories()).sorted(),
+        Arrays.stream(directoryScanner.getIncludedFiles()).sorted())
+        .map(path -> new File(temporaryFolder.getRoot(), path))
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.ossindex;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sonatype.goodies.packageurl.PackageUrl;
+import org.sonatype.goodies.packageurl.PackageUrlBuilder;
+import org.sonatype.ossindex.service.api.componentreport.ComponentReport;
+import org.sonatype.ossindex.service.client.OssindexClient;
+import org.sonatype.ossindex.service.client.transport.Transport.TransportException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BatchingOssIndexClientTest
+{
+  @Rule
+  public TestName testName = new TestName();
+
+  @Mock
+  private OssindexClient ossIndexClientMock;
+
+  @Test
+  public void testRequestComponentReports_singleBatch() throws Exception {
+    List<PackageUrl> packageUrls = buildPackageUrls(3);
+    when(ossIndexClientMock.requestComponentReports(anyList())).thenAnswer(invocation -> buildResponse(
+        invocation.getArgument(0)));
+
+    Map<PackageUrl, ComponentReport> response =
+        new BatchingOssIndexClient(ossIndexClientMock, getHost(), 10, 4, 0, 0).requestComponentReports(packageUrls);
+
+    assertThat(response).containsOnlyKeys(packageUrls);
+    verify(ossIndexClientMock).requestComponentReports(packageUrls);
+  }
+
+  @Test
+  public void testRequestComponentReports_concurrentBatches() throws Exception {
+    List<PackageUrl> packageUrls = buildPackageUrls(10);
+    CountDownLatch concurrentRequests = new CountDownLatch(2);
+    when(ossIndexClientMock.requestComponentReports(anyList())).thenAnswer(invocation -> {
+      concurrentRequests.countDown();
+      // only returns once two batches are in flight at the same time
+      assertThat(concurrentRequests.await(10, TimeUnit.SECONDS)).isTrue();
+      return buildResponse(invocation.getArgument(0));
+    });
+
+    Map<PackageUrl, ComponentReport> response =
+        new BatchingOssIndexClient(ossIndexClientMock, getHost(), 3, 2, 0, 0).requestComponentReports(packageUrls);
+
+    assertThat(response).containsOnlyKeys(packageUrls);
+    verify(ossIndexClientMock).requestComponentReports(packageUrls.subList(0, 3));
+    verify(ossIndexClientMock).requestComponentReports(packageUrls.subList(3, 6));
+    verify(ossIndexClientMock).requestComponentReports(packageUrls.subList(6, 9));
+    verify(ossIndexClientMock).requestComponentReports(packageUrls.subList(9, 10));
+  }
+
+  @Test
+  public void testRequestComponentReports_maxConcurrentRequests() throws Exception {
+    List<PackageUrl> packageUrls = buildPackageUrls(20);
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    when(ossIndexClientMock.requestComponentReports(anyList())).thenAnswer(invocation -> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      Thread.sleep(20);
+      inFlight.decrementAndGet();
+      return buildResponse(invocation.getArgument(0));
+    });
+
+    Map<PackageUrl, ComponentReport> response =
+        new BatchingOssIndexClient(ossIndexClientMock, getHost(), 2, 3, 0, 0).requestComponentReports(packageUrls);
+
+    assertThat(response).containsOnlyKeys(packageUrls);
+    assertThat(maxInFlight.get()).isBetween(1, 3);
+  }
+
+  @Test
+  public void testRequestComponentReports_rateLimitRetried() throws Exception {
+    List<PackageUrl> packageUrls = buildPackageUrls(2);
+    when(ossIndexClientMock.requestComponentReports(anyList()))
+        .thenThrow(new UnexpectedStatusException(429, "HTTP/1.1 429 Too Many Requests"))
+        .thenAnswer(invocation -> buildResponse(invocation.getArgument(0)));
+    List<Long> sleeps = new ArrayList<>();
+
+    Map<PackageUrl, ComponentReport> response = new BatchingOssIndexClient(ossIndexClientMock, getHost(), 10, 1, 3, 100)
+    {
+      @Override
+      void sleep(long millis) {
+        sleeps.add(millis);
+      }
+    }.requestComponentReports(packageUrls);
+
+    assertThat(response).containsOnlyKeys(packageUrls);
+    assertThat(sleeps).containsExactly(100L);
+    verify(ossIndexClientMock, times(2)).requestComponentReports(packageUrls);
+  }
+
+  @Test
+  public void testRequestComponentReports_rateLimitRetriesExhausted() throws Exception {
+    List<PackageUrl> packageUrls = buildPackageUrls(2);
+    when(ossIndexClientMock.requestComponentReports(anyList()))
+        .thenThrow(new UnexpectedStatusException(429, "HTTP/1.1 429 Too Many Requests"));
+    List<Long> sleeps = new ArrayList<>();
+
+    BatchingOssIndexClient client = new BatchingOssIndexClient(ossIndexClientMock, getHost(), 10, 1, 2, 100)
+    {
+      @Override
+      void sleep(long millis) {
+        sleeps.add(millis);
+      }
+    };
+
+    assertThatThrownBy(() -> client.requestComponentReports(packageUrls)).isInstanceOf(TransportException.class);
+    assertThat(sleeps).containsExactly(100L, 200L);
+    verify(ossIndexClientMock, times(3)).requestComponentReports(packageUrls);
+  }
+
+  @Test
+  public void testRequestComponentReports_otherStatusNotRetried() throws Exception {
+    List<PackageUrl> packageUrls = buildPackageUrls(2);
+    when(ossIndexClientMock.requestComponentReports(anyList()))
+        .thenThrow(new UnexpectedStatusException(503, "HTTP/1.1 503 Service Unavailable"));
+
+    BatchingOssIndexClient client = new BatchingOssIndexClient(ossIndexClientMock, getHost(), 10, 1, 3, 0);
+
+    assertThatThrownBy(() -> client.requestComponentReports(packageUrls)).isInstanceOf(TransportException.class);
+    verify(ossIndexClientMock, times(1)).requestComponentReports(packageUrls);
+  }
+
+  @Test
+  public void testRequestComponentReports_statusOnlyInMessageNotRetried() throws Exception {
+    List<PackageUrl> packageUrls = buildPackageUrls(2);
+    when(ossIndexClientMock.requestComponentReports(anyList()))
+        .thenThrow(new TransportException("Unexpected response; status: HTTP/1.1 429 Too Many Requests"));
+
+    BatchingOssIndexClient client = new BatchingOssIndexClient(ossIndexClientMock, getHost(), 10, 1, 3, 0);
+
+    assertThatThrownBy(() -> client.requestComponentReports(packageUrls)).isInstanceOf(TransportException.class);
+    verify(ossIndexClientMock, times(1)).requestComponentReports(packageUrls);
+  }
+
+  @Test
+  public void testRequestComponentReports_limitSharedByClientsOfSameHost() throws Exception {
+    List<PackageUrl> packageUrls = buildPackageUrls(1);
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    when(ossIndexClientMock.requestComponentReports(anyList())).thenAnswer(invocation -> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      Thread.sleep(20);
+      inFlight.decrementAndGet();
+      return buildResponse(invocation.getArgument(0));
+    });
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Map<PackageUrl, ComponentReport>>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        BatchingOssIndexClient client = new BatchingOssIndexClient(ossIndexClientMock, getHost(), 10, 1, 0, 0);
+        futures.add(executor.submit(() -> client.requestComponentReports(packageUrls)));
+      }
+      for (Future<Map<PackageUrl, ComponentReport>> future : futures) {
+        assertThat(future.get()).containsOnlyKeys(packageUrls);
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+
+    assertThat(maxInFlight.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testRequestComponentReports_otherErrorsNotRetried() throws Exception {
+    List<PackageUrl> packageUrls = buildPackageUrls(10);
+    when(ossIndexClientMock.requestComponentReports(anyList())).thenThrow(new IOException("offline"));
+
+    BatchingOssIndexClient client = new BatchingOssIndexClient(ossIndexClientMock, getHost(), 5, 2, 3, 0);
+
+    assertThatThrownBy(() -> client.requestComponentReports(packageUrls))
+        .isInstanceOf(IOException.class)
+        .hasMessage("offline");
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    new BatchingOssIndexClient(ossIndexClientMock, getHost(), 10, 1, 0, 0).close();
+
+    verify(ossIndexClientMock).close();
+  }
+
+  // the limit is shared by the clients of the same host, so each test uses its own
+  private String getHost() {
+    return testName.getMethodName() + ".test";
+  }
+
+  private static List<PackageUrl> buildPackageUrls(int count) {
+    List<PackageUrl> packageUrls = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      packageUrls.add(new PackageUrlBuilder().type("maven").namespace("g").name("a").version("1." + i).build());
+    }
+    return packageUrls;
+  }
+
+  private static Map<PackageUrl, ComponentReport> buildResponse(List<PackageUrl> packageUrls) {
+    Map<PackageUrl, ComponentReport> response = new HashMap<>();
+    for (PackageUrl packageUrl : packageUrls) {
+      ComponentReport report = new ComponentReport();
+      report.setCoordinates(packageUrl);
+      response.put(packageUrl, report);
+    }
+    return response;
+  }
+}
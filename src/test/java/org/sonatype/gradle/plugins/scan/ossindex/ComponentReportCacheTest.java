@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.ossindex;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import org.sonatype.goodies.packageurl.PackageUrl;
+import org.sonatype.goodies.packageurl.PackageUrlBuilder;
+import org.sonatype.gradle.plugins.scan.ossindex.ComponentReportCache.Configuration;
+import org.sonatype.ossindex.service.api.componentreport.ComponentReport;
+import org.sonatype.ossindex.service.api.componentreport.ComponentReportVulnerability;
+import org.sonatype.ossindex.service.client.cache.Cache;
+
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonatype.gradle.plugins.scan.ossindex.ComponentReportCache.CACHE_FILE_NAME;
+
+public class ComponentReportCacheTest
+{
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Configuration configuration;
+
+  @Before
+  public void setup() {
+    configuration = new Configuration();
+    configuration.setBaseDir(temporaryFolder.getRoot().toPath());
+  }
+
+  @Test
+  public void testGetIfPresent_missing() throws Exception {
+    try (Cache cache = configuration.create()) {
+      assertThat(cache.getIfPresent(buildPackageUrl("1.0.0"))).isNull();
+    }
+    assertThat(getCacheFile()).doesNotExist();
+  }
+
+  @Test
+  public void testPutAll_storedAcrossInstances() throws Exception {
+    PackageUrl packageUrl = buildPackageUrl("1.0.0");
+    ComponentReport report = buildReport(packageUrl);
+
+    try (Cache cache = configuration.create()) {
+      cache.putAll(Collections.singletonMap(packageUrl, report));
+      assertThat(cache.getIfPresent(packageUrl)).isSameAs(report);
+    }
+    assertThat(getCacheFile()).exists();
+
+    try (Cache cache = configuration.create()) {
+      ComponentReport cachedReport = cache.getIfPresent(packageUrl);
+      assertThat(cachedReport).isNotNull();
+      assertThat(cachedReport.getCoordinates()).isEqualTo(packageUrl);
+      assertThat(cachedReport.getVulnerabilities()).hasSize(1);
+      assertThat(cachedReport.getVulnerabilities().get(0).getId()).isEqualTo("vulnerability-id");
+      assertThat(cachedReport.getVulnerabilities().get(0).getReference()).isEqualTo(new URI("http://test/123"));
+    }
+  }
+
+  @Test
+  public void testGetIfPresent_expired() throws Exception {
+    PackageUrl packageUrl = buildPackageUrl("1.0.0");
+    try (Cache cache = configuration.create()) {
+      cache.putAll(Collections.singletonMap(packageUrl, buildReport(packageUrl)));
+    }
+
+    configuration.setExpireAfter(Duration.ZERO);
+    try (Cache cache = configuration.create()) {
+      assertThat(cache.getIfPresent(packageUrl)).isNull();
+    }
+  }
+
+  @Test
+  public void testPutAll_evictsOldestEntries() throws Exception {
+    configuration.setMaxEntries(2);
+    PackageUrl packageUrl1 = buildPackageUrl("1.0.0");
+    PackageUrl packageUrl2 = buildPackageUrl("2.0.0");
+    PackageUrl packageUrl3 = buildPackageUrl("3.0.0");
+
+    try (Cache cache = configuration.create()) {
+      cache.putAll(Collections.singletonMap(packageUrl1, buildReport(packageUrl1)));
+      cache.putAll(Collections.singletonMap(packageUrl2, buildReport(packageUrl2)));
+      cache.putAll(Collections.singletonMap(packageUrl3, buildReport(packageUrl3)));
+
+      assertThat(cache.getIfPresent(packageUrl1)).isNull();
+      assertThat(cache.getIfPresent(packageUrl2)).isNotNull();
+      assertThat(cache.getIfPresent(packageUrl3)).isNotNull();
+    }
+  }
+
+  @Test
+  public void testPutGraph_storedAcrossInstances() throws Exception {
+    PackageUrl packageUrl1 = buildPackageUrl("1.0.0");
+    PackageUrl packageUrl2 = buildPackageUrl("2.0.0");
+
+    try (ComponentReportCache cache = new ComponentReportCache(configuration)) {
+      assertThat(cache.getGraphIfPresent("fingerprint")).isNull();
+      cache.putGraph("fingerprint", Arrays.asList(packageUrl1, packageUrl2));
+    }
+
+    try (ComponentReportCache cache = new ComponentReportCache(configuration)) {
+      assertThat(cache.getGraphIfPresent("fingerprint")).containsExactly(packageUrl1, packageUrl2);
+      assertThat(cache.getGraphIfPresent("other")).isNull();
+    }
+  }
+
+  @Test
+  public void testGetGraphIfPresent_expired() throws Exception {
+    try (ComponentReportCache cache = new ComponentReportCache(configuration)) {
+      cache.putGraph("fingerprint", Collections.singletonList(buildPackageUrl("1.0.0")));
+    }
+
+    configuration.setExpireAfter(Duration.ZERO);
+    try (ComponentReportCache cache = new ComponentReportCache(configuration)) {
+      assertThat(cache.getGraphIfPresent("fingerprint")).isNull();
+    }
+  }
+
+  @Test
+  public void testClose_mergesGraphsStoredByOtherCaches() throws Exception {
+    ComponentReportCache cache1 = new ComponentReportCache(configuration);
+    ComponentReportCache cache2 = new ComponentReportCache(configuration);
+    cache1.putGraph("fingerprint1", Collections.singletonList(buildPackageUrl("1.0.0")));
+    cache2.putGraph("fingerprint2", Collections.singletonList(buildPackageUrl("2.0.0")));
+    cache1.close();
+    cache2.close();
+
+    try (ComponentReportCache cache = new ComponentReportCache(configuration)) {
+      assertThat(cache.getGraphIfPresent("fingerprint1")).containsExactly(buildPackageUrl("1.0.0"));
+      assertThat(cache.getGraphIfPresent("fingerprint2")).containsExactly(buildPackageUrl("2.0.0"));
+    }
+  }
+
+  @Test
+  public void testClose_mergesEntriesStoredByOtherCaches() throws Exception {
+    PackageUrl packageUrl1 = buildPackageUrl("1.0.0");
+    PackageUrl packageUrl2 = buildPackageUrl("2.0.0");
+
+    Cache cache1 = configuration.create();
+    Cache cache2 = configuration.create();
+    cache1.putAll(Collections.singletonMap(packageUrl1, buildReport(packageUrl1)));
+    cache2.putAll(Collections.singletonMap(packageUrl2, buildReport(packageUrl2)));
+    cache1.close();
+    cache2.close();
+
+    try (Cache cache = configuration.create()) {
+      assertThat(cache.getIfPresent(packageUrl1)).isNotNull();
+      assertThat(cache.getIfPresent(packageUrl2)).isNotNull();
+    }
+  }
+
+  @Test
+  public void testClose_concurrentCachesKeepAllEntries() throws Exception {
+    List<Cache> caches = new ArrayList<>();
+    List<PackageUrl> packageUrls = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      PackageUrl packageUrl = buildPackageUrl(i + ".0.0");
+      Cache cache = configuration.create();
+      cache.putAll(Collections.singletonMap(packageUrl, buildReport(packageUrl)));
+      caches.add(cache);
+      packageUrls.add(packageUrl);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(caches.size());
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (Cache cache : caches) {
+        futures.add(executor.submit(() -> {
+          cache.close();
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+
+    try (Cache cache = configuration.create()) {
+      for (PackageUrl packageUrl : packageUrls) {
+        assertThat(cache.getIfPresent(packageUrl)).as(packageUrl.toString()).isNotNull();
+      }
+    }
+  }
+
+  @Test
+  public void testClose_storesExpiryAsEpochMillis() throws Exception {
+    PackageUrl packageUrl = buildPackageUrl("1.0.0");
+    long expireAfterMillis = configuration.getExpireAfter().getMillis();
+
+    long before = System.currentTimeMillis();
+    try (Cache cache = configuration.create()) {
+      cache.putAll(Collections.singletonMap(packageUrl, buildReport(packageUrl)));
+    }
+    long after = System.currentTimeMillis();
+
+    assertThat(readLatestStoredExpiry()).isBetween(before + expireAfterMillis, after + expireAfterMillis);
+  }
+
+  @Test
+  public void testCreate_shorterExpirationAppliesToStoredEntries() throws Exception {
+    PackageUrl packageUrl = buildPackageUrl("1.0.0");
+    try (Cache cache = configuration.create()) {
+      cache.putAll(Collections.singletonMap(packageUrl, buildReport(packageUrl)));
+    }
+
+    configuration.setExpireAfter(Duration.standardMinutes(1));
+    PackageUrl otherPackageUrl = buildPackageUrl("2.0.0");
+    try (Cache cache = configuration.create()) {
+      assertThat(cache.getIfPresent(packageUrl)).isNotNull();
+      cache.putAll(Collections.singletonMap(otherPackageUrl, buildReport(otherPackageUrl)));
+    }
+
+    assertThat(readLatestStoredExpiry()).isLessThanOrEqualTo(System.currentTimeMillis() + 60_000);
+  }
+
+  @Test
+  public void testCreate_unreadableFile() throws Exception {
+    Files.write(getCacheFile(), "not a cache".getBytes(StandardCharsets.UTF_8));
+    PackageUrl packageUrl = buildPackageUrl("1.0.0");
+
+    try (Cache cache = configuration.create()) {
+      assertThat(cache.getIfPresent(packageUrl)).isNull();
+      cache.putAll(Collections.singletonMap(packageUrl, buildReport(packageUrl)));
+    }
+
+    try (Cache cache = configuration.create()) {
+      assertThat(cache.getIfPresent(packageUrl)).isNotNull();
+    }
+  }
+
+  private long readLatestStoredExpiry() throws Exception {
+    long latestExpiry = -1;
+    try (Scanner scanner = new Scanner(new GZIPInputStream(Files.newInputStream(getCacheFile())),
+        StandardCharsets.UTF_8.name())) {
+      String expiresAt;
+      while ((expiresAt = scanner.findWithinHorizon("\"expiresAt\":\\d+", 0)) != null) {
+        latestExpiry = Math.max(latestExpiry, Long.parseLong(expiresAt.substring(expiresAt.indexOf(':') + 1)));
+      }
+    }
+    assertThat(latestExpiry).isNotNegative();
+    return latestExpiry;
+  }
+
+  private Path getCacheFile() {
+    return temporaryFolder.getRoot().toPath().resolve(CACHE_FILE_NAME);
+  }
+
+  private static PackageUrl buildPackageUrl(String version) {
+    return new PackageUrlBuilder().type("maven").namespace("g").name("a").version(version).build();
+  }
+
+  private static ComponentReport buildReport(PackageUrl packageUrl) {
+    ComponentReportVulnerability vulnerability = new ComponentReportVulnerability();
+    vulnerability.setId("vulnerability-id");
+    vulnerability.setReference(URI.create("http://test/123"));
+
+    ComponentReport report = new ComponentReport();
+    report.setCoordinates(packageUrl);
+    report.setVulnerabilities(Collections.singletonList(vulnerability));
+    return report;
+  }
+}
@@ -16,7 +16,11 @@
 package org.sonatype.gradle.plugins.scan.ossindex;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
@@ -31,7 +35,9 @@ import org.sonatype.ossindex.service.api.componentreport.ComponentReport;
 import org.sonatype.ossindex.service.api.componentreport.ComponentReportVulnerability;
 
 import com.google.common.collect.ImmutableMap;
+import org.cyclonedx.Version;
 import org.cyclonedx.exception.ParseException;
+import org.cyclonedx.generators.BomGeneratorFactory;
 import org.cyclonedx.model.Bom;
 import org.cyclonedx.model.Component;
 import org.cyclonedx.model.Metadata;
@@ -42,18 +48,20 @@ import org.cyclonedx.model.vulnerability.Vulnerability.Affect;
 import org.cyclonedx.model.vulnerability.Vulnerability.Rating;
 import org.cyclonedx.model.vulnerability.Vulnerability.Rating.Severity;
 import org.cyclonedx.parsers.JsonParser;
+import org.cyclonedx.parsers.Parser;
+import org.cyclonedx.parsers.XmlParser;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.ResolvedDependency;
-import org.junit.After;
+import org.gradle.testfixtures.ProjectBuilder;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
-import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
 import static org.sonatype.gradle.plugins.scan.ossindex.CycloneDxResponseHandler.FILE_NAME_OUTPUT;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -63,32 +71,31 @@ public class CycloneDxResponseHandlerTest
 
   private CycloneDxResponseHandler handler;
 
-  @Mock
   private Project project;
 
+  private File outputFile;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Before
-  public void setup() {
+  public void setup() throws IOException {
     extension = new OssIndexPluginExtension(null);
     extension.setOutputFormat(OutputFormat.JSON_CYCLONE_DX_1_4);
 
-    when(project.getGroup()).thenReturn("test-group");
-    when(project.getName()).thenReturn("some-name");
-    when(project.getVersion()).thenReturn("0.0.1");
+    project = ProjectBuilder.builder().withName("some-name").withProjectDir(temporaryFolder.newFolder()).build();
+    project.setGroup("test-group");
+    project.setVersion("0.0.1");
 
     handler = new CycloneDxResponseHandler(extension, project);
-  }
-
-  @After
-  public void tearDown() {
-    new File(FILE_NAME_OUTPUT).delete();
+    outputFile = new File(project.getProjectDir(), "build/reports/ossindex/" + FILE_NAME_OUTPUT);
   }
 
   @Test
   public void testHandleOssIndexResponse_noComponents() {
     handler.handleOssIndexResponse(Collections.emptySet(), Collections.emptyMap(), Collections.emptyMap());
 
-    File file = new File(FILE_NAME_OUTPUT);
-    assertThat(file.exists()).isFalse();
+    assertThat(outputFile.exists()).isFalse();
   }
 
   @Test
@@ -102,8 +109,17 @@ public class CycloneDxResponseHandlerTest
 
     handler.handleOssIndexResponse(Collections.emptySet(), dependenciesMap, response);
 
-    File file = new File(FILE_NAME_OUTPUT);
-    assertThat(file.exists()).isFalse();
+    assertThat(outputFile.exists()).isFalse();
+  }
+
+  @Test
+  public void testHandleOssIndexResponse_previousFileDeletedWhenNoVulnerabilities() throws IOException {
+    outputFile.getParentFile().mkdirs();
+    assertThat(outputFile.createNewFile()).isTrue();
+
+    handler.handleOssIndexResponse(Collections.emptySet(), Collections.emptyMap(), Collections.emptyMap());
+
+    assertThat(outputFile.exists()).isFalse();
   }
 
   @Test
@@ -119,11 +135,10 @@ public class CycloneDxResponseHandlerTest
 
     handler.handleOssIndexResponse(Collections.emptySet(), dependenciesMap, response);
 
-    File file = new File(FILE_NAME_OUTPUT);
-    assertThat(file.exists()).isTrue();
+    assertThat(outputFile.exists()).isTrue();
 
     JsonParser jsonParser = new JsonParser();
-    Bom bom = jsonParser.parse(file);
+    Bom bom = jsonParser.parse(outputFile);
 
     assertThat(bom).isNotNull();
     assertThat(bom.getVulnerabilities()).isNullOrEmpty();
@@ -164,11 +179,10 @@ public class CycloneDxResponseHandlerTest
 
     handler.handleOssIndexResponse(Collections.emptySet(), dependenciesMap, response);
 
-    File file = new File(FILE_NAME_OUTPUT);
-    assertThat(file.exists()).isTrue();
+    assertThat(outputFile.exists()).isTrue();
 
     JsonParser jsonParser = new JsonParser();
-    Bom bom = jsonParser.parse(file);
+    Bom bom = jsonParser.parse(outputFile);
     assertThat(bom).isNotNull();
 
     assertComponents(bom, packageUrl);
@@ -201,17 +215,111 @@ public class CycloneDxResponseHandlerTest
 
     handler.handleOssIndexResponse(Collections.emptySet(), dependenciesMap, response);
 
-    File file = new File(FILE_NAME_OUTPUT);
-    assertThat(file.exists()).isTrue();
+    assertThat(outputFile.exists()).isTrue();
 
     JsonParser jsonParser = new JsonParser();
-    Bom bom = jsonParser.parse(file);
+    Bom bom = jsonParser.parse(outputFile);
     assertThat(bom).isNotNull();
 
     assertComponents(bom, packageUrl1, packageUrl2);
     assertVulnerability(bom, vulnerability, packageUrl1, packageUrl2);
   }
 
+  @Test
+  public void testHandleOssIndexResponse_allCycloneDxFormats() throws ParseException, IOException {
+    List<OutputFormat> outputFormats = Stream.of(OutputFormat.values())
+        .filter(OutputFormat::isCycloneDx)
+        .collect(Collectors.toList());
+    extension.setOutputFormats(outputFormats);
+    handler = new CycloneDxResponseHandler(extension, project);
+
+    ResolvedDependency resolvedDependency = mock(ResolvedDependency.class);
+    PackageUrl packageUrl = new PackageUrlBuilder().type("maven").namespace("g").name("a").version("v").build();
+
+    ComponentReport componentReport = new ComponentReport();
+    componentReport.setCoordinates(packageUrl);
+
+    ComponentReportVulnerability vulnerability = buildComponentReportVulnerability();
+    componentReport.setVulnerabilities(Collections.singletonList(vulnerability));
+
+    Map<ResolvedDependency, PackageUrl> dependenciesMap = Collections.singletonMap(resolvedDependency, packageUrl);
+    Map<PackageUrl, ComponentReport> response = Collections.singletonMap(packageUrl, componentReport);
+
+    assertThat(handler.handleOssIndexResponse(Collections.emptySet(), dependenciesMap, response)).isTrue();
+
+    for (OutputFormat outputFormat : outputFormats) {
+      File file = new File(project.getProjectDir(), "build/reports/ossindex/" + outputFormat.getFileName());
+      assertThat(file).as(outputFormat.name()).isFile();
+
+      Parser parser = outputFormat.isXml() ? new XmlParser() : new JsonParser();
+      assertThat(parser.validate(file, outputFormat.getCycloneDxVersion())).as(outputFormat.name()).isEmpty();
+
+      Bom bom = parser.parse(file);
+      assertThat(bom.getSpecVersion()).isEqualTo(outputFormat.getCycloneDxVersion().getVersionString());
+      assertComponents(bom, packageUrl);
+      assertVulnerability(bom, vulnerability, packageUrl);
+    }
+    assertThat(new File(project.getProjectDir(), "build/reports/ossindex").list())
+        .containsExactlyInAnyOrderElementsOf(
+            outputFormats.stream().map(OutputFormat::getFileName).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testHandleOssIndexResponse_xmlSameAsJson() throws Exception {
+    List<OutputFormat> outputFormats = Stream.of(OutputFormat.values())
+        .filter(OutputFormat::isCycloneDx)
+        .collect(Collectors.toList());
+    extension.setOutputFormats(outputFormats);
+    handler = new CycloneDxResponseHandler(extension, project);
+
+    PackageUrl packageUrl1 = new PackageUrlBuilder().type("maven").namespace("g").name("a1").version("v").build();
+    PackageUrl packageUrl2 = new PackageUrlBuilder().type("maven").namespace("g").name("a2").version("v").build();
+    Map<ResolvedDependency, PackageUrl> dependenciesMap = ImmutableMap.of(
+        mock(ResolvedDependency.class), packageUrl1,
+        mock(ResolvedDependency.class), packageUrl2);
+    Map<PackageUrl, ComponentReport> response = ImmutableMap.of(
+        packageUrl1, buildComponentReport(packageUrl1),
+        packageUrl2, buildComponentReport(packageUrl2));
+
+    assertThat(handler.handleOssIndexResponse(Collections.emptySet(), dependenciesMap, response)).isTrue();
+
+    for (OutputFormat outputFormat : outputFormats) {
+      if (outputFormat.isXml()) {
+        Version version = outputFormat.getCycloneDxVersion();
+        File xmlFile = new File(project.getProjectDir(), "build/reports/ossindex/" + outputFormat.getFileName());
+        File jsonFile = new File(project.getProjectDir(), "build/reports/ossindex/" + Stream.of(OutputFormat.values())
+            .filter(format -> format.isCycloneDx() && !format.isXml() && format.getCycloneDxVersion() == version)
+            .findFirst().get().getFileName());
+
+        Bom xmlBom = new XmlParser().parse(xmlFile);
+        Bom jsonBom = new JsonParser().parse(jsonFile);
+        jsonBom.setSerialNumber(xmlBom.getSerialNumber());
+        jsonBom.getMetadata().setTimestamp(xmlBom.getMetadata().getTimestamp());
+
+        assertThat(new String(Files.readAllBytes(xmlFile.toPath()), StandardCharsets.UTF_8))
+            .as(outputFormat.name())
+            .isEqualTo(BomGeneratorFactory.createXml(version, jsonBom).toXmlString());
+      }
+    }
+  }
+
+  @Test
+  public void testHandleOssIndexResponse_allPreviousFilesDeletedWhenNoVulnerabilities() throws IOException {
+    extension.setOutputFormats(Arrays.asList(OutputFormat.JSON_CYCLONE_DX_1_6, OutputFormat.XML_CYCLONE_DX_1_5));
+    handler = new CycloneDxResponseHandler(extension, project);
+
+    File jsonFile = new File(outputFile.getParentFile(), OutputFormat.JSON_CYCLONE_DX_1_6.getFileName());
+    File xmlFile = new File(outputFile.getParentFile(), OutputFormat.XML_CYCLONE_DX_1_5.getFileName());
+    jsonFile.getParentFile().mkdirs();
+    assertThat(jsonFile.createNewFile()).isTrue();
+    assertThat(xmlFile.createNewFile()).isTrue();
+
+    handler.handleOssIndexResponse(Collections.emptySet(), Collections.emptyMap(), Collections.emptyMap());
+
+    assertThat(jsonFile).doesNotExist();
+    assertThat(xmlFile).doesNotExist();
+  }
+
   private void assertComponents(Bom bom, PackageUrl... packageUrls) {
     List<Component> components = Stream.of(packageUrls).map(packageUrl -> {
       Component component = new Component();
@@ -227,6 +335,13 @@ public class CycloneDxResponseHandlerTest
     assertThat(bom.getComponents()).containsExactlyInAnyOrderElementsOf(components);
   }
 
+  private ComponentReport buildComponentReport(PackageUrl packageUrl) {
+    ComponentReport componentReport = new ComponentReport();
+    componentReport.setCoordinates(packageUrl);
+    componentReport.setVulnerabilities(Collections.singletonList(buildComponentReportVulnerability()));
+    return componentReport;
+  }
+
   private ComponentReportVulnerability buildComponentReportVulnerability() {
     ComponentReportVulnerability vulnerability = new ComponentReportVulnerability();
     vulnerability.setId("TEST-123");
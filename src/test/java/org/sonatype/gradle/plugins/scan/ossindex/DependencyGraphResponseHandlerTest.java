@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.ossindex;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sonatype.goodies.packageurl.PackageUrl;
+import org.sonatype.goodies.packageurl.PackageUrlBuilder;
+import org.sonatype.ossindex.service.api.componentreport.ComponentReport;
+import org.sonatype.ossindex.service.api.componentreport.ComponentReportVulnerability;
+
+import org.gradle.api.artifacts.ResolvedDependency;
+import org.gradle.api.artifacts.ResolvedModuleVersion;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DependencyGraphResponseHandlerTest
+{
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private OssIndexPluginExtension extension;
+
+  private DependencyGraphResponseHandler handler;
+
+  private Map<ResolvedDependency, PackageUrl> dependenciesMap;
+
+  private Map<PackageUrl, ComponentReport> response;
+
+  @Before
+  public void setup() {
+    extension = new OssIndexPluginExtension(null);
+    extension.setColorEnabled(false);
+    handler = new DependencyGraphResponseHandler(extension);
+    dependenciesMap = new HashMap<>();
+    response = new HashMap<>();
+  }
+
+  @Test
+  public void testGetDependenciesMapWithVulnerabilities_keepsPathsToVulnerableDependencies() {
+    ResolvedDependency vulnerable = buildDependency("vulnerable", true);
+    ResolvedDependency clean = buildDependency("clean", false);
+    ResolvedDependency parentOfVulnerable = buildDependency("parent-of-vulnerable", false, vulnerable);
+    ResolvedDependency parentOfClean = buildDependency("parent-of-clean", false, clean);
+    ResolvedDependency root = buildDependency("root", false, parentOfClean, parentOfVulnerable);
+
+    assertThat(handler.getDependenciesMapWithVulnerabilities(dependenciesMap, response))
+        .containsOnlyKeys(root, parentOfVulnerable, vulnerable);
+  }
+
+  @Test
+  public void testGetDependenciesMapWithVulnerabilities_dependencyWithoutReportIgnored() {
+    ResolvedDependency vulnerable = buildDependency("vulnerable", true);
+    ResolvedDependency withoutReport = buildDependency("without-report", false, vulnerable);
+    response.remove(dependenciesMap.get(withoutReport));
+
+    assertThat(handler.getDependenciesMapWithVulnerabilities(dependenciesMap, response))
+        .containsOnlyKeys(vulnerable);
+  }
+
+  @Test
+  public void testGetDependenciesMapWithVulnerabilities_cycleDoesNotLoop() {
+    ResolvedDependency vulnerable = buildDependency("vulnerable", true);
+    ResolvedDependency first = buildDependency("first", false);
+    ResolvedDependency second = buildDependency("second", false, first, vulnerable);
+    when(first.getChildren()).thenReturn(Collections.singleton(second));
+
+    assertThat(handler.getDependenciesMapWithVulnerabilities(dependenciesMap, response))
+        .containsKeys(vulnerable, second);
+  }
+
+  @Test
+  public void testGetDependenciesMapWithVulnerabilities_cycleSharesResultWhateverTheOrder() {
+    // a -> b -> a, only a -> c is vulnerable, which b reaches through a
+    ResolvedDependency c = buildDependency("c", true);
+    ResolvedDependency b = buildDependency("b", false);
+    ResolvedDependency a = buildDependency("a", false, b, c);
+    when(b.getChildren()).thenReturn(Collections.singleton(a));
+
+    for (List<ResolvedDependency> order : Arrays.asList(Arrays.asList(a, b, c), Arrays.asList(b, a, c))) {
+      Map<ResolvedDependency, PackageUrl> orderedDependenciesMap = new LinkedHashMap<>();
+      order.forEach(dependency -> orderedDependenciesMap.put(dependency, dependenciesMap.get(dependency)));
+
+      assertThat(handler.getDependenciesMapWithVulnerabilities(orderedDependenciesMap, response))
+          .as("starting from %s", order.get(0).getModuleName())
+          .containsOnlyKeys(a, b, c);
+    }
+  }
+
+  @Test
+  public void testGetDependenciesMapWithVulnerabilities_cycleWithoutVulnerabilitiesIgnored() {
+    ResolvedDependency vulnerable = buildDependency("vulnerable", true);
+    ResolvedDependency b = buildDependency("b", false);
+    ResolvedDependency a = buildDependency("a", false, b);
+    when(b.getChildren()).thenReturn(Collections.singleton(a));
+    ResolvedDependency root = buildDependency("root", false, a, vulnerable);
+
+    assertThat(handler.getDependenciesMapWithVulnerabilities(dependenciesMap, response))
+        .containsOnlyKeys(root, vulnerable);
+  }
+
+  @Test(timeout = 10_000)
+  public void testHandleOssIndexResponse_chainOfDiamondsIsLinear() {
+    // each level doubles the number of paths to the vulnerable dependency at the bottom
+    ResolvedDependency bottom = buildDependency("bottom", true);
+    List<ResolvedDependency> level = Collections.singletonList(bottom);
+    for (int i = 0; i < 50; i++) {
+      ResolvedDependency[] children = level.toArray(new ResolvedDependency[0]);
+      level = new ArrayList<>();
+      level.add(buildDependency("left-" + i, false, children));
+      level.add(buildDependency("right-" + i, false, children));
+    }
+    ResolvedDependency root = buildDependency("root", false, level.toArray(new ResolvedDependency[0]));
+
+    assertThat(handler.handleOssIndexResponse(Collections.singleton(root), dependenciesMap, response)).isTrue();
+    assertThat(handler.getDependenciesMapWithVulnerabilities(dependenciesMap, response))
+        .hasSameSizeAs(dependenciesMap);
+  }
+
+  @Test
+  public void testHandleOssIndexResponse_writesTreeToReportFile() throws IOException {
+    File reportFile = new File(temporaryFolder.getRoot(), "reports/dependency-graph.txt");
+    extension.setDependencyGraphReportFile(reportFile);
+    extension.setColorEnabled(true);
+    handler = new DependencyGraphResponseHandler(extension);
+
+    ResolvedDependency vulnerable = buildDependency("vulnerable", true);
+    ResolvedDependency shared = buildDependency("shared", false, vulnerable);
+    ResolvedDependency first = buildDependency("b-first", false, shared);
+    ResolvedDependency second = buildDependency("a-second", false, shared);
+    ResolvedDependency root = buildDependency("root", false, first, second);
+
+    boolean hasVulnerabilities =
+        handler.handleOssIndexResponse(new LinkedHashSet<>(Arrays.asList(root, shared)), dependenciesMap, response);
+
+    assertThat(hasVulnerabilities).isTrue();
+    assertThat(Files.readAllLines(reportFile.toPath())).containsExactly(
+        "+--- g:root:1.0: 0 vulnerabilities detected",
+        "|    +--- g:a-second:1.0: 0 vulnerabilities detected",
+        "|    |    +--- g:shared:1.0: 0 vulnerabilities detected",
+        "|    |    |    +--- g:vulnerable:1.0: 1 vulnerabilities detected",
+        "|    |    |         Vulnerability of vulnerable (5.0/10, Medium): http://test/vulnerable",
+        "|    +--- g:b-first:1.0: 0 vulnerabilities detected",
+        "|    |    +--- g:shared:1.0 (*): 0 vulnerabilities detected",
+        "+--- g:shared:1.0 (*): 0 vulnerabilities detected",
+        "",
+        "(*) - if present, dependencies omitted (listed previously)");
+  }
+
+  @Test
+  public void testHandleOssIndexResponse_previousReportFileDeletedWhenNoVulnerabilities() throws IOException {
+    File reportFile = temporaryFolder.newFile("dependency-graph.txt");
+    extension.setDependencyGraphReportFile(reportFile);
+    handler = new DependencyGraphResponseHandler(extension);
+
+    ResolvedDependency clean = buildDependency("clean", false);
+
+    assertThat(handler.handleOssIndexResponse(Collections.singleton(clean), dependenciesMap, response)).isFalse();
+    assertThat(reportFile).doesNotExist();
+  }
+
+  private ResolvedDependency buildDependency(String name, boolean vulnerable, ResolvedDependency... children) {
+    ResolvedDependency dependency = mock(ResolvedDependency.class);
+    ResolvedModuleVersion resolvedModuleVersion = () -> DefaultModuleVersionIdentifier.newId("g", name, "1.0");
+    Set<ResolvedDependency> childrenSet = new LinkedHashSet<>();
+    Collections.addAll(childrenSet, children);
+    when(dependency.getModule()).thenReturn(resolvedModuleVersion);
+    when(dependency.getModuleGroup()).thenReturn("g");
+    when(dependency.getModuleName()).thenReturn(name);
+    when(dependency.getModuleVersion()).thenReturn("1.0");
+    when(dependency.getChildren()).thenReturn(childrenSet);
+
+    PackageUrl packageUrl = new PackageUrlBuilder().type("maven").namespace("g").name(name).version("1.0").build();
+    ComponentReport report = new ComponentReport();
+    report.setCoordinates(packageUrl);
+    if (vulnerable) {
+      ComponentReportVulnerability vulnerability = new ComponentReportVulnerability();
+      vulnerability.setId("id-" + name);
+      vulnerability.setTitle("Vulnerability of " + name);
+      vulnerability.setCvssScore(5f);
+      vulnerability.setReference(URI.create("http://test/" + name));
+      report.setVulnerabilities(new ArrayList<>(Collections.singletonList(vulnerability)));
+    }
+
+    dependenciesMap.put(dependency, packageUrl);
+    response.put(packageUrl, report);
+    return dependency;
+  }
+}
@@ -15,10 +15,23 @@
  */
 package org.sonatype.gradle.plugins.scan.ossindex;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
 
 import org.sonatype.goodies.packageurl.PackageUrl;
@@ -28,14 +41,16 @@ import org.sonatype.ossindex.service.api.componentreport.ComponentReportVulnerab
 import org.sonatype.ossindex.service.client.OssindexClient;
 
 import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
 import com.google.common.collect.ImmutableMap;
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.ResolvedDependency;
 import org.gradle.api.artifacts.ResolvedModuleVersion;
 import org.gradle.api.artifacts.dsl.DependencyHandler;
 import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildServiceParameters;
 import org.gradle.testfixtures.ProjectBuilder;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -46,12 +61,15 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.gradle.api.plugins.JavaPlugin.IMPLEMENTATION_CONFIGURATION_NAME;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -92,6 +110,55 @@ public class OssIndexAuditTaskTest
     verify(ossIndexClientMock).requestComponentReports(eq(Collections.singletonList(COMMONS_COLLECTIONS_PURL)));
   }
 
+  @Test
+  public void testAudit_fullyExcludedCoordinatesNotRequested() throws Exception {
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(false, (project, extension) ->
+        extension.setExcludeCoordinates(Collections.singleton("commons-*:commons-collections:[3.0,3.2.2)")));
+
+    assertThatCode(taskSpy::audit).doesNotThrowAnyException();
+
+    verify(ossIndexClientMock, never()).requestComponentReports(anyList());
+  }
+
+  @Test
+  public void testAudit_vulnerabilityExcludedByCoordinatesStillRequested() throws Exception {
+    setupComponentReport(true);
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(false, (project, extension) -> extension.setFailOnDetection(false));
+    VulnerabilityExclusionMatcher matcher = new VulnerabilityExclusionMatcher();
+    matcher.excludeVulnerability("commons-collections:*", "other-vulnerability-id");
+    doReturn(matcher).when(taskSpy).buildExclusionMatcher();
+
+    taskSpy.audit();
+
+    verify(ossIndexClientMock).requestComponentReports(eq(Collections.singletonList(COMMONS_COLLECTIONS_PURL)));
+  }
+
+  @Test
+  public void testBuildExcludedReports() {
+    PackageUrl otherPackageUrl =
+        new PackageUrlBuilder().type("maven").namespace("other").name("other").version("1.0").build();
+    VulnerabilityExclusionMatcher matcher = new VulnerabilityExclusionMatcher();
+    matcher.excludeCoordinates("commons-collections:commons-collections");
+    matcher.excludeVulnerability("other:*", "vulnerability-id");
+
+    Map<PackageUrl, ComponentReport> reports =
+        OssIndexAuditTask.buildExcludedReports(matcher, Arrays.asList(COMMONS_COLLECTIONS_PURL, otherPackageUrl));
+
+    assertThat(reports).containsOnlyKeys(COMMONS_COLLECTIONS_PURL);
+    assertThat(reports.get(COMMONS_COLLECTIONS_PURL).getCoordinates()).isEqualTo(COMMONS_COLLECTIONS_PURL);
+    assertThat(reports.get(COMMONS_COLLECTIONS_PURL).getVulnerabilities()).isEmpty();
+  }
+
+  @Test
+  public void testAudit_invalidExcludeCoordinates() {
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(false, (project, extension) ->
+        extension.setExcludeCoordinates(Collections.singleton("commons-collections")));
+
+    assertThatThrownBy(taskSpy::buildExclusionMatcher)
+        .isInstanceOf(GradleException.class)
+        .hasMessageContaining("Invalid vulnerability exclusion");
+  }
+
   @Test
   public void testAudit_vulnerabilitiesNoFailOnDetection() throws Exception {
     setupComponentReport(true);
@@ -102,6 +169,231 @@ public class OssIndexAuditTaskTest
     verify(ossIndexClientMock).requestComponentReports(eq(Collections.singletonList(COMMONS_COLLECTIONS_PURL)));
   }
 
+  @Test
+  public void testAudit_incrementalReusesPreviousReports() throws Exception {
+    setupComponentReport(false);
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(false, (project, extension) -> {
+      extension.setIncremental(true);
+      extension.setCacheDirectory(new File(project.getProjectDir(), "cache").getPath());
+    });
+
+    taskSpy.audit();
+    taskSpy.audit();
+
+    verify(ossIndexClientMock, times(1))
+        .requestComponentReports(eq(Collections.singletonList(COMMONS_COLLECTIONS_PURL)));
+    assertThat(new File(taskSpy.getProject().getProjectDir(), "cache/" + ComponentReportCache.CACHE_FILE_NAME))
+        .isFile();
+    assertThat(new File(taskSpy.getProject().getBuildDir(), "ossindex/" + ComponentReportCache.CACHE_FILE_NAME))
+        .doesNotExist();
+    assertThat(new File(taskSpy.getProject().getBuildDir(), "ossindex/" + OssIndexAuditTask.INCREMENTAL_STATE_FILE))
+        .isFile();
+  }
+
+  @Test
+  public void testAudit_incrementalRequestsAllWhenPreviousGraphUnknown() throws Exception {
+    setupComponentReport(false);
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(false, (project, extension) -> {
+      extension.setIncremental(true);
+      extension.setCacheDirectory(new File(project.getProjectDir(), "cache").getPath());
+    });
+
+    taskSpy.audit();
+    Files.delete(new File(taskSpy.getProject().getProjectDir(), "cache/" + ComponentReportCache.CACHE_FILE_NAME)
+        .toPath());
+    taskSpy.audit();
+
+    verify(ossIndexClientMock, times(2))
+        .requestComponentReports(eq(Collections.singletonList(COMMONS_COLLECTIONS_PURL)));
+  }
+
+  @Test
+  public void testAudit_incrementalRequestsExpiredReports() throws Exception {
+    setupComponentReport(false);
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(false, (project, extension) -> {
+      extension.setIncremental(true);
+      extension.setCacheDirectory(new File(project.getProjectDir(), "cache").getPath());
+      extension.setCacheExpiration("PT0S");
+    });
+
+    taskSpy.audit();
+    taskSpy.audit();
+
+    verify(ossIndexClientMock, times(2))
+        .requestComponentReports(eq(Collections.singletonList(COMMONS_COLLECTIONS_PURL)));
+  }
+
+  @Test
+  public void testAudit_concurrentTasksWithoutExclusionsLeaveSharedReportsUntouched() throws Exception {
+    ComponentReportVulnerability lowVulnerability = buildVulnerability("low", 2f);
+    ComponentReportVulnerability highVulnerability = buildVulnerability("high", 9f);
+    ComponentReport report = new ComponentReport();
+    report.setCoordinates(COMMONS_COLLECTIONS_PURL);
+    report.setVulnerabilities(new ArrayList<>(Arrays.asList(lowVulnerability, highVulnerability)));
+    when(ossIndexClientMock.requestComponentReports(anyList()))
+        .thenReturn(new HashMap<>(ImmutableMap.of(COMMONS_COLLECTIONS_PURL, report)));
+
+    OssIndexBuildService buildService = new OssIndexBuildService()
+    {
+      @Override
+      public BuildServiceParameters.None getParameters() {
+        return null;
+      }
+
+      @Override
+      OssindexClient buildClient(OssIndexPluginExtension extension, String gradleVersion) {
+        return ossIndexClientMock;
+      }
+    };
+    List<OssIndexAuditTask> taskSpies = Arrays.asList(
+        buildAuditTaskSpy(false, (project, extension) -> extension.setFailOnDetection(false)),
+        buildAuditTaskSpy(false, (project, extension) -> {
+          extension.setFailOnDetection(false);
+          extension.setOutputFormat(OutputFormat.DEPENDENCY_GRAPH);
+        }));
+
+    // Gradle only resolves configurations while holding the project lock, which the executor threads don't
+    taskSpies.forEach(taskSpy -> taskSpy.getProject().getConfigurations().stream()
+        .filter(Configuration::isCanBeResolved)
+        .forEach(Configuration::getResolvedConfiguration));
+
+    ExecutorService executor = Executors.newFixedThreadPool(taskSpies.size());
+    try {
+      List<Future<?>> audits = new ArrayList<>();
+      for (OssIndexAuditTask taskSpy : taskSpies) {
+        // as with a registered build service, both tasks get the same report instances
+        doAnswer(invocation -> buildService.requestComponentReports(new OssIndexPluginExtension(null), "8.0",
+            invocation.getArgument(1))).when(taskSpy).requestComponentReports(any(), anyList());
+        audits.add(executor.submit(taskSpy::audit));
+      }
+      for (Future<?> audit : audits) {
+        audit.get();
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    verify(ossIndexClientMock).requestComponentReports(anyList());
+    assertThat(report.getVulnerabilities()).containsExactly(lowVulnerability, highVulnerability);
+  }
+
+  @Test
+  public void testGetAuditFingerprint_noMaxAge() {
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(false, null);
+
+    assertThat(taskSpy.getAuditFingerprint()).isNull();
+    assertThat(taskSpy.getAuditResultFile()).isNull();
+  }
+
+  @Test
+  public void testGetAuditFingerprint_stableWhileNothingChanges() {
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(false, (project, extension) -> extension.setAuditMaxAge("PT1H"));
+    OssIndexAuditTask otherTaskSpy =
+        buildAuditTaskSpy(false, (project, extension) -> extension.setAuditMaxAge("PT1H"));
+
+    assertThat(taskSpy.getAuditFingerprint()).isNotBlank().isEqualTo(otherTaskSpy.getAuditFingerprint());
+    assertThat(taskSpy.getAuditResultFile())
+        .isEqualTo(new File(taskSpy.getProject().getBuildDir(), "ossindex/audit-result.properties"));
+  }
+
+  @Test
+  public void testGetAuditFingerprint_changesWithExclusionsAndOutputFormats() {
+    String fingerprint = buildAuditTaskSpy(false, (project, extension) -> extension.setAuditMaxAge("PT1H"))
+        .getAuditFingerprint();
+
+    OssIndexAuditTask excludingTaskSpy = buildAuditTaskSpy(false, (project, extension) -> {
+      extension.setAuditMaxAge("PT1H");
+      extension.setExcludeVulnerabilityIds(Collections.singleton("vulnerability-id"));
+    });
+    OssIndexAuditTask otherFormatTaskSpy = buildAuditTaskSpy(false, (project, extension) -> {
+      extension.setAuditMaxAge("PT1H");
+      extension.setOutputFormat(OutputFormat.DEPENDENCY_GRAPH);
+    });
+
+    assertThat(excludingTaskSpy.getAuditFingerprint()).isNotEqualTo(fingerprint);
+    assertThat(otherFormatTaskSpy.getAuditFingerprint()).isNotEqualTo(fingerprint);
+  }
+
+  @Test
+  public void testGetAuditFingerprint_changesWithDependencies() {
+    String fingerprint = buildAuditTaskSpy(false, (project, extension) -> extension.setAuditMaxAge("PT1H"))
+        .getAuditFingerprint();
+
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(false, (project, extension) -> {
+      extension.setAuditMaxAge("PT1H");
+      project.getDependencies().add(IMPLEMENTATION_CONFIGURATION_NAME, "org.hamcrest:hamcrest:2.2");
+    });
+
+    assertThat(taskSpy.getAuditFingerprint()).isNotEqualTo(fingerprint);
+  }
+
+  @Test
+  public void testGetAuditFingerprint_invalidMaxAge() {
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(false, (project, extension) -> extension.setAuditMaxAge("1 hour"));
+
+    assertThat(taskSpy.getAuditFingerprint()).isNull();
+  }
+
+  @Test
+  public void testAudit_writesAuditResultWhenMaxAgeSet() throws Exception {
+    setupComponentReport(false);
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(false, (project, extension) -> extension.setAuditMaxAge("PT1H"));
+
+    long before = System.currentTimeMillis();
+    taskSpy.audit();
+
+    List<String> auditResult = Files.readAllLines(taskSpy.getAuditResultFile().toPath());
+    assertThat(auditResult).hasSize(3);
+    assertThat(Long.parseLong(auditResult.get(0).substring("auditedAt=".length())))
+        .isBetween(before, System.currentTimeMillis());
+    assertThat(auditResult.subList(1, 3)).containsExactly("dependencies=1", "vulnerabilities=false");
+  }
+
+  @Test
+  public void testIsAuditResultReusable_untilMaxAgeAfterAudit() throws Exception {
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(false, (project, extension) -> extension.setAuditMaxAge("PT1H"));
+    assertThat(taskSpy.isAuditResultReusable(1_000L)).isFalse();
+
+    writeAuditResult(taskSpy, "auditedAt=1000\ndependencies=1\nvulnerabilities=false\n");
+
+    assertThat(taskSpy.isAuditResultReusable(1_000L)).isTrue();
+    assertThat(taskSpy.isAuditResultReusable(1_000L + 3_599_999L)).isTrue();
+    assertThat(taskSpy.isAuditResultReusable(1_000L + 3_600_000L)).isFalse();
+    assertThat(taskSpy.isAuditResultReusable(999L)).isFalse();
+  }
+
+  @Test
+  public void testIsAuditResultReusable_vulnerabilitiesAuditedAgainWhenFailOnDetection() throws Exception {
+    OssIndexAuditTask failingTaskSpy =
+        buildAuditTaskSpy(false, (project, extension) -> extension.setAuditMaxAge("PT1H"));
+    writeAuditResult(failingTaskSpy, "auditedAt=1000\ndependencies=1\nvulnerabilities=true\n");
+
+    assertThat(failingTaskSpy.isAuditResultReusable(2_000L)).isFalse();
+
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(false, (project, extension) -> {
+      extension.setAuditMaxAge("PT1H");
+      extension.setFailOnDetection(false);
+    });
+    writeAuditResult(taskSpy, "auditedAt=1000\ndependencies=1\nvulnerabilities=true\n");
+
+    assertThat(taskSpy.isAuditResultReusable(2_000L)).isTrue();
+  }
+
+  @Test
+  public void testIsAuditResultReusable_resultWithoutAuditTime() throws Exception {
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(false, (project, extension) -> extension.setAuditMaxAge("PT1H"));
+    writeAuditResult(taskSpy, "dependencies=1\nvulnerabilities=false\n");
+
+    assertThat(taskSpy.isAuditResultReusable(2_000L)).isFalse();
+  }
+
+  private static void writeAuditResult(OssIndexAuditTask task, String content) throws IOException {
+    Path auditResultFile = task.getAuditResultFile().toPath();
+    Files.createDirectories(auditResultFile.getParent());
+    Files.write(auditResultFile, content.getBytes(StandardCharsets.UTF_8));
+  }
+
   @Test
   public void testAudit_verifyModulesIncludedIsApplied() throws Exception {
     setupComponentReport(true);
@@ -149,6 +441,50 @@ public class OssIndexAuditTaskTest
     taskSpy.audit();
   }
 
+  @Test
+  public void testAudit_parallelResolutionUsesResolvedDependenciesFromProjectTask() throws Exception {
+    setupComponentReport(false);
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(false, (project, extension) -> extension.setParallelResolution(true));
+
+    Project project = taskSpy.getProject();
+    Provider<OssIndexBuildService> buildService = OssIndexBuildService.registerIfAbsent(project.getGradle());
+    taskSpy.useBuildService(buildService);
+    doAnswer(invocation -> ossIndexClientMock.requestComponentReports(invocation.getArgument(1)))
+        .when(taskSpy).requestComponentReports(any(), anyList());
+
+    OssIndexResolveDependenciesTask resolveTask = project.getTasks().register(
+        OssIndexResolveDependenciesTask.getTaskName(project), OssIndexResolveDependenciesTask.class,
+        project.getExtensions().getByType(OssIndexPluginExtension.class)).get();
+    resolveTask.useBuildService(buildService);
+    resolveTask.resolve();
+
+    taskSpy.audit();
+
+    verify(ossIndexClientMock).requestComponentReports(eq(Collections.singletonList(COMMONS_COLLECTIONS_PURL)));
+    assertThat(buildService.get().takeResolvedDependencies(resolveTask.getPath())).isNull();
+  }
+
+  @Test
+  public void testAudit_parallelResolutionFallsBackWhenProjectTaskDidNotRun() throws Exception {
+    setupComponentReport(false);
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(false, (project, extension) -> extension.setParallelResolution(true));
+
+    taskSpy.audit();
+
+    verify(ossIndexClientMock).requestComponentReports(eq(Collections.singletonList(COMMONS_COLLECTIONS_PURL)));
+  }
+
+  @Test
+  public void testAudit_resolutionResults() throws Exception {
+    setupComponentReport(false);
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(false, null);
+    taskSpy.useResolutionResults();
+
+    taskSpy.audit();
+
+    verify(ossIndexClientMock).requestComponentReports(eq(Collections.singletonList(COMMONS_COLLECTIONS_PURL)));
+  }
+
   @Test
   public void testAudit_simulated() throws Exception {
     OssIndexAuditTask taskSpy = buildAuditTaskSpy(true, null);
@@ -190,32 +526,160 @@ public class OssIndexAuditTaskTest
     when(parentDependency.getChildren()).thenReturn(Set.of(singleChildDependency, multiChildDependency));
 
     OssIndexAuditTask taskSpy = buildAuditTaskSpy(true, null);
-    BiMap<ResolvedDependency, PackageUrl> dependenciesMap = HashBiMap.create();
-    taskSpy.buildDependenciesMap(parentDependency, dependenciesMap);
+    BiMap<ResolvedDependency, PackageUrl> dependenciesMap =
+        taskSpy.buildDependenciesMap(Collections.singleton(parentDependency));
 
     assertThat(dependenciesMap).containsOnlyKeys(parentDependency, singleChildDependency, multiChildDependency,
         subChildDependency);
   }
 
   @Test
-  public void testBuildResponseHandler_defaultResponseHandler() {
+  public void testBuildDependenciesMap_deepGraph() {
+    ResolvedDependency dependency = buildDependency("leaf", Collections.emptySet());
+    for (int i = 0; i < 10_000; i++) {
+      dependency = buildDependency("a" + i, Set.of(dependency));
+    }
+
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(true, null);
+    BiMap<ResolvedDependency, PackageUrl> dependenciesMap =
+        taskSpy.buildDependenciesMap(Collections.singleton(dependency));
+
+    assertThat(dependenciesMap).hasSize(10_001);
+  }
+
+  @Test
+  public void testBuildDependenciesMap_sharedDependencyVisitedOnce() {
+    ResolvedDependency sharedDependency = buildDependency("shared", Collections.emptySet());
+    ResolvedDependency firstDependency = buildDependency("first", Set.of(sharedDependency));
+    ResolvedDependency secondDependency = buildDependency("second", Set.of(sharedDependency));
+
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(true, null);
+    BiMap<ResolvedDependency, PackageUrl> dependenciesMap =
+        taskSpy.buildDependenciesMap(new LinkedHashSet<>(List.of(firstDependency, secondDependency)));
+
+    assertThat(dependenciesMap).containsOnlyKeys(firstDependency, secondDependency, sharedDependency);
+    verify(sharedDependency).getChildren();
+  }
+
+  @Test
+  public void testBuildDependenciesMap_sameModuleKeepsLastDependency() {
+    ResolvedDependency firstDependency = buildDependency("same", Collections.emptySet());
+    ResolvedDependency secondDependency = buildDependency("same", Collections.emptySet());
+
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(true, null);
+    BiMap<ResolvedDependency, PackageUrl> dependenciesMap =
+        taskSpy.buildDependenciesMap(new LinkedHashSet<>(List.of(firstDependency, secondDependency)));
+
+    assertThat(dependenciesMap).containsOnlyKeys(secondDependency);
+    assertThat(dependenciesMap.get(secondDependency))
+        .isEqualTo(new PackageUrlBuilder().type("maven").namespace("g").name("same").version("1.0").build());
+  }
+
+  @Test
+  public void testGetCycloneDxFiles_cycloneDxOutputFormat() {
+    OssIndexAuditTask taskSpy =
+        buildAuditTaskSpy(true, (project, extension) -> extension.setOutputFormat(OutputFormat.JSON_CYCLONE_DX_1_4));
+    assertThat(taskSpy.getCycloneDxFiles()).containsExactly(new File(taskSpy.getProject().getBuildDir(),
+        "reports/ossindex/oss-index-cyclonedx-bom.json"));
+  }
+
+  @Test
+  public void testGetCycloneDxFiles_otherOutputFormat() {
+    OssIndexAuditTask taskSpy =
+        buildAuditTaskSpy(true, (project, extension) -> extension.setOutputFormat(OutputFormat.DEPENDENCY_GRAPH));
+    assertThat(taskSpy.getCycloneDxFiles()).isEmpty();
+  }
+
+  @Test
+  public void testGetCycloneDxFiles_multipleOutputFormats() {
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(true, (project, extension) -> extension.setOutputFormats(
+        Arrays.asList("DEPENDENCY_GRAPH", OutputFormat.JSON_CYCLONE_DX_1_6, "XML_CYCLONE_DX_1_5")));
+    File reportsDirectory = new File(taskSpy.getProject().getBuildDir(), "reports/ossindex");
+    assertThat(taskSpy.getCycloneDxFiles()).containsExactly(
+        new File(reportsDirectory, "oss-index-cyclonedx-1.6-bom.json"),
+        new File(reportsDirectory, "oss-index-cyclonedx-1.5-bom.xml"));
+  }
+
+  @Test
+  public void testGetOutputFormats_outputFormatsReplaceOutputFormat() {
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(true, (project, extension) -> {
+      extension.setOutputFormat(OutputFormat.DEPENDENCY_GRAPH);
+      extension.setOutputFormats(Arrays.asList("json_cyclone_dx_1_5", "DEFAULT", "JSON_CYCLONE_DX_1_5"));
+    });
+    assertThat(taskSpy.getOutputFormats())
+        .containsExactly(OutputFormat.JSON_CYCLONE_DX_1_5, OutputFormat.DEFAULT);
+  }
+
+  @Test
+  public void testGetDependencyGraphReportFile_dependencyGraphOutputFormat() {
+    File reportFile = new File("dependency-graph.txt");
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(true, (project, extension) -> {
+      extension.setOutputFormat(OutputFormat.DEPENDENCY_GRAPH);
+      extension.setDependencyGraphReportFile(reportFile);
+    });
+    assertThat(taskSpy.getDependencyGraphReportFile()).isEqualTo(reportFile);
+  }
+
+  @Test
+  public void testGetDependencyGraphReportFile_otherOutputFormat() {
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(true, (project, extension) -> {
+      extension.setOutputFormat(OutputFormat.DEFAULT);
+      extension.setDependencyGraphReportFile(new File("dependency-graph.txt"));
+    });
+    assertThat(taskSpy.getDependencyGraphReportFile()).isNull();
+  }
+
+  @Test
+  public void testBuildResponseHandlers_defaultResponseHandler() {
     OssIndexAuditTask taskSpy =
         buildAuditTaskSpy(true, (project, extension) -> extension.setOutputFormat(OutputFormat.DEFAULT));
-    assertThat(taskSpy.buildResponseHandler()).isInstanceOf(DefaultResponseHandler.class);
+    assertThat(taskSpy.buildResponseHandlers()).singleElement().isInstanceOf(DefaultResponseHandler.class);
   }
 
   @Test
-  public void testBuildResponseHandler_dependencyGraphResponseHandler() {
+  public void testBuildResponseHandlers_dependencyGraphResponseHandler() {
     OssIndexAuditTask taskSpy =
         buildAuditTaskSpy(true, (project, extension) -> extension.setOutputFormat(OutputFormat.DEPENDENCY_GRAPH));
-    assertThat(taskSpy.buildResponseHandler()).isInstanceOf(DependencyGraphResponseHandler.class);
+    assertThat(taskSpy.buildResponseHandlers()).singleElement().isInstanceOf(DependencyGraphResponseHandler.class);
   }
 
   @Test
-  public void testBuildResponseHandler_cycloneDxResponseHandler() {
+  public void testBuildResponseHandlers_cycloneDxResponseHandler() {
     OssIndexAuditTask taskSpy =
         buildAuditTaskSpy(true, (project, extension) -> extension.setOutputFormat(OutputFormat.JSON_CYCLONE_DX_1_4));
-    assertThat(taskSpy.buildResponseHandler()).isInstanceOf(CycloneDxResponseHandler.class);
+    assertThat(taskSpy.buildResponseHandlers()).singleElement().isInstanceOf(CycloneDxResponseHandler.class);
+  }
+
+  @Test
+  public void testBuildResponseHandlers_singleCycloneDxResponseHandlerForAllCycloneDxFormats() {
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(true, (project, extension) -> extension.setOutputFormats(
+        Arrays.asList(OutputFormat.DEPENDENCY_GRAPH, OutputFormat.JSON_CYCLONE_DX_1_4, OutputFormat.XML_CYCLONE_DX_1_6,
+            OutputFormat.DEFAULT)));
+    List<OssIndexResponseHandler> responseHandlers = taskSpy.buildResponseHandlers();
+    assertThat(responseHandlers).hasSize(3);
+    assertThat(responseHandlers.get(0)).isInstanceOf(DependencyGraphResponseHandler.class);
+    assertThat(responseHandlers.get(1)).isInstanceOf(DefaultResponseHandler.class);
+    assertThat(responseHandlers.get(2)).isInstanceOf(CycloneDxResponseHandler.class);
+  }
+
+  @Test
+  public void testAudit_allOutputFormatsProducedInOneExecution() throws Exception {
+    OssIndexAuditTask taskSpy = buildAuditTaskSpy(true, (project, extension) -> {
+      extension.setShowAll(true);
+      extension.setOutputFormats(Arrays.asList(OutputFormat.DEPENDENCY_GRAPH, OutputFormat.JSON_CYCLONE_DX_1_5,
+          OutputFormat.XML_CYCLONE_DX_1_6));
+    });
+    taskSpy.audit();
+
+    assertThat(taskSpy.getCycloneDxFiles()).hasSize(2).allMatch(File::isFile);
+  }
+
+  private ResolvedDependency buildDependency(String name, Set<ResolvedDependency> children) {
+    ResolvedDependency dependency = mock(ResolvedDependency.class);
+    ResolvedModuleVersion resolvedModuleVersion = () -> DefaultModuleVersionIdentifier.newId("g", name, "1.0");
+    when(dependency.getModule()).thenReturn(resolvedModuleVersion);
+    when(dependency.getChildren()).thenReturn(children);
+    return dependency;
   }
 
   private OssIndexAuditTask buildAuditTaskSpy(
@@ -242,6 +706,15 @@ public class OssIndexAuditTaskTest
     return task;
   }
 
+  private static ComponentReportVulnerability buildVulnerability(String id, float cvssScore) throws Exception {
+    ComponentReportVulnerability vulnerability = new ComponentReportVulnerability();
+    vulnerability.setId(id);
+    vulnerability.setTitle("Title " + id);
+    vulnerability.setCvssScore(cvssScore);
+    vulnerability.setReference(new URI("http://test/" + id));
+    return vulnerability;
+  }
+
   private void setupComponentReport(boolean includeVulnerability) throws Exception {
     ComponentReport report = new ComponentReport();
     report.setCoordinates(COMMONS_COLLECTIONS_PURL);
@@ -255,7 +728,8 @@ public class OssIndexAuditTaskTest
       report.setVulnerabilities(Collections.singletonList(vulnerability));
     }
 
-    Map<PackageUrl, ComponentReport> response = ImmutableMap.of(COMMONS_COLLECTIONS_PURL, report);
+    // mutable, like the responses of the client, as the exclusions replace the reports
+    Map<PackageUrl, ComponentReport> response = new HashMap<>(ImmutableMap.of(COMMONS_COLLECTIONS_PURL, report));
     when(ossIndexClientMock.requestComponentReports(eq(Collections.singletonList(COMMONS_COLLECTIONS_PURL))))
         .thenReturn(response);
   }
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.ossindex;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sonatype.goodies.packageurl.PackageUrl;
+import org.sonatype.goodies.packageurl.PackageUrlBuilder;
+import org.sonatype.ossindex.service.api.componentreport.ComponentReport;
+import org.sonatype.ossindex.service.client.OssindexClient;
+
+import org.gradle.api.artifacts.ResolvedDependency;
+import org.gradle.api.services.BuildServiceParameters;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OssIndexBuildServiceTest
+{
+  private static final PackageUrl PACKAGE_URL_1 = buildPackageUrl("1.0.0");
+
+  private static final PackageUrl PACKAGE_URL_2 = buildPackageUrl("2.0.0");
+
+  @Mock
+  private OssindexClient ossIndexClientMock;
+
+  private OssIndexBuildService buildService;
+
+  private int clientsBuilt;
+
+  @Before
+  public void setup() throws Exception {
+    when(ossIndexClientMock.requestComponentReports(anyList())).thenAnswer(invocation -> {
+      Map<PackageUrl, ComponentReport> response = new HashMap<>();
+      for (PackageUrl packageUrl : invocation.<List<PackageUrl>>getArgument(0)) {
+        ComponentReport report = new ComponentReport();
+        report.setCoordinates(packageUrl);
+        response.put(packageUrl, report);
+      }
+      return response;
+    });
+
+    buildService = new OssIndexBuildService()
+    {
+      @Override
+      public BuildServiceParameters.None getParameters() {
+        return null;
+      }
+
+      @Override
+      OssindexClient buildClient(OssIndexPluginExtension extension, String gradleVersion) {
+        clientsBuilt++;
+        return ossIndexClientMock;
+      }
+    };
+  }
+
+  @Test
+  public void testRequestComponentReports_onlyNotRequestedBefore() throws Exception {
+    OssIndexPluginExtension extension = new OssIndexPluginExtension(null);
+
+    Map<PackageUrl, ComponentReport> response1 =
+        buildService.requestComponentReports(extension, "8.0", Collections.singletonList(PACKAGE_URL_1));
+    Map<PackageUrl, ComponentReport> response2 =
+        buildService.requestComponentReports(extension, "8.0", Arrays.asList(PACKAGE_URL_1, PACKAGE_URL_2));
+
+    assertThat(response1).containsOnlyKeys(PACKAGE_URL_1);
+    assertThat(response2).containsOnlyKeys(PACKAGE_URL_1, PACKAGE_URL_2);
+    assertThat(response2.get(PACKAGE_URL_1)).isSameAs(response1.get(PACKAGE_URL_1));
+    verify(ossIndexClientMock).requestComponentReports(Collections.singletonList(PACKAGE_URL_1));
+    verify(ossIndexClientMock).requestComponentReports(Collections.singletonList(PACKAGE_URL_2));
+    assertThat(clientsBuilt).isEqualTo(1);
+  }
+
+  @Test
+  public void testRequestComponentReports_allRequestedBefore() throws Exception {
+    OssIndexPluginExtension extension = new OssIndexPluginExtension(null);
+
+    buildService.requestComponentReports(extension, "8.0", Collections.singletonList(PACKAGE_URL_1));
+    buildService.requestComponentReports(extension, "8.0", Collections.singletonList(PACKAGE_URL_1));
+
+    verify(ossIndexClientMock, times(1)).requestComponentReports(anyList());
+  }
+
+  @Test
+  public void testRequestComponentReports_clientPerConfiguration() throws Exception {
+    OssIndexPluginExtension extension1 = new OssIndexPluginExtension(null);
+    OssIndexPluginExtension extension2 = new OssIndexPluginExtension(null);
+    extension2.setUsername("username");
+
+    buildService.requestComponentReports(extension1, "8.0", Collections.singletonList(PACKAGE_URL_1));
+    buildService.requestComponentReports(extension2, "8.0", Collections.singletonList(PACKAGE_URL_2));
+
+    assertThat(clientsBuilt).isEqualTo(2);
+  }
+
+  @Test
+  public void testRequestComponentReports_failedRequestIsRetried() throws Exception {
+    OssIndexPluginExtension extension = new OssIndexPluginExtension(null);
+    when(ossIndexClientMock.requestComponentReports(anyList())).thenThrow(new IOException("offline"));
+
+    assertThatThrownBy(() -> buildService.requestComponentReports(extension, "8.0",
+        Collections.singletonList(PACKAGE_URL_1))).isInstanceOf(IOException.class);
+    assertThatThrownBy(() -> buildService.requestComponentReports(extension, "8.0",
+        Collections.singletonList(PACKAGE_URL_1))).isInstanceOf(IOException.class);
+
+    verify(ossIndexClientMock, times(2)).requestComponentReports(Collections.singletonList(PACKAGE_URL_1));
+  }
+
+  @Test
+  public void testRequestComponentReports_requestFailedWithErrorIsRetried() throws Exception {
+    OssIndexPluginExtension extension = new OssIndexPluginExtension(null);
+    when(ossIndexClientMock.requestComponentReports(anyList()))
+        .thenThrow(new NoClassDefFoundError("missing"))
+        .thenReturn(Collections.emptyMap());
+
+    assertThatThrownBy(() -> buildService.requestComponentReports(extension, "8.0",
+        Collections.singletonList(PACKAGE_URL_1))).isInstanceOf(NoClassDefFoundError.class);
+    assertThat(buildService.requestComponentReports(extension, "8.0", Collections.singletonList(PACKAGE_URL_1)))
+        .isEmpty();
+
+    verify(ossIndexClientMock, times(2)).requestComponentReports(Collections.singletonList(PACKAGE_URL_1));
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    buildService.requestComponentReports(new OssIndexPluginExtension(null), "8.0",
+        Collections.singletonList(PACKAGE_URL_1));
+
+    buildService.close();
+
+    verify(ossIndexClientMock).close();
+  }
+
+  private static PackageUrl buildPackageUrl(String version) {
+    return new PackageUrlBuilder().type("maven").namespace("g").name("a").version(version).build();
+  }
+
+  @Test
+  public void testTakeResolvedDependencies_onlyOnce() {
+    Set<ResolvedDependency> dependencies = Collections.singleton(mock(ResolvedDependency.class));
+    buildService.putResolvedDependencies(":child:ossIndexResolveDependencies", dependencies);
+
+    assertThat(buildService.takeResolvedDependencies(":ossIndexResolveDependencies")).isNull();
+    assertThat(buildService.takeResolvedDependencies(":child:ossIndexResolveDependencies")).isSameAs(dependencies);
+    assertThat(buildService.takeResolvedDependencies(":child:ossIndexResolveDependencies")).isNull();
+  }
+}
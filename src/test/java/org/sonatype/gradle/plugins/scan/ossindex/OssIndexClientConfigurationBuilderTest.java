@@ -17,9 +17,9 @@ package org.sonatype.gradle.plugins.scan.ossindex;
 
 import java.nio.file.Paths;
 
+import org.sonatype.gradle.plugins.scan.ossindex.ComponentReportCache.Configuration;
 import org.sonatype.ossindex.service.client.OssindexClientConfiguration;
 import org.sonatype.ossindex.service.client.cache.DirectoryCache;
-import org.sonatype.ossindex.service.client.cache.DirectoryCache.Configuration;
 import org.sonatype.ossindex.service.client.transport.AuthConfiguration;
 import org.sonatype.ossindex.service.client.transport.ProxyConfiguration;
 
@@ -55,7 +55,7 @@ public class OssIndexClientConfigurationBuilderTest
 
     assertThat(result).isNotNull();
     assertThat(result).usingRecursiveComparison().ignoringFields("cacheConfiguration").isEqualTo(expected);
-    assertThat(result.getCacheConfiguration()).isInstanceOf(DirectoryCache.Configuration.class);
+    assertThat(result.getCacheConfiguration()).isInstanceOf(Configuration.class);
     assertThat(result.getProxyConfiguration()).isNull();
   }
 
@@ -89,6 +89,18 @@ public class OssIndexClientConfigurationBuilderTest
     Configuration cacheConfiguration = (Configuration) result.getCacheConfiguration();
     assertThat(cacheConfiguration.getBaseDir()).isEqualTo(Paths.get(extension.getCacheDirectory()));
     assertThat(cacheConfiguration.getExpireAfter()).isEqualTo(Duration.parse(extension.getCacheExpiration()));
+    assertThat(cacheConfiguration.getMaxEntries()).isEqualTo(Configuration.DEFAULT_MAX_ENTRIES);
+  }
+
+  @Test
+  public void testBuild_customCacheMaxEntriesExtension() {
+    OssIndexPluginExtension extension = new OssIndexPluginExtension(null);
+    extension.setCacheMaxEntries(100);
+
+    OssindexClientConfiguration result = builder.build(extension);
+
+    assertThat(result.getCacheConfiguration()).isInstanceOf(Configuration.class);
+    assertThat(((Configuration) result.getCacheConfiguration()).getMaxEntries()).isEqualTo(100);
   }
 
   @Test
@@ -96,7 +108,7 @@ public class OssIndexClientConfigurationBuilderTest
     OssIndexPluginExtension extension = new OssIndexPluginExtension(null);
     extension.setCacheExpiration("FAKE");
 
-    Duration expectedDuration = new Configuration().getExpireAfter();
+    Duration expectedDuration = DirectoryCache.Configuration.DEFAULT_EXPIRE_AFTER;
     OssindexClientConfiguration result = builder.build(extension);
 
     assertThat(result).isNotNull();
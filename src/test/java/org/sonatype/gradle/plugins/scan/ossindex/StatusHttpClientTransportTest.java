@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.ossindex;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import org.sonatype.ossindex.service.client.OssindexClientConfiguration;
+import org.sonatype.ossindex.service.client.transport.HttpClientTransport;
+
+import com.sun.net.httpserver.HttpServer;
+import org.gradle.util.GradleVersion;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StatusHttpClientTransportTest
+{
+  private HttpServer server;
+
+  private int status;
+
+  private HttpClientTransport transport;
+
+  @Before
+  public void setup() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", exchange -> {
+      byte[] body = "[]".getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(status, body.length);
+      try (OutputStream outputStream = exchange.getResponseBody()) {
+        outputStream.write(body);
+      }
+    });
+    server.start();
+
+    transport = new TransportBuilder().build(GradleVersion.current().getVersion());
+    transport.init(new OssindexClientConfiguration());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    transport.close();
+    server.stop(0);
+  }
+
+  @Test
+  public void testPost_ok() throws Exception {
+    status = 200;
+
+    assertThat(post()).isEqualTo("[]");
+  }
+
+  @Test
+  public void testPost_unexpectedStatusKeepsStatusCode() {
+    status = 429;
+
+    assertThatThrownBy(this::post)
+        .isInstanceOfSatisfying(UnexpectedStatusException.class,
+            e -> assertThat(e.getStatusCode()).isEqualTo(429))
+        .hasMessageStartingWith("Unexpected response; status: HTTP/1.1 429");
+  }
+
+  private String post() throws Exception {
+    URI url = URI.create("http://localhost:" + server.getAddress().getPort() + "/api/v3/component-report");
+    return transport.post(url, "application/json", "{}", "application/json");
+  }
+}
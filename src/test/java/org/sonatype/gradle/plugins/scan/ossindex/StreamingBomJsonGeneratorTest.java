@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.ossindex;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.cyclonedx.Version;
+import org.cyclonedx.generators.BomGeneratorFactory;
+import org.cyclonedx.model.Bom;
+import org.cyclonedx.model.Component;
+import org.cyclonedx.model.Hash;
+import org.cyclonedx.model.License;
+import org.cyclonedx.model.LicenseChoice;
+import org.cyclonedx.model.Metadata;
+import org.cyclonedx.model.Tool;
+import org.cyclonedx.model.vulnerability.Vulnerability;
+import org.cyclonedx.model.vulnerability.Vulnerability.Affect;
+import org.cyclonedx.model.vulnerability.Vulnerability.Rating;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StreamingBomJsonGeneratorTest
+{
+  private static final List<Version> VERSIONS = List.of(Version.VERSION_14, Version.VERSION_15, Version.VERSION_16);
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  public void testWrite_sameAsBomJsonGenerator() throws Exception {
+    Component component1 = buildComponent("a1");
+    Component component2 = buildComponent("a2");
+    Vulnerability vulnerability = buildVulnerability(component1, component2);
+
+    for (Version version : VERSIONS) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      try (StreamingBomJsonGenerator generator = new StreamingBomJsonGenerator(buildHeader(), version, outputStream)) {
+        generator.writeComponent(component1);
+        generator.writeComponent(component2);
+        generator.writeVulnerabilities(Collections.singletonList(vulnerability));
+      }
+
+      Bom bom = buildHeader();
+      bom.setComponents(List.of(component1, component2));
+      bom.setVulnerabilities(List.of(vulnerability));
+
+      assertThat(readTree(outputStream)).as(version.getVersionString()).isEqualTo(toJsonTree(version, bom));
+    }
+  }
+
+  @Test
+  public void testWrite_noComponents() throws Exception {
+    for (Version version : VERSIONS) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      try (StreamingBomJsonGenerator generator = new StreamingBomJsonGenerator(buildHeader(), version, outputStream)) {
+        generator.writeVulnerabilities(Collections.emptyList());
+      }
+
+      JsonNode tree = readTree(outputStream);
+      assertThat(tree).as(version.getVersionString()).isEqualTo(toJsonTree(version, buildHeader()));
+      assertThat(tree.get("specVersion").asText()).isEqualTo(version.getVersionString());
+      assertThat(tree.has("components")).isFalse();
+      assertThat(tree.has("vulnerabilities")).isFalse();
+    }
+  }
+
+  @Test
+  public void testWrite_closeEndsComponents() throws Exception {
+    Component component = buildComponent("a1");
+
+    for (Version version : VERSIONS) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      try (StreamingBomJsonGenerator generator = new StreamingBomJsonGenerator(buildHeader(), version, outputStream)) {
+        generator.writeComponent(component);
+      }
+
+      Bom bom = buildHeader();
+      bom.setComponents(List.of(component));
+
+      assertThat(readTree(outputStream)).as(version.getVersionString()).isEqualTo(toJsonTree(version, bom));
+    }
+  }
+
+  private JsonNode readTree(ByteArrayOutputStream outputStream) throws Exception {
+    return objectMapper.readTree(new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  private JsonNode toJsonTree(Version version, Bom bom) throws Exception {
+    return objectMapper.readTree(BomGeneratorFactory.createJson(version, bom).toJsonString());
+  }
+
+  private static Bom buildHeader() {
+    Tool tool = new Tool();
+    tool.setVendor("Sonatype");
+    tool.setName("Test");
+
+    Component component = new Component();
+    component.setType(Component.Type.APPLICATION);
+    component.setName("project");
+    component.setVersion("1.0");
+
+    Metadata metadata = new Metadata();
+    metadata.addTool(tool);
+    metadata.setTimestamp(new Date(0));
+    metadata.setComponent(component);
+
+    Bom bom = new Bom();
+    bom.setSerialNumber("urn:uuid:3e671687-395b-41f5-a30f-a58921a69b79");
+    bom.setMetadata(metadata);
+    return bom;
+  }
+
+  private static Component buildComponent(String name) {
+    Component component = new Component();
+    component.setType(Component.Type.LIBRARY);
+    component.setGroup("g");
+    component.setName(name);
+    component.setVersion("1.0");
+    component.setPurl("pkg:maven/g/" + name + "@1.0");
+    component.setBomRef("pkg:maven/g/" + name + "@1.0");
+    component.addHash(new Hash(Hash.Algorithm.SHA1, "da39a3ee5e6b4b0d3255bfef95601890afd80709"));
+
+    License license = new License();
+    license.setId("Apache-2.0");
+    LicenseChoice licenseChoice = new LicenseChoice();
+    licenseChoice.addLicense(license);
+    component.setLicenses(licenseChoice);
+    return component;
+  }
+
+  private static Vulnerability buildVulnerability(Component... components) {
+    Vulnerability vulnerability = new Vulnerability();
+    vulnerability.setId("CVE-2020-0001");
+    vulnerability.setDescription("Description");
+
+    Rating rating = new Rating();
+    rating.setScore(7.5);
+    vulnerability.addRating(rating);
+
+    List<Affect> affects = new ArrayList<>();
+    for (Component component : components) {
+      Affect affect = new Affect();
+      affect.setRef(component.getBomRef());
+      affects.add(affect);
+    }
+    vulnerability.setAffects(affects);
+    return vulnerability;
+  }
+}
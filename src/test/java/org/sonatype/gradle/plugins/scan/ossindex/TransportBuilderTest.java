@@ -41,7 +41,7 @@ public class TransportBuilderTest
   @Test
   public void testBuild() {
     Project project = ProjectBuilder.builder().build();
-    assertThat(builder.build(project)).isNotNull();
+    assertThat(builder.build(project)).isInstanceOf(StatusHttpClientTransport.class);
   }
 
   @Test
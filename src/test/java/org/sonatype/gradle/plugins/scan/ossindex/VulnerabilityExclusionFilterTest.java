@@ -114,6 +114,68 @@ public class VulnerabilityExclusionFilterTest
     assertThat(report.get(COORDINATE2).getVulnerabilities()).containsOnly(vulnerability2);
   }
 
+  @Test
+  public void testApply_originalReportsUnchanged() throws Exception {
+    ComponentReportVulnerability vulnerability1 = new ComponentReportVulnerability();
+    vulnerability1.setId(VULNERABILITY_ID);
+    vulnerability1.setReference(new URI("http://test/123"));
+
+    ComponentReportVulnerability vulnerability2 = new ComponentReportVulnerability();
+    vulnerability2.setId("DEF-456");
+    vulnerability2.setReference(new URI("http://test/456"));
+
+    ComponentReport componentReport1 = setupComponentReport(COORDINATE1, vulnerability2);
+    ComponentReport componentReport2 = setupComponentReport(COORDINATE2, vulnerability1, vulnerability2);
+    Map<PackageUrl, ComponentReport> report = new HashMap<>();
+    report.put(COORDINATE1, componentReport1);
+    report.put(COORDINATE2, componentReport2);
+
+    filter.apply(report);
+    assertThat(report.get(COORDINATE1).getVulnerabilities()).isEmpty();
+    assertThat(report.get(COORDINATE2).getVulnerabilities()).containsOnly(vulnerability2);
+    assertThat(report.get(COORDINATE2).getCoordinates()).isEqualTo(COORDINATE2);
+    assertThat(componentReport1.getVulnerabilities()).containsOnly(vulnerability2);
+    assertThat(componentReport2.getVulnerabilities()).containsOnly(vulnerability1, vulnerability2);
+  }
+
+  @Test
+  public void testApply_excludeByVulnerabilityIdForMatchingCoordinates() throws Exception {
+    ComponentReportVulnerability vulnerability1 = new ComponentReportVulnerability();
+    vulnerability1.setId("ABC-123");
+    vulnerability1.setReference(new URI("http://test/123"));
+
+    ComponentReportVulnerability vulnerability2 = new ComponentReportVulnerability();
+    vulnerability2.setId("DEF-456");
+    vulnerability2.setReference(new URI("http://test/456"));
+
+    VulnerabilityExclusionMatcher matcher = new VulnerabilityExclusionMatcher();
+    matcher.excludeVulnerability("ns1:n*", "ABC-123");
+    Map<PackageUrl, ComponentReport> report = new HashMap<>();
+    report.put(COORDINATE1, setupComponentReport(COORDINATE1, vulnerability1, vulnerability2));
+    report.put(COORDINATE2, setupComponentReport(COORDINATE2, vulnerability1, vulnerability2));
+
+    new VulnerabilityExclusionFilter(matcher).apply(report);
+    assertThat(report.get(COORDINATE1).getVulnerabilities()).containsOnly(vulnerability2);
+    assertThat(report.get(COORDINATE2).getVulnerabilities()).containsOnly(vulnerability1, vulnerability2);
+  }
+
+  @Test
+  public void testApply_noExclusionsStillCopies() throws Exception {
+    ComponentReportVulnerability vulnerability = new ComponentReportVulnerability();
+    vulnerability.setId("ABC-123");
+    vulnerability.setReference(new URI("http://test/123"));
+
+    ComponentReport componentReport = setupComponentReport(COORDINATE1, vulnerability);
+    Map<PackageUrl, ComponentReport> report = new HashMap<>();
+    report.put(COORDINATE1, componentReport);
+
+    new VulnerabilityExclusionFilter(new VulnerabilityExclusionMatcher()).apply(report);
+
+    assertThat(report.get(COORDINATE1)).isNotSameAs(componentReport);
+    assertThat(report.get(COORDINATE1).getVulnerabilities())
+        .containsExactly(vulnerability)
+        .isNotSameAs(componentReport.getVulnerabilities());
+  }
 
   private ComponentReport setupComponentReport(PackageUrl coordinate, ComponentReportVulnerability... vulnerabilities) {
     ComponentReport componentReport = new ComponentReport();
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2020-present Sonatype, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sonatype.gradle.plugins.scan.ossindex;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.sonatype.goodies.packageurl.PackageUrl;
+import org.sonatype.goodies.packageurl.PackageUrlBuilder;
+import org.sonatype.gradle.plugins.scan.ossindex.VulnerabilityExclusionMatcher.Exclusions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class VulnerabilityExclusionMatcherTest
+{
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final VulnerabilityExclusionMatcher matcher = new VulnerabilityExclusionMatcher();
+
+  @Test
+  public void testIsEmpty() {
+    assertThat(matcher.isEmpty()).isTrue();
+    matcher.excludeVulnerability("CVE-1");
+    assertThat(matcher.isEmpty()).isFalse();
+  }
+
+  @Test
+  public void testFindExclusions_exactCoordinates() {
+    matcher.excludeCoordinates("com.example:lib:1.0");
+
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "lib", "1.0"))).isTrue();
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "lib", "1.1"))).isFalse();
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "other", "1.0"))).isFalse();
+  }
+
+  @Test
+  public void testFindExclusions_withoutVersionMatchesAllVersions() {
+    matcher.excludeCoordinates("com.example:lib");
+
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "lib", "1.0"))).isTrue();
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "lib", "2.5-SNAPSHOT"))).isTrue();
+  }
+
+  @Test
+  public void testFindExclusions_wildcards() {
+    matcher.excludeCoordinates("com.example*:*");
+    matcher.excludeCoordinates("org.acme:acme-*:*");
+
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "lib", "1.0"))).isTrue();
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example.sub", "lib", "1.0"))).isTrue();
+    assertThat(matcher.isFullyExcluded(packageUrl("com.exampl", "lib", "1.0"))).isFalse();
+    assertThat(matcher.isFullyExcluded(packageUrl("org.acme", "acme-core", "3"))).isTrue();
+    assertThat(matcher.isFullyExcluded(packageUrl("org.acme", "core", "3"))).isFalse();
+  }
+
+  @Test
+  public void testFindExclusions_versionRanges() {
+    matcher.excludeCoordinates("com.example:lib:[1.0,2.0)");
+    matcher.excludeCoordinates("com.example:lib:(,0.5],[3.0]");
+    matcher.excludeCoordinates("com.example:other:(4.1,)");
+
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "lib", "0.1"))).isTrue();
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "lib", "0.5"))).isTrue();
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "lib", "0.6"))).isFalse();
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "lib", "1.0"))).isTrue();
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "lib", "1.10.2"))).isTrue();
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "lib", "2.0"))).isFalse();
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "lib", "2.0-beta"))).isTrue();
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "lib", "3.0"))).isTrue();
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "lib", "3.0.1"))).isFalse();
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "other", "4.1"))).isFalse();
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "other", "4.1.1"))).isTrue();
+  }
+
+  @Test
+  public void testFindExclusions_versionWildcards() {
+    matcher.excludeCoordinates("com.example:lib:1.*");
+    matcher.excludeVulnerability("com.example:other:2.1*", "CVE-1");
+
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "lib", "1.0"))).isTrue();
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "lib", "1.2.3"))).isTrue();
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "lib", "1"))).isFalse();
+    assertThat(matcher.isFullyExcluded(packageUrl("com.example", "lib", "10.0"))).isFalse();
+    assertThat(matcher.findExclusions(packageUrl("com.example", "other", "2.10")).excludes("CVE-1")).isTrue();
+    assertThat(matcher.findExclusions(packageUrl("com.example", "other", "2.2")).excludes("CVE-1")).isFalse();
+  }
+
+  @Test
+  public void testFindExclusions_manyVersionRanges() {
+    for (int i = 0; i < 200; i++) {
+      matcher.excludeVulnerability("com.example:lib:[" + i + ".0," + i + ".5)", "CVE-" + i);
+    }
+    matcher.excludeVulnerability("com.example:lib:[50.2,)", "CVE-OPEN");
+    matcher.excludeVulnerability("com.example:lib:(,3.0]", "CVE-OLD");
+
+    Exclusions exclusions = matcher.findExclusions(packageUrl("com.example", "lib", "120.3"));
+    assertThat(exclusions.excludes("CVE-120")).isTrue();
+    assertThat(exclusions.excludes("CVE-OPEN")).isTrue();
+    assertThat(exclusions.excludes("CVE-119")).isFalse();
+    assertThat(exclusions.excludes("CVE-121")).isFalse();
+    assertThat(exclusions.excludes("CVE-OLD")).isFalse();
+
+    exclusions = matcher.findExclusions(packageUrl("com.example", "lib", "2.7"));
+    assertThat(exclusions.excludes("CVE-2")).isFalse();
+    assertThat(exclusions.excludes("CVE-OLD")).isTrue();
+    assertThat(exclusions.excludes("CVE-OPEN")).isFalse();
+
+    // a range added after a lookup is found as well
+    matcher.excludeVulnerability("com.example:lib:[2.6,2.8]", "CVE-LATE");
+    assertThat(matcher.findExclusions(packageUrl("com.example", "lib", "2.7")).excludes("CVE-LATE")).isTrue();
+  }
+
+  @Test
+  public void testFindExclusions_vulnerabilityByCoordinates() {
+    matcher.excludeVulnerability("CVE-1");
+    matcher.excludeVulnerability("com.example:*:[1.0,2.0)", "CVE-2");
+
+    Exclusions exclusions = matcher.findExclusions(packageUrl("com.example", "lib", "1.5"));
+    assertThat(exclusions.isAll()).isFalse();
+    assertThat(exclusions.excludes("CVE-1")).isTrue();
+    assertThat(exclusions.excludes("CVE-2")).isTrue();
+    assertThat(exclusions.excludes("CVE-3")).isFalse();
+
+    exclusions = matcher.findExclusions(packageUrl("com.example", "lib", "2.5"));
+    assertThat(exclusions.excludes("CVE-1")).isTrue();
+    assertThat(exclusions.excludes("CVE-2")).isFalse();
+  }
+
+  @Test
+  public void testExcludeCoordinates_invalid() {
+    assertThatThrownBy(() -> matcher.excludeCoordinates("com.example")).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> matcher.excludeCoordinates("a:b:c:d")).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> matcher.excludeCoordinates("a*b:c")).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> matcher.excludeCoordinates("a:b:[1.0")).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> matcher.excludeCoordinates("a:b:(1.0]")).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> matcher.excludeCoordinates("a:b:1.*.2")).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void testLoad() throws Exception {
+    Path suppressionFile = temporaryFolder.newFile("suppressions.txt").toPath();
+    Files.write(suppressionFile, Arrays.asList(
+        "# suppressions",
+        "",
+        "CVE-1",
+        "org.acme:*",
+        "  com.example:lib:[1.0,2.0)   CVE-2  "), StandardCharsets.UTF_8);
+
+    matcher.load(suppressionFile);
+
+    assertThat(matcher.isFullyExcluded(packageUrl("org.acme", "core", "1"))).isTrue();
+    Exclusions exclusions = matcher.findExclusions(packageUrl("com.example", "lib", "1.2"));
+    assertThat(exclusions.isAll()).isFalse();
+    assertThat(exclusions.excludes("CVE-1")).isTrue();
+    assertThat(exclusions.excludes("CVE-2")).isTrue();
+    assertThat(exclusions.excludes("CVE-3")).isFalse();
+  }
+
+  @Test
+  public void testLoad_invalidLine() throws Exception {
+    Path suppressionFile = temporaryFolder.newFile("suppressions.txt").toPath();
+    Files.write(suppressionFile, Arrays.asList("CVE-1", "a:b:c:d"), StandardCharsets.UTF_8);
+
+    assertThatThrownBy(() -> matcher.load(suppressionFile))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(":2:");
+  }
+
+  @Test
+  public void testCompareVersions() {
+    assertThat(VulnerabilityExclusionMatcher.compareVersions("1.0", "1.0.0")).isZero();
+    assertThat(VulnerabilityExclusionMatcher.compareVersions("1.9", "1.10")).isNegative();
+    assertThat(VulnerabilityExclusionMatcher.compareVersions("1.0-beta", "1.0")).isNegative();
+    assertThat(VulnerabilityExclusionMatcher.compareVersions("1.0-alpha", "1.0-beta")).isNegative();
+    assertThat(VulnerabilityExclusionMatcher.compareVersions("1.0.1", "1.0-beta")).isPositive();
+    assertThat(VulnerabilityExclusionMatcher.compareVersions("2.0rc1", "2.0")).isNegative();
+  }
+
+  private static PackageUrl packageUrl(String group, String name, String version) {
+    return new PackageUrlBuilder().type("maven").namespace(group).name(name).version(version).build();
+  }
+}